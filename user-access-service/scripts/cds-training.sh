@@ -0,0 +1,98 @@
+#!/usr/bin/env bash
+#
+# Builds an application class-data-sharing archive for user-access-service from a
+# training run, so later starts map CDI, Jersey, Jackson and Mongo driver classes
+# from the archive instead of loading and verifying them again.
+#
+# Usage: scripts/cds-training.sh [jvm|jlink]
+#
+#   jvm    archive target/app-cds.jsa for target/user-access-service.jar  (mvn package)
+#   jlink  archive lib/app-cds.jsa inside target/user-access-service-jri (mvn package -Pjlink-image)
+#
+# The training run starts the service with registration, the user snapshot and the
+# change stream disabled, waits for /health, then drives /api/user/validate through
+# both its POST and GET forms before shutting down. Mongo does not need to be
+# reachable: a failed lookup still loads the request path. The loaded classes are
+# then dumped into a static archive with -Xshare:dump.
+#
+# Start with the archive:
+#
+#   java -XX:SharedArchiveFile=target/app-cds.jsa -jar target/user-access-service.jar
+#   target/user-access-service-jri/bin/java -XX:SharedArchiveFile=target/user-access-service-jri/lib/app-cds.jsa \
+#       -jar target/user-access-service-jri/app/user-access-service.jar
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+MODE=${1:-jvm}
+case "$MODE" in
+    jvm)
+        JAVA=${JAVA:-java}
+        JAR=${JAR:-target/user-access-service.jar}
+        ARCHIVE=${ARCHIVE:-target/app-cds.jsa}
+        ;;
+    jlink)
+        IMAGE=${IMAGE:-target/user-access-service-jri}
+        JAVA=${JAVA:-${IMAGE}/bin/java}
+        JAR=${JAR:-${IMAGE}/app/user-access-service.jar}
+        ARCHIVE=${ARCHIVE:-${IMAGE}/lib/app-cds.jsa}
+        ;;
+    *)
+        echo "Usage: $0 [jvm|jlink]" >&2
+        exit 1
+        ;;
+esac
+
+if [ ! -f "${JAR}" ]; then
+    echo "${JAR} not found; build the ${MODE} image first" >&2
+    exit 1
+fi
+# the archive records this absolute jar path and is ignored when the jar is started from anywhere else,
+# so train the image where it will run (Dockerfile.jlink trains it at /helidon with IMAGE=/helidon)
+JAR=$(cd "$(dirname "${JAR}")" && pwd)/$(basename "${JAR}")
+
+PORT=${PORT:-9193}
+BASE_URL=http://localhost:${PORT}
+TRAINING_REQUESTS=${TRAINING_REQUESTS:-50}
+CLASS_LIST=${ARCHIVE%.jsa}.classlist
+
+export SERVER_PORT=${PORT}
+export REGISTRATION_ENABLED=false
+export USER_SNAPSHOT_ENABLED=false
+export USER_CHANGESTREAM_ENABLED=false
+# fail fast when no Mongo is around rather than waiting out the default 30s server selection
+export MONGODB_CONNECTION_STRING=${MONGODB_CONNECTION_STRING:-mongodb://localhost:27017/?serverSelectionTimeoutMS=500}
+
+rm -f "${ARCHIVE}" "${CLASS_LIST}"
+
+echo "Training run: ${JAVA} -jar ${JAR}"
+"${JAVA}" -Xshare:off -XX:DumpLoadedClassList="${CLASS_LIST}" -jar "${JAR}" >/dev/null 2>&1 &
+pid=$!
+trap 'kill -TERM "$pid" 2>/dev/null || true' EXIT
+
+until curl -sf -o /dev/null "${BASE_URL}/health"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+        echo "service exited before answering ${BASE_URL}/health" >&2
+        exit 1
+    fi
+    sleep 0.1
+done
+
+for i in $(seq "${TRAINING_REQUESTS}"); do
+    curl -s -o /dev/null -X POST -d "alias=cds-training-${i}&identifier=secret" "${BASE_URL}/api/user/validate" || true
+    curl -s -o /dev/null "${BASE_URL}/api/user/validate?alias=cds-training-${i}&identifier=secret" || true
+    curl -s -o /dev/null "${BASE_URL}/health" || true
+done
+
+# the class list is written as classes load; a normal shutdown just closes it cleanly
+kill -TERM "$pid"
+wait "$pid" 2>/dev/null || true
+trap - EXIT
+
+echo "Dumping $(grep -vc '^#' "${CLASS_LIST}") classes into ${ARCHIVE}"
+"${JAVA}" -Xshare:dump -XX:SharedClassListFile="${CLASS_LIST}" -XX:SharedArchiveFile="${ARCHIVE}" \
+    -cp "${JAR}" -Xlog:cds=warning >/dev/null
+rm -f "${CLASS_LIST}"
+
+ls -l "${ARCHIVE}"
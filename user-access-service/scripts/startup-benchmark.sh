@@ -0,0 +1,104 @@
+#!/usr/bin/env bash
+#
+# Reports time-to-first-request and resident set size for the JVM, jlink and
+# native images of user-access-service, with and without the application CDS archive.
+#
+# Usage: scripts/startup-benchmark.sh [runs] [mode...]
+#
+#   jvm        java -jar target/user-access-service.jar        (mvn package)
+#   jvm-cds    the same, mapping target/app-cds.jsa            (scripts/cds-training.sh jvm)
+#   jlink      target/user-access-service-jri/bin/start        (mvn package -Pjlink-image)
+#   jlink-cds  the image's java, mapping lib/app-cds.jsa       (scripts/cds-training.sh jlink)
+#   native     target/user-access-service                      (mvn package -Pnative-image)
+#
+# With no modes given, every image that has been built is measured. Registration,
+# the user snapshot and the change stream are switched off so only startup is timed;
+# set PROBE_URL to time a different first request (default: /health).
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+shift || true
+MODES=("$@")
+if [ ${#MODES[@]} -eq 0 ]; then
+    MODES=(jvm jvm-cds jlink jlink-cds native)
+fi
+
+PORT=${PORT:-9193}
+PROBE_URL=${PROBE_URL:-http://localhost:${PORT}/health}
+
+export SERVER_PORT=${PORT}
+export REGISTRATION_ENABLED=false
+export USER_SNAPSHOT_ENABLED=false
+export USER_CHANGESTREAM_ENABLED=false
+
+JRI=target/user-access-service-jri
+
+command_for() {
+    case "$1" in
+        jvm) [ -f target/user-access-service.jar ] && echo "java ${JAVA_OPTS:-} -jar target/user-access-service.jar" ;;
+        jvm-cds) [ -f target/app-cds.jsa ] \
+            && echo "java ${JAVA_OPTS:-} -XX:SharedArchiveFile=target/app-cds.jsa -jar target/user-access-service.jar" ;;
+        jlink) [ -x ${JRI}/bin/start ] && echo "${JRI}/bin/start" ;;
+        jlink-cds) [ -f ${JRI}/lib/app-cds.jsa ] \
+            && echo "${JRI}/bin/java -XX:SharedArchiveFile=${JRI}/lib/app-cds.jsa -jar ${JRI}/app/user-access-service.jar" ;;
+        native) [ -x target/user-access-service ] && echo "target/user-access-service" ;;
+        *) echo "Unknown mode: $1" >&2; return 1 ;;
+    esac
+}
+
+# RSS in KiB of a process and all of its descendants (the jlink start script forks java)
+rss_kb() {
+    local total
+    total=$(ps -o rss= -p "$1" 2>/dev/null || echo 0)
+    for child in $(pgrep -P "$1" || true); do
+        total=$((total + $(rss_kb "$child")))
+    done
+    echo $((total))
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+measure() {
+    local cmd=$1 start elapsed pid rss
+    start=$(date +%s%N)
+    $cmd >/dev/null 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "${PROBE_URL}"; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "process exited before answering ${PROBE_URL}" >&2
+            return 1
+        fi
+        sleep 0.005
+    done
+    elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    sleep 1
+    rss=$(rss_kb "$pid")
+    pkill -TERM -P "$pid" 2>/dev/null || true
+    kill -TERM "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+    echo "${elapsed} ${rss}"
+}
+
+printf '%-10s %6s %22s %16s\n' mode runs "first request (ms)" "RSS (MiB)"
+for mode in "${MODES[@]}"; do
+    cmd=$(command_for "$mode") || true
+    if [ -z "${cmd}" ]; then
+        printf '%-10s %s\n' "$mode" "not built, skipped"
+        continue
+    fi
+    times=()
+    rss=()
+    for _ in $(seq "$RUNS"); do
+        read -r t r < <(measure "$cmd")
+        times+=("$t")
+        rss+=("$r")
+    done
+    printf '%-10s %6s %22s %16s\n' "$mode" "$RUNS" \
+        "$(printf '%s\n' "${times[@]}" | median)" \
+        "$(( $(printf '%s\n' "${rss[@]}" | median) / 1024 ))"
+done
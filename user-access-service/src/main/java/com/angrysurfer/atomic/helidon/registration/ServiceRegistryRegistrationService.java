@@ -16,8 +16,15 @@ import java.util.logging.Logger;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import com.angrysurfer.atomic.user.tracing.Tracing;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
@@ -26,6 +33,12 @@ public class ServiceRegistryRegistrationService {
 
     private static final Logger logger = Logger.getLogger(ServiceRegistryRegistrationService.class.getName());
 
+    private static final AttributeKey<String> HTTP_METHOD = AttributeKey.stringKey("http.request.method");
+
+    private static final AttributeKey<String> URL_FULL = AttributeKey.stringKey("url.full");
+
+    private static final AttributeKey<Long> HTTP_STATUS = AttributeKey.longKey("http.response.status_code");
+
     @Inject
     @ConfigProperty(name = "service.registry.url", defaultValue = "http://localhost:8085")
     String hostServerUrl;
@@ -50,9 +63,13 @@ public class ServiceRegistryRegistrationService {
     @ConfigProperty(name = "heartbeat.interval.seconds", defaultValue = "30")
     int heartbeatInterval;
 
+    @Inject
+    Tracing tracing;
+
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private ScheduledExecutorService scheduler;
+    private volatile boolean registered;
 
     public ServiceRegistryRegistrationService() {
         this.httpClient = HttpClient.newBuilder()
@@ -70,6 +87,7 @@ public class ServiceRegistryRegistrationService {
             return;
         }
 
+        registered = true;
         logger.info("Starting registration with host server: " + hostServerUrl);
         logger.info("Service details - Name: " + serviceName + ", Host: " + serviceHost + ", Port: " + port);
 
@@ -78,6 +96,9 @@ public class ServiceRegistryRegistrationService {
         registration.put("serviceName", serviceName);
         registration.put("operations", List.of(
                 "validateUser",
+                "getUserById",
+                "verifyToken",
+                "revokeToken",
                 "getUserProfile",
                 "authenticate",
                 "authorize"));
@@ -106,14 +127,13 @@ public class ServiceRegistryRegistrationService {
             String jsonPayload = objectMapper.writeValueAsString(registration);
             logger.fine("Registration payload: " + jsonPayload);
 
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder request = HttpRequest.newBuilder()
                     .uri(URI.create(hostServerUrl + "/api/registry/register"))
                     .header("Content-Type", "application/json")
                     .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .timeout(Duration.ofSeconds(10))
-                    .build();
+                    .timeout(Duration.ofSeconds(10));
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send("register", request);
 
             if (response.statusCode() == 200) {
                 logger.info("Successfully registered with host server: " + serviceName);
@@ -135,14 +155,13 @@ public class ServiceRegistryRegistrationService {
      */
     private void sendHeartbeat() {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder request = HttpRequest.newBuilder()
                     .uri(URI.create(hostServerUrl + "/api/registry/heartbeat/" + serviceName))
                     .header("Content-Type", "application/json")
                     .POST(HttpRequest.BodyPublishers.ofString("{}"))
-                    .timeout(Duration.ofSeconds(10))
-                    .build();
+                    .timeout(Duration.ofSeconds(10));
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send("heartbeat", request);
 
             if (response.statusCode() == 200) {
                 logger.fine("Heartbeat sent successfully for: " + serviceName);
@@ -175,11 +194,80 @@ public class ServiceRegistryRegistrationService {
                 + " seconds");
     }
 
+    /**
+     * Stop heartbeats and remove this instance from the registry, so it stops
+     * routing new calls here before the server goes away. Heartbeats stop first
+     * so a late one cannot re-announce the instance.
+     */
+    public void deregister() {
+        if (!registered) {
+            return;
+        }
+        stopHeartbeat();
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder()
+                    .uri(URI.create(hostServerUrl + "/api/registry/deregister/" + serviceName))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                    .timeout(Duration.ofSeconds(5));
+
+            HttpResponse<String> response = send("deregister", request);
+
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                logger.info("Deregistered from host server: " + serviceName);
+            } else {
+                logger.warning("Failed to deregister from host server. Status: " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            logger.warning("Interrupted while deregistering " + serviceName);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warning("Error deregistering " + serviceName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Send a registry call inside a client span named {@code registry <operation>},
+     * passing the trace context on in a {@code traceparent} header. Heartbeats run
+     * on the scheduler thread and so start traces of their own.
+     */
+    @SuppressWarnings("try")
+    private HttpResponse<String> send(String operation, HttpRequest.Builder builder)
+            throws IOException, InterruptedException {
+        Span span = tracing.tracer().spanBuilder("registry " + operation)
+                .setSpanKind(SpanKind.CLIENT)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            tracing.propagator().inject(Context.current(), builder, HttpRequest.Builder::header);
+            HttpRequest request = builder.build();
+            span.setAttribute(HTTP_METHOD, request.method());
+            span.setAttribute(URL_FULL, request.uri().toString());
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            span.setAttribute(HTTP_STATUS, (long) response.statusCode());
+            if (response.statusCode() >= 400) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
     /**
      * Cleanup resources on shutdown
      */
     public void cleanup() {
         logger.info("Cleaning up registration service for: " + serviceName);
+        stopHeartbeat();
+        httpClient.close();
+        logger.info("Registration service cleanup completed for: " + serviceName);
+    }
+
+    private void stopHeartbeat() {
         if (scheduler != null && !scheduler.isShutdown()) {
             logger.info("Shutting down heartbeat scheduler for: " + serviceName);
             scheduler.shutdown();
@@ -194,6 +282,5 @@ public class ServiceRegistryRegistrationService {
                 Thread.currentThread().interrupt();
             }
         }
-        logger.info("Registration service cleanup completed for: " + serviceName);
     }
 }
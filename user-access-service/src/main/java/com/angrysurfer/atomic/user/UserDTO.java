@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
+// the Set fields always hold HashSets
+@SuppressWarnings("serial")
 public class UserDTO implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -4,6 +4,8 @@ import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
 
+// the Set fields always hold HashSets
+@SuppressWarnings("serial")
 public class UserRegistrationDTO implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -42,6 +44,8 @@ public class UserRegistrationDTO implements Serializable {
 
     private boolean admin;
 
+    private String token;
+
     public UserRegistrationDTO() {
     }
 
@@ -172,4 +176,12 @@ public class UserRegistrationDTO implements Serializable {
     public void setAdmin(boolean admin) {
         this.admin = admin;
     }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
 }
\ No newline at end of file
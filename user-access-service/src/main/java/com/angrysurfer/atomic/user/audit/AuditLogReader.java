@@ -0,0 +1,78 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads the segments {@link LoginAudit} writes. It is safe to run while the
+ * service is appending: the newest segment is simply read up to its last
+ * complete record.
+ */
+public final class AuditLogReader {
+
+    private static final int MAP_WINDOW = 64 * 1024 * 1024;
+
+    private AuditLogReader() {
+    }
+
+    /**
+     * Stream every record in the directory, oldest first. Each segment is read up
+     * to its first invalid record, which is either the unwritten tail or a record
+     * torn by a crash.
+     *
+     * @return the number of records read
+     */
+    public static long read(Path directory, Consumer<AuditRecord> consumer) throws IOException {
+        long count = 0;
+        for (Path segment : AuditSegments.list(directory)) {
+            count += readSegment(segment, consumer);
+        }
+        return count;
+    }
+
+    static long readSegment(Path segment, Consumer<AuditRecord> consumer) throws IOException {
+        return scan(segment, (buffer, offset) -> consumer.accept(AuditRecordCodec.decode(buffer, offset)));
+    }
+
+    /**
+     * Visit the encoded bytes of each valid record in one segment.
+     */
+    static long scan(Path segment, EncodedRecordVisitor visitor) throws IOException {
+        return scan(segment, MAP_WINDOW, visitor);
+    }
+
+    /**
+     * Map the file a window at a time: a compacted segment holds many segments'
+     * records and can outgrow what one mapping addresses.
+     */
+    static long scan(Path segment, int window, EncodedRecordVisitor visitor) throws IOException {
+        int windowSize = window - window % AuditRecordCodec.RECORD_SIZE;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long count = 0;
+            for (long start = 0; start < size; start += windowSize) {
+                int length = (int) Math.min(windowSize, size - start);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                for (int offset = 0; offset + AuditRecordCodec.RECORD_SIZE <= length;
+                        offset += AuditRecordCodec.RECORD_SIZE) {
+                    if (!AuditRecordCodec.isValid(buffer, offset)) {
+                        return count;
+                    }
+                    visitor.visit(buffer, offset);
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    interface EncodedRecordVisitor {
+
+        void visit(ByteBuffer segment, int offset) throws IOException;
+    }
+}
@@ -0,0 +1,104 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Command line access to the login audit log.
+ *
+ * <pre>
+ * java -cp user-access-service.jar:libs/* com.angrysurfer.atomic.user.audit.AuditLogTool dump data/audit [alias]
+ * java -cp user-access-service.jar:libs/* com.angrysurfer.atomic.user.audit.AuditLogTool compact data/audit [retain-days]
+ * </pre>
+ */
+public final class AuditLogTool {
+
+    private AuditLogTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+        Path directory = Path.of(args[1]);
+        switch (args[0]) {
+            case "dump" -> {
+                String alias = args.length > 2 ? args[2] : null;
+                AuditLogReader.read(directory, record -> {
+                    if (alias == null || alias.equals(record.alias())) {
+                        System.out.println(Instant.ofEpochMilli(record.timestamp()) + "\t" + record.outcome()
+                                + "\t" + record.userId() + "\t" + record.client() + "\t" + record.alias());
+                    }
+                });
+            }
+            case "compact" -> {
+                long cutoff = args.length > 2
+                        ? System.currentTimeMillis() - Duration.ofDays(Long.parseLong(args[2])).toMillis()
+                        : Long.MIN_VALUE;
+                CompactionResult result = compact(directory, cutoff);
+                System.out.println("Kept " + result.kept() + " records, dropped " + result.dropped()
+                        + ", removed " + result.segmentsRemoved() + " segments");
+            }
+            default -> usage();
+        }
+    }
+
+    public record CompactionResult(long kept, long dropped, int segmentsRemoved) {
+    }
+
+    /**
+     * Merge every segment but the newest (which the service may still be
+     * appending to) into one dense file that takes the oldest segment's name,
+     * dropping records older than {@code cutoff} along with unwritten space and
+     * torn records. The merged file replaces the oldest segment atomically before
+     * the others are deleted, so an interruption can leave duplicates but never
+     * loses a record.
+     */
+    public static CompactionResult compact(Path directory, long cutoff) throws IOException {
+        List<Path> segments = AuditSegments.list(directory);
+        if (segments.size() < 2) {
+            return new CompactionResult(0, 0, 0);
+        }
+        List<Path> sealed = segments.subList(0, segments.size() - 1);
+        Path first = sealed.get(0);
+        Path temp = first.resolveSibling(first.getFileName() + ".tmp");
+
+        long[] counts = new long[2];
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path segment : sealed) {
+                AuditLogReader.scan(segment, (buffer, offset) -> {
+                    if (AuditRecordCodec.timestamp(buffer, offset) < cutoff) {
+                        counts[1]++;
+                        return;
+                    }
+                    ByteBuffer record = buffer.slice(offset, AuditRecordCodec.RECORD_SIZE);
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                    counts[0]++;
+                });
+            }
+            out.force(true);
+        }
+        Files.move(temp, first, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path segment : sealed.subList(1, sealed.size())) {
+            Files.delete(segment);
+        }
+        return new CompactionResult(counts[0], counts[1], sealed.size() - 1);
+    }
+
+    private static void usage() {
+        System.err.println("usage: AuditLogTool dump <directory> [alias]");
+        System.err.println("       AuditLogTool compact <directory> [retain-days]");
+    }
+}
@@ -0,0 +1,9 @@
+package com.angrysurfer.atomic.user.audit;
+
+/**
+ * One decoded login audit entry. {@code client} is empty when the caller's
+ * address was not known (broker and gRPC calls) and {@code userId} is 0 for
+ * unknown aliases. Both text fields may have been truncated on write.
+ */
+public record AuditRecord(long timestamp, LoginOutcome outcome, long userId, String client, String alias) {
+}
@@ -0,0 +1,117 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-size binary layout of one audit record:
+ *
+ * <pre>
+ * crc:i32  outcome:u8  clientLength:u8  aliasLength:u8  pad:u8  timestamp:i64  userId:i64
+ * client:40 bytes  alias:64 bytes
+ * </pre>
+ * The CRC32C covers everything after it, so a zero-filled slot or a record torn
+ * by a crash never validates. Text is UTF-8, cut at a character boundary.
+ */
+final class AuditRecordCodec {
+
+    static final int RECORD_SIZE = 128;
+
+    static final int MAX_CLIENT_BYTES = 40;
+
+    static final int MAX_ALIAS_BYTES = 64;
+
+    private static final int OUTCOME = 4;
+
+    private static final int CLIENT_LENGTH = 5;
+
+    private static final int ALIAS_LENGTH = 6;
+
+    private static final int TIMESTAMP = 8;
+
+    private static final int USER_ID = 16;
+
+    private static final int CLIENT = 24;
+
+    private static final int ALIAS = CLIENT + MAX_CLIENT_BYTES;
+
+    private AuditRecordCodec() {
+    }
+
+    /**
+     * Fill the record at {@code offset}, leaving the CRC for {@link #seal}. Bytes
+     * past each text field are left as they are; the slot must start zeroed.
+     */
+    static void encode(ByteBuffer buffer, int offset, long timestamp, LoginOutcome outcome, long userId,
+                       String client, String alias) {
+        buffer.put(offset + OUTCOME, (byte) outcome.ordinal());
+        buffer.put(offset + CLIENT_LENGTH, (byte) putText(buffer, offset + CLIENT, MAX_CLIENT_BYTES, client));
+        buffer.put(offset + ALIAS_LENGTH, (byte) putText(buffer, offset + ALIAS, MAX_ALIAS_BYTES, alias));
+        buffer.putLong(offset + TIMESTAMP, timestamp);
+        buffer.putLong(offset + USER_ID, userId);
+    }
+
+    static void seal(ByteBuffer buffer, int offset) {
+        buffer.putInt(offset, checksum(buffer, offset));
+    }
+
+    static boolean isValid(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) == checksum(buffer, offset)
+                && LoginOutcome.of(buffer.get(offset + OUTCOME)) != null;
+    }
+
+    static AuditRecord decode(ByteBuffer buffer, int offset) {
+        return new AuditRecord(
+                buffer.getLong(offset + TIMESTAMP),
+                LoginOutcome.of(buffer.get(offset + OUTCOME)),
+                buffer.getLong(offset + USER_ID),
+                getText(buffer, offset + CLIENT, Byte.toUnsignedInt(buffer.get(offset + CLIENT_LENGTH))),
+                getText(buffer, offset + ALIAS, Byte.toUnsignedInt(buffer.get(offset + ALIAS_LENGTH))));
+    }
+
+    static long timestamp(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + TIMESTAMP);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + Integer.BYTES, RECORD_SIZE - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Copies ASCII straight into the buffer without allocating; anything else
+     * goes through a UTF-8 encode.
+     */
+    private static int putText(ByteBuffer buffer, int position, int max, String text) {
+        if (text == null) {
+            return 0;
+        }
+        int length = Math.min(text.length(), max);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return putUtf8(buffer, position, max, text);
+            }
+            buffer.put(position + i, (byte) c);
+        }
+        return length;
+    }
+
+    private static int putUtf8(ByteBuffer buffer, int position, int max, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, max);
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        buffer.put(position, bytes, 0, length);
+        return length;
+    }
+
+    private static String getText(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
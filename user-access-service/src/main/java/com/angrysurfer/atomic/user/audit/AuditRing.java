@@ -0,0 +1,114 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring of audit records. Records are
+ * encoded in place into one preallocated buffer, so publishing allocates nothing
+ * and takes no lock: a producer claims a slot with one CAS on the tail and
+ * publishes it by advancing the slot's sequence. A full ring rejects the record
+ * rather than making a login wait.
+ */
+final class AuditRing {
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final ByteBuffer slots;
+
+    /**
+     * Per slot: equal to the claiming position when free, that position + 1 once
+     * published, and the position + capacity after the consumer releases it.
+     */
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // only touched by the consumer thread
+    private long head;
+
+    AuditRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = ByteBuffer.allocate(capacity * AuditRecordCodec.RECORD_SIZE);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the ring is full and the record was not accepted
+     */
+    boolean offer(long timestamp, LoginOutcome outcome, long userId, String client, String alias) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long sequence = sequences.getAcquire(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+            // another producer claimed this position first; reload the tail
+        }
+        AuditRecordCodec.encode(slots, index * AuditRecordCodec.RECORD_SIZE, timestamp, outcome, userId,
+                client, alias);
+        sequences.setRelease(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Move up to {@code max} published records, in claim order, into the segments.
+     * Runs of adjacent published slots are copied in one go. Consumer thread only.
+     *
+     * @return the number of records moved
+     */
+    int drainTo(AuditSegments segments, int max) throws IOException {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) head & mask;
+            int limit = Math.min(max - drained, capacity - index);
+            int run = 0;
+            while (run < limit && sequences.getAcquire(index + run) == head + run + 1) {
+                run++;
+            }
+            if (run == 0) {
+                break;
+            }
+            int offset = index * AuditRecordCodec.RECORD_SIZE;
+            segments.append(slots, offset, run);
+            Arrays.fill(slots.array(), offset, offset + run * AuditRecordCodec.RECORD_SIZE, (byte) 0);
+            for (int i = 0; i < run; i++) {
+                sequences.setRelease(index + i, head + i + capacity);
+            }
+            head += run;
+            drained += run;
+        }
+        return drained;
+    }
+
+    /**
+     * True once every claimed slot has been drained, including any a producer is
+     * still encoding. Consumer thread only.
+     */
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
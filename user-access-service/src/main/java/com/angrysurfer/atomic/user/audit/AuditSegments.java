@@ -0,0 +1,162 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The append side of the audit log: a directory of numbered segment files
+ * ({@code audit-000000000001.log}, ...), each created at full size and written
+ * through one memory mapping. When a segment fills, it is forced to disk and the
+ * next one is opened. On open the newest segment is scanned for its last valid
+ * record, so appends resume after a restart or crash. Writer thread only.
+ */
+final class AuditSegments implements Closeable {
+
+    static final String PREFIX = "audit-";
+
+    static final String SUFFIX = ".log";
+
+    private static final byte[] ZEROS = new byte[AuditRecordCodec.RECORD_SIZE];
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private long index;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer mapped;
+
+    private int position;
+
+    private int forced;
+
+    AuditSegments(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < AuditRecordCodec.RECORD_SIZE) {
+            throw new IllegalArgumentException("Audit segments must hold at least one record: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % AuditRecordCodec.RECORD_SIZE;
+        Files.createDirectories(directory);
+        List<Path> existing = list(directory);
+        open(existing.isEmpty() ? 1 : index(existing.get(existing.size() - 1)));
+        while (position < this.segmentSize && AuditRecordCodec.isValid(mapped, position)) {
+            position += AuditRecordCodec.RECORD_SIZE;
+        }
+        // a torn record may be followed by intact ones; clear them so they cannot
+        // reappear after the slot is reused
+        int end = position;
+        while (end < this.segmentSize && !isZero(end)) {
+            mapped.put(end, ZEROS);
+            end += AuditRecordCodec.RECORD_SIZE;
+        }
+        if (end > position) {
+            mapped.force(position, end - position);
+        }
+        forced = position;
+    }
+
+    /**
+     * Append {@code count} consecutive records from {@code source}, sealing each
+     * with its checksum and moving to a new segment whenever one fills.
+     */
+    void append(ByteBuffer source, int offset, int count) throws IOException {
+        while (count > 0) {
+            if (position == segmentSize) {
+                force();
+                channel.close();
+                open(index + 1);
+            }
+            int n = Math.min(count, (segmentSize - position) / AuditRecordCodec.RECORD_SIZE);
+            int length = n * AuditRecordCodec.RECORD_SIZE;
+            mapped.put(position, source, offset, length);
+            for (int record = position; record < position + length; record += AuditRecordCodec.RECORD_SIZE) {
+                AuditRecordCodec.seal(mapped, record);
+            }
+            position += length;
+            offset += length;
+            count -= n;
+        }
+    }
+
+    /**
+     * Flush records appended since the last call to the storage device.
+     */
+    void force() {
+        if (position > forced) {
+            mapped.force(forced, position - forced);
+            forced = position;
+        }
+    }
+
+    long index() {
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void open(long segment) throws IOException {
+        index = segment;
+        channel = FileChannel.open(path(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        position = 0;
+        forced = 0;
+    }
+
+    private boolean isZero(int offset) {
+        for (int i = 0; i < AuditRecordCodec.RECORD_SIZE; i += Long.BYTES) {
+            if (mapped.getLong(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%s%012d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * Segment files in the directory, oldest first.
+     */
+    static List<Path> list(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                if (index(path) > 0) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(AuditSegments::index));
+        return segments;
+    }
+
+    static long index(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
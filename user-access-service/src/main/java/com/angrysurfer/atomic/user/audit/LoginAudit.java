@@ -0,0 +1,208 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Audit trail of every login attempt. {@link #record} only encodes the entry
+ * into a lock-free ring; a single writer thread appends it to memory-mapped
+ * segment files under {@code user.audit.dir} and forces them to disk every
+ * {@code user.audit.fsync-interval-ms}. Up to that interval of entries can be
+ * lost in a power failure, none in a process crash. When the writer falls a
+ * full ring behind, a login waits for it for at most
+ * {@code user.audit.max-wait-ms} and then drops its entry, counting it, so a
+ * stalled disk slows logins down by a bounded amount instead of blocking them.
+ */
+@ApplicationScoped
+public class LoginAudit {
+
+    private static final Logger LOGGER = Logger.getLogger(LoginAudit.class.getName());
+
+    private static final int DRAIN_BATCH = 1024;
+
+    // how often a producer facing a full ring yields before it starts parking
+    private static final int FULL_RING_YIELDS = 8;
+
+    private static final long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    // segments are mapped with int offsets; a cap well below 2 GiB keeps them addressable
+    static final int MAX_SEGMENT_MB = 1024;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Inject
+    @ConfigProperty(name = "user.audit.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "user.audit.dir", defaultValue = "data/audit")
+    String directory;
+
+    @Inject
+    @ConfigProperty(name = "user.audit.ring-size", defaultValue = "65536")
+    int ringSize;
+
+    @Inject
+    @ConfigProperty(name = "user.audit.segment-mb", defaultValue = "64")
+    int segmentMb;
+
+    @Inject
+    @ConfigProperty(name = "user.audit.fsync-interval-ms", defaultValue = "1000")
+    long fsyncIntervalMs;
+
+    @Inject
+    @ConfigProperty(name = "user.audit.max-wait-ms", defaultValue = "50")
+    long maxWaitMs;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile long written;
+
+    private volatile boolean running;
+
+    volatile AuditRing ring;
+
+    private Thread writer;
+
+    void start(@Observes @RuntimeStart Object event) {
+        start();
+    }
+
+    /**
+     * Open the newest segment and start the writer. Fails startup if the audit
+     * directory cannot be written.
+     */
+    void start() {
+        if (!enabled || running) {
+            return;
+        }
+        if (segmentMb < 1 || segmentMb > MAX_SEGMENT_MB) {
+            throw new IllegalArgumentException("user.audit.segment-mb must be between 1 and " + MAX_SEGMENT_MB
+                    + ": " + segmentMb);
+        }
+        AuditSegments segments;
+        try {
+            segments = new AuditSegments(Path.of(directory), segmentMb * 1024 * 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the login audit log in " + directory, e);
+        }
+        AuditRing queue = new AuditRing(ringSize);
+        running = true;
+        writer = new Thread(() -> writeLoop(queue, segments), "login-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        ring = queue;
+        LOGGER.info("Login audit writing to " + Path.of(directory).toAbsolutePath()
+                + " from segment " + segments.index());
+    }
+
+    /**
+     * Queue one login outcome. Takes no lock and allocates nothing for ASCII text.
+     * With the ring full it waits for the writer, up to {@code user.audit.max-wait-ms}.
+     *
+     * @param client the caller's address, or null when not known
+     * @param userId the matched user, or 0 for an unknown alias
+     */
+    public void record(String alias, String client, LoginOutcome outcome, long userId) {
+        AuditRing target = ring;
+        if (target == null) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        long deadline = 0;
+        for (int attempt = 0; !target.offer(timestamp, outcome, userId, client, alias); attempt++) {
+            if (attempt < FULL_RING_YIELDS) {
+                Thread.yield();
+                continue;
+            }
+            long now = System.nanoTime();
+            if (attempt == FULL_RING_YIELDS) {
+                deadline = now + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            }
+            if (now - deadline >= 0) {
+                long count = dropped.incrementAndGet();
+                if (count == 1 || count % 10_000 == 0) {
+                    LOGGER.warning("Login audit ring full; " + count + " entries dropped so far");
+                }
+                return;
+            }
+            // the writer may be parked between polls
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(Math.min(deadline - now, FULL_RING_PARK_NANOS));
+        }
+    }
+
+    @Gauge(name = "user.audit.written", unit = MetricUnits.NONE, absolute = true,
+            description = "Login audit entries appended to the log")
+    public long written() {
+        return written;
+    }
+
+    @Gauge(name = "user.audit.dropped", unit = MetricUnits.NONE, absolute = true,
+            description = "Login audit entries dropped after waiting user.audit.max-wait-ms for the writer")
+    public long dropped() {
+        return dropped.get();
+    }
+
+    private void writeLoop(AuditRing queue, AuditSegments segments) {
+        long fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        long lastForce = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            try {
+                int drained = queue.drainTo(segments, DRAIN_BATCH);
+                written += drained;
+                if (System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+                    segments.force();
+                    lastForce = System.nanoTime();
+                }
+                if (drained == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Login audit write failed; retrying", e);
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        try {
+            segments.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing the login audit log", e);
+        }
+    }
+
+    /**
+     * Runs after in-flight requests have drained: writes out everything still in
+     * the ring and forces the last segment.
+     */
+    @PreDestroy
+    void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ring = null;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.info("Login audit closed after " + written + " entries (" + dropped.get() + " dropped)");
+    }
+}
@@ -0,0 +1,20 @@
+package com.angrysurfer.atomic.user.audit;
+
+public enum LoginOutcome {
+
+    ACCEPTED,
+
+    /** The alias exists but the identifier did not match. */
+    REJECTED,
+
+    UNKNOWN_ALIAS,
+
+    /** Refused unchecked after repeated failures; new outcomes go last since records store the ordinal. */
+    LOCKED_OUT;
+
+    private static final LoginOutcome[] VALUES = values();
+
+    static LoginOutcome of(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+}
@@ -0,0 +1,261 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Open-addressing map from primitive {@code long} keys to values, so lookups by
+ * numeric id never box. Linear probing with backward-shift deletion keeps the
+ * table free of tombstones.
+ *
+ * Writers take the write lock; readers probe under an optimistic stamp and only
+ * fall back to the read lock if a write raced with them.
+ */
+public final class LongObjectHashMap<V> {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    public LongObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        V value = probe(keys, values, key);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(keys, values, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void put(long key, V value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize(keys.length << 1);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != FREE) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public V remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != FREE) {
+                if (keys[slot] == key) {
+                    @SuppressWarnings("unchecked")
+                    V removed = (V) values[slot];
+                    deleteSlot(slot);
+                    return removed;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove every entry whose value matches. This is a full scan, meant for rare
+     * events such as deletes that only identify the record by another key.
+     */
+    public int removeIf(Predicate<? super V> filter) {
+        long stamp = lock.writeLock();
+        try {
+            int removed = 0;
+            int slot = 0;
+            while (slot < keys.length) {
+                @SuppressWarnings("unchecked")
+                V value = (V) values[slot];
+                if (keys[slot] != FREE && filter.test(value)) {
+                    // backward shift may pull a not-yet-visited entry into this slot
+                    deleteSlot(slot);
+                    removed++;
+                } else {
+                    slot++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove one arbitrary entry, used by bounded callers to make room. Returns
+     * the evicted value, or null if the map was empty.
+     */
+    public V evictOne() {
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            int mask = keys.length - 1;
+            int slot = ThreadLocalRandom.current().nextInt(keys.length);
+            while (keys[slot] == FREE) {
+                slot = (slot + 1) & mask;
+            }
+            @SuppressWarnings("unchecked")
+            V evicted = (V) values[slot];
+            deleteSlot(slot);
+            return evicted;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            allocate(tableSizeFor(0));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * A copy of the values, taken under the read lock.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            List<V> copy = new ArrayList<>(size);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != FREE) {
+                    copy.add((V) values[slot]);
+                }
+            }
+            return copy;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int current = size;
+        if (lock.validate(stamp)) {
+            return current;
+        }
+        stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V probe(long[] keys, Object[] values, long key) {
+        // arrays may be mid-update under an optimistic read; stay in bounds and let validate() decide
+        if (keys.length != values.length) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        for (int probes = 0; probes < keys.length; probes++) {
+            long candidate = keys[slot];
+            if (candidate == key) {
+                return (V) values[slot];
+            }
+            if (candidate == FREE) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = mix(keys[next]) & mask;
+            // move the entry back if the hole lies cyclically between its home slot and where it sits
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = FREE;
+        values[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        long[] freshKeys = new long[capacity];
+        Arrays.fill(freshKeys, FREE);
+        keys = freshKeys;
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = Math.max(16, (int) Math.min(1 << 30, expectedSize * 4L / 3 + 1));
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
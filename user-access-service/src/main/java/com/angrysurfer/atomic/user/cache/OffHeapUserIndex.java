@@ -0,0 +1,387 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.bson.types.ObjectId;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+/**
+ * Open-addressing hash index over secret-free user records kept entirely in
+ * direct (off-heap) memory, so millions of resident users add next to nothing to
+ * GC work.
+ *
+ * Records are appended to 256 MiB direct pages as {@code length:i32} followed by a
+ * {@link UserRecordCodec} record. Two slot tables, one keyed by alias and one by
+ * mongoId, map a 64-bit key hash to the record's offset. Each slot is
+ * {@code hash:i64 ref:i64} where ref is offset+1, 0 means empty and -1 a tombstone.
+ * Probes compare the key against the record bytes in place; only the record a
+ * lookup returns is decoded.
+ *
+ * A single writer (all mutators are synchronized) publishes a record by writing its
+ * bytes, then the slot hash, then the ref with release semantics; readers take no
+ * lock and read the ref with acquire semantics, so a reader either misses an
+ * in-flight insert or sees the fully written record. Updates append a new record
+ * and repoint the slot, leaving the old bytes as garbage until the index is rebuilt.
+ */
+public final class OffHeapUserIndex {
+
+    public static final int MAX_SLOTS = 1 << 26;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private static final int SLOT_BYTES = 16;
+
+    private static final long EMPTY = 0;
+
+    private static final long TOMBSTONE = -1;
+
+    private static final int MAX_PAGE_BITS = 28;
+
+    private final SlotTable byAlias;
+
+    private final SlotTable byMongoId;
+
+    private final ByteBuffer[] pages;
+
+    private final int pageBits;
+
+    private final int pageSize;
+
+    // writer-only state
+    private long tail;
+
+    private int size;
+
+    private boolean outOfSlots;
+
+    private boolean outOfRecordSpace;
+
+    /**
+     * @param slotCapacity slots per key table, rounded up to a power of two
+     * @param maxDataBytes upper bound on direct memory used for record pages
+     */
+    public OffHeapUserIndex(int slotCapacity, long maxDataBytes) {
+        int slots = Integer.highestOneBit(Math.max(16, Math.min(slotCapacity, MAX_SLOTS)) - 1) << 1;
+        this.byAlias = new SlotTable(slots, UserRecordCodec::aliasEquals);
+        this.byMongoId = new SlotTable(slots, UserRecordCodec::mongoIdEquals);
+        this.pageBits = Math.min(MAX_PAGE_BITS, 64 - Long.numberOfLeadingZeros(Math.max(maxDataBytes, 1 << 16) - 1));
+        this.pageSize = 1 << pageBits;
+        this.pages = new ByteBuffer[(int) Math.max(1, (maxDataBytes + pageSize - 1) >>> pageBits)];
+    }
+
+    public UserRegistration findByAlias(String alias) {
+        return alias != null ? read(byAlias.lookup(hash(alias), aliasKey(alias))) : null;
+    }
+
+    public UserRegistration findByMongoId(String mongoId) {
+        return mongoId != null && ObjectId.isValid(mongoId)
+                ? read(byMongoId.lookup(hash(mongoId), mongoIdKey(mongoId)))
+                : null;
+    }
+
+    /**
+     * Insert or replace a record. The identifier, if present, is replaced by its digest.
+     *
+     * @return false if the index is out of slots or record space and needs a rebuild;
+     * the user may then be missing from the index but is never left at an older state
+     */
+    public synchronized boolean put(UserRegistration user) {
+        if (user.getAlias() == null) {
+            return true;
+        }
+        UserRegistration resident = user.getIdentifier() != null ? user.withoutSecrets() : user;
+        byte[] aliasKey = aliasKey(resident.getAlias());
+        byte[] mongoIdKey = resident.getMongoId() != null ? mongoIdKey(resident.getMongoId()) : null;
+
+        UserRegistration previous = mongoIdKey != null
+                ? read(byMongoId.lookup(hash(resident.getMongoId()), mongoIdKey))
+                : null;
+        if (previous != null && !previous.getAlias().equals(resident.getAlias())) {
+            removeAlias(previous.getAlias());
+        }
+        UserRegistration sameAlias = read(byAlias.lookup(hash(resident.getAlias()), aliasKey));
+        if (sameAlias != null && sameAlias.getMongoId() != null
+                && !sameAlias.getMongoId().equals(resident.getMongoId())) {
+            byMongoId.remove(hash(sameAlias.getMongoId()), mongoIdKey(sameAlias.getMongoId()));
+        }
+
+        long offset = append(UserRecordCodec.encode(resident));
+        if (offset < 0) {
+            outOfRecordSpace = true;
+            evict(resident, aliasKey, mongoIdKey);
+            return false;
+        }
+        int aliasResult = byAlias.put(hash(resident.getAlias()), offset + 1, aliasKey);
+        if (aliasResult < 0
+                || mongoIdKey != null && byMongoId.put(hash(resident.getMongoId()), offset + 1, mongoIdKey) < 0) {
+            outOfSlots = true;
+            if (aliasResult > 0) {
+                size++;
+            }
+            evict(resident, aliasKey, mongoIdKey);
+            return false;
+        }
+        size += aliasResult;
+        return true;
+    }
+
+    public synchronized void removeByMongoId(String mongoId) {
+        UserRegistration resident = findByMongoId(mongoId);
+        if (resident != null) {
+            removeAlias(resident.getAlias());
+            byMongoId.remove(hash(mongoId), mongoIdKey(mongoId));
+        }
+    }
+
+    public synchronized void removeByAlias(String alias) {
+        UserRegistration resident = findByAlias(alias);
+        if (resident != null) {
+            removeAlias(alias);
+            if (resident.getMongoId() != null) {
+                byMongoId.remove(hash(resident.getMongoId()), mongoIdKey(resident.getMongoId()));
+            }
+        }
+    }
+
+    /**
+     * True once a put has failed for lack of slots; a rebuild needs a larger slot capacity.
+     */
+    public synchronized boolean isOutOfSlots() {
+        return outOfSlots;
+    }
+
+    /**
+     * True once a put has failed for lack of record space; a rebuild needs more data bytes.
+     */
+    public synchronized boolean isOutOfRecordSpace() {
+        return outOfRecordSpace;
+    }
+
+    public int slotCapacity() {
+        return byAlias.mask + 1;
+    }
+
+    public long maxDataBytes() {
+        return (long) pages.length << pageBits;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long dataBytes() {
+        return tail;
+    }
+
+    /**
+     * Direct memory reserved by the slot tables and the record pages allocated so far.
+     */
+    public synchronized long reservedBytes() {
+        long bytes = byAlias.slots.capacity() + (long) byMongoId.slots.capacity();
+        for (ByteBuffer page : pages) {
+            if (page != null) {
+                bytes += page.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    private void removeAlias(String alias) {
+        if (byAlias.remove(hash(alias), aliasKey(alias))) {
+            size--;
+        }
+    }
+
+    // a failed put drops whatever the index still held for the user, so lookups fall through
+    private void evict(UserRegistration user, byte[] aliasKey, byte[] mongoIdKey) {
+        if (byAlias.remove(hash(user.getAlias()), aliasKey)) {
+            size--;
+        }
+        if (mongoIdKey != null) {
+            byMongoId.remove(hash(user.getMongoId()), mongoIdKey);
+        }
+    }
+
+    private long append(byte[] record) {
+        int needed = Integer.BYTES + record.length;
+        if (needed > pageSize) {
+            return -1;
+        }
+        long offset = tail;
+        if ((offset & (pageSize - 1)) + needed > pageSize) {
+            // records never straddle pages
+            offset = ((offset >>> pageBits) + 1) << pageBits;
+        }
+        int pageIndex = (int) (offset >>> pageBits);
+        if (pageIndex >= pages.length) {
+            return -1;
+        }
+        ByteBuffer page = pages[pageIndex];
+        if (page == null) {
+            page = ByteBuffer.allocateDirect(pageSize);
+            pages[pageIndex] = page;
+        }
+        int position = (int) (offset & (pageSize - 1));
+        page.putInt(position, record.length);
+        page.put(position + Integer.BYTES, record);
+        tail = offset + needed;
+        return offset;
+    }
+
+    private UserRegistration read(long offset) {
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer page = pages[(int) (offset >>> pageBits)];
+        int position = (int) (offset & (pageSize - 1));
+        int length = page.getInt(position);
+        return UserRecordCodec.decode(page.slice(position + Integer.BYTES, length));
+    }
+
+    private boolean matches(long offset, RecordKey recordKey, byte[] key) {
+        ByteBuffer page = pages[(int) (offset >>> pageBits)];
+        return recordKey.matches(page, (int) (offset & (pageSize - 1)) + Integer.BYTES, key);
+    }
+
+    private static byte[] aliasKey(String alias) {
+        return alias.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] mongoIdKey(String mongoId) {
+        return new ObjectId(mongoId).toByteArray();
+    }
+
+    static long hash(String key) {
+        // FNV-1a over the UTF-16 chars, finished with the murmur3 fmix64 avalanche
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != EMPTY ? h : 1;
+    }
+
+    /**
+     * Compares the key of the record at an absolute page position with a key in
+     * its encoded form, so probing never decodes a record.
+     */
+    @FunctionalInterface
+    private interface RecordKey {
+        boolean matches(ByteBuffer page, int position, byte[] key);
+    }
+
+    private final class SlotTable {
+
+        private final ByteBuffer slots;
+
+        private final int mask;
+
+        private final int maxUsed;
+
+        private final RecordKey recordKey;
+
+        // slots that are live or tombstoned; writer-only
+        private int used;
+
+        SlotTable(int capacity, RecordKey recordKey) {
+            this.slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+            this.mask = capacity - 1;
+            this.maxUsed = (int) (capacity * 0.75);
+            this.recordKey = recordKey;
+        }
+
+        /**
+         * @return the offset of the record with this key, or -1
+         */
+        long lookup(long hash, byte[] key) {
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                int base = slot * SLOT_BYTES;
+                long slotHash = (long) LONGS.getAcquire(slots, base);
+                long ref = (long) LONGS.getAcquire(slots, base + Long.BYTES);
+                if (slotHash == EMPTY && ref == EMPTY) {
+                    return -1;
+                }
+                if (slotHash == hash && ref > 0 && matches(ref - 1, recordKey, key)) {
+                    return ref - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * @return 1 if a new key was added, 0 if an existing key was repointed, -1 if full
+         */
+        int put(long hash, long ref, byte[] key) {
+            int slot = (int) hash & mask;
+            int firstTombstone = -1;
+            for (int probes = 0; probes <= mask; probes++) {
+                int base = slot * SLOT_BYTES;
+                long slotHash = (long) LONGS.get(slots, base);
+                long slotRef = (long) LONGS.get(slots, base + Long.BYTES);
+                if (slotHash == EMPTY && slotRef == EMPTY) {
+                    if (firstTombstone >= 0) {
+                        publish(firstTombstone, hash, ref);
+                        return 1;
+                    }
+                    if (used >= maxUsed) {
+                        return -1;
+                    }
+                    used++;
+                    publish(slot, hash, ref);
+                    return 1;
+                }
+                if (slotRef == TOMBSTONE) {
+                    if (firstTombstone < 0) {
+                        firstTombstone = slot;
+                    }
+                } else if (slotHash == hash && matches(slotRef - 1, recordKey, key)) {
+                    LONGS.setRelease(slots, base + Long.BYTES, ref);
+                    return 0;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (firstTombstone >= 0) {
+                publish(firstTombstone, hash, ref);
+                return 1;
+            }
+            return -1;
+        }
+
+        boolean remove(long hash, byte[] key) {
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                int base = slot * SLOT_BYTES;
+                long slotHash = (long) LONGS.get(slots, base);
+                long slotRef = (long) LONGS.get(slots, base + Long.BYTES);
+                if (slotHash == EMPTY && slotRef == EMPTY) {
+                    return false;
+                }
+                if (slotHash == hash && slotRef > 0 && matches(slotRef - 1, recordKey, key)) {
+                    LONGS.setRelease(slots, base + Long.BYTES, TOMBSTONE);
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private void publish(int slot, long hash, long ref) {
+            int base = slot * SLOT_BYTES;
+            LONGS.setRelease(slots, base, hash);
+            LONGS.setRelease(slots, base + Long.BYTES, ref);
+        }
+    }
+}
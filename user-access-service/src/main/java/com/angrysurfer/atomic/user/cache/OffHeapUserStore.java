@@ -0,0 +1,241 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Keeps every user of the tenant resident in an {@link OffHeapUserIndex}, loaded
+ * from {@link UserRegistrationRepository} on startup and kept current from
+ * {@link UserChangeEvent}s. When the index runs out of slots or record space, or
+ * the change stream asks for a reset, it is rebuilt from Mongo in the background
+ * and swapped in. A rebuild that overflows starts over at twice the exhausted
+ * capacity while the old index keeps serving, so a partial index is only ever
+ * swapped in once the index cannot grow any further. Changes that arrive during
+ * a scan are buffered and replayed onto the fresh index before it is swapped in,
+ * and a failed scan is retried with backoff.
+ */
+@ApplicationScoped
+public class OffHeapUserStore {
+
+    private static final Logger LOGGER = Logger.getLogger(OffHeapUserStore.class.getName());
+
+    // record pages are allocated as they fill, but never past 16 GiB of direct memory
+    private static final long MAX_DATA_BYTES = 16L << 30;
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Inject
+    @ConfigProperty(name = "user.offheap.enabled", defaultValue = "false")
+    boolean offHeapEnabled;
+
+    @Inject
+    @ConfigProperty(name = "user.offheap.slots", defaultValue = "4194304")
+    int slotCapacity;
+
+    @Inject
+    @ConfigProperty(name = "user.offheap.data-mb", defaultValue = "1024")
+    long dataMegabytes;
+
+    @Inject
+    @ConfigProperty(name = "user.offheap.load.batch-size", defaultValue = "5000")
+    int loadBatchSize;
+
+    @Inject
+    UserRegistrationRepository userRepository;
+
+    long initialBackoffMillis = 1000;
+
+    private volatile OffHeapUserIndex index;
+    // changes that arrive while a rebuild scans, replayed onto the fresh index before the swap
+    private List<UserChangeEvent> pending;
+    private final Object pendingLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile boolean atCeiling;
+
+    void onStart(@Observes @RuntimeStart Object event) {
+        if (offHeapEnabled) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * True when the store is disabled or its first load has completed.
+     */
+    public boolean isReady() {
+        return !offHeapEnabled || index != null;
+    }
+
+    public Optional<UserRegistration> findByAlias(String alias) {
+        OffHeapUserIndex current = index;
+        return current != null ? Optional.ofNullable(current.findByAlias(alias)) : Optional.empty();
+    }
+
+    void onUserChange(@Observes UserChangeEvent event) {
+        if (!offHeapEnabled) {
+            return;
+        }
+        if (event.getType() == UserChangeEvent.Type.RESET) {
+            scheduleRebuild();
+            return;
+        }
+        synchronized (pendingLock) {
+            if (pending != null) {
+                pending.add(event);
+            }
+        }
+        OffHeapUserIndex current = index;
+        if (current != null && !apply(current, event) && !atCeiling) {
+            // the user is no longer resident and reads fall through; a larger index brings it back
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * @return false when an upsert did not fit
+     */
+    private static boolean apply(OffHeapUserIndex target, UserChangeEvent event) {
+        if (event.getType() == UserChangeEvent.Type.DELETE) {
+            if (event.getMongoId() != null) {
+                target.removeByMongoId(event.getMongoId());
+            }
+            return true;
+        }
+        return target.put(event.getUser());
+    }
+
+    /**
+     * Replay a change buffered during the scan, unless the scan already read a
+     * later version of the user.
+     */
+    private static boolean replay(OffHeapUserIndex target, UserChangeEvent event) {
+        if (event.getType() == UserChangeEvent.Type.UPSERT) {
+            UserRegistration scanned = target.findByAlias(event.getUser().getAlias());
+            if (scanned != null && scanned.getVersion() > event.getUser().getVersion()) {
+                return true;
+            }
+        }
+        return apply(target, event);
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread loader = new Thread(this::rebuild, "user-offheap-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Build a fresh index and swap it in, retrying with backoff until a scan
+     * succeeds so that a Mongo outage at startup does not leave the pod not ready
+     * until the next reset.
+     */
+    void rebuild() {
+        synchronized (pendingLock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            long backoff = initialBackoffMillis;
+            while (!tryRebuild()) {
+                LOGGER.log(Level.WARNING, "Retrying the off-heap user index load in " + backoff + " ms");
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (pendingLock) {
+                pending = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    private boolean tryRebuild() {
+        long start = System.nanoTime();
+        try {
+            OffHeapUserIndex current = index;
+            int slots = Math.max(slotCapacity, current != null ? current.slotCapacity() : 0);
+            long dataBytes = Math.max(dataMegabytes * 1024 * 1024, current != null ? current.maxDataBytes() : 0);
+            while (true) {
+                OffHeapUserIndex fresh = new OffHeapUserIndex(slots, dataBytes);
+                try {
+                    userRepository.forEachUser(loadBatchSize, user -> {
+                        if (!fresh.put(user)) {
+                            throw new IndexFull();
+                        }
+                    });
+                } catch (IndexFull e) {
+                    // fall through: the build is incomplete
+                }
+                boolean full = fresh.isOutOfSlots() || fresh.isOutOfRecordSpace();
+                synchronized (pendingLock) {
+                    if (!full) {
+                        for (UserChangeEvent event : pending) {
+                            if (!replay(fresh, event)) {
+                                full = true;
+                                break;
+                            }
+                        }
+                    }
+                    slots = fresh.slotCapacity();
+                    int grownSlots = fresh.isOutOfSlots() ? Math.min(slots * 2, OffHeapUserIndex.MAX_SLOTS) : slots;
+                    long grownData = fresh.isOutOfRecordSpace() ? Math.min(dataBytes * 2, MAX_DATA_BYTES) : dataBytes;
+                    if (full && (grownSlots != slots || grownData != dataBytes)) {
+                        // keep serving the old index while a larger one is built
+                        LOGGER.warning("Off-heap user index is full at " + slots + " slots and "
+                                + dataBytes / (1024 * 1024) + " MiB; rebuilding with " + grownSlots
+                                + " slots and " + grownData / (1024 * 1024)
+                                + " MiB, raise user.offheap.slots or user.offheap.data-mb");
+                        slots = grownSlots;
+                        dataBytes = grownData;
+                        continue;
+                    }
+                    // users left out of a full index fall through to the other tiers; stop rescanning for them
+                    atCeiling = full;
+                    // published under the lock, so every change is either replayed here or applied to it
+                    index = fresh;
+                }
+                if (full) {
+                    LOGGER.severe("Off-heap user index cannot grow past " + slots + " slots and "
+                            + dataBytes / (1024 * 1024) + " MiB; only part of the tenant is resident");
+                }
+                LOGGER.info("Loaded " + fresh.size() + " users off-heap (" + fresh.reservedBytes() / (1024 * 1024)
+                        + " MiB reserved) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                return true;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load off-heap user index: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Ends a scan as soon as the index under construction rejects a user.
+     */
+    private static final class IndexFull extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        IndexFull() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A key-value store shared by every replica, such as Redis or Memcached. Provide
+ * an implementation as a CDI bean to enable {@link RemoteUserCache}. Calls must
+ * not block: implementations are expected to pipeline them over their
+ * connections so that several batches can be in flight at once.
+ */
+public interface RemoteCacheClient {
+
+    /**
+     * Values of the keys that are present; missing keys are left out of the map.
+     */
+    CompletableFuture<Map<String, byte[]>> getAll(Collection<String> keys);
+
+    /**
+     * Store each value unless its key already holds one of the same or a later
+     * version. The comparison and the write must be one atomic step in the store,
+     * such as a Redis script keeping the version beside the value, so that a slow
+     * writer never puts back an entry a newer one has replaced.
+     */
+    CompletableFuture<Void> putAllIfNewer(Map<String, Versioned> entries, Duration ttl);
+
+    CompletableFuture<Void> deleteAll(Collection<String> keys);
+
+    /**
+     * A value with the version of the user it was encoded from.
+     */
+    record Versioned(long version, byte[] value) {
+    }
+}
@@ -0,0 +1,305 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Shared tier behind the per-pod {@link UserIdIndex}: registrations in
+ * {@link UserRecordCodec} form, keyed by numeric id, in a store every replica
+ * reads through a {@link RemoteCacheClient}. A user loaded from Mongo by one
+ * replica is then a cache hit for all of them. Lookups by id serve profiles and
+ * {@code getUserById}, which never need a credential; entries leave out the
+ * credential digest, and one read back is dropped, so a store outside this
+ * process can never vouch for a password.
+ * <p>
+ * Lookups are queued and sent as multi-gets of up to {@code user.remote-cache.max-batch}
+ * keys, with up to {@code user.remote-cache.pipeline-depth} batches in flight;
+ * concurrent lookups of one id share a single key. The caller waiting for a
+ * batch sends the next one, so there is no dispatcher thread or linger delay:
+ * batches grow by themselves while earlier ones are in flight. A lookup that
+ * fails or outlasts {@code user.remote-cache.timeout-ms} is treated as a miss.
+ * <p>
+ * Upserts seen as {@link UserChangeEvent}s replace the shared entry unless it
+ * already holds a later version. Deletes remove it when the event carries the
+ * id; otherwise a deleted user's entry lives until its TTL runs out.
+ */
+@ApplicationScoped
+public class RemoteUserCache {
+
+    private static final Logger LOGGER = Logger.getLogger(RemoteUserCache.class.getName());
+
+    static final String KEY_PREFIX = "user:id:";
+
+    // leads every value so the encoding can change while replicas of both versions share the store
+    static final byte FORMAT = 1;
+
+    @Inject
+    @ConfigProperty(name = "user.remote-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "user.remote-cache.timeout-ms", defaultValue = "25")
+    long timeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "user.remote-cache.max-batch", defaultValue = "64")
+    int maxBatch;
+
+    @Inject
+    @ConfigProperty(name = "user.remote-cache.pipeline-depth", defaultValue = "4")
+    int pipelineDepth;
+
+    @Inject
+    @ConfigProperty(name = "user.remote-cache.ttl-seconds", defaultValue = "300")
+    long ttlSeconds;
+
+    @Inject
+    private Instance<RemoteCacheClient> clients;
+
+    private final ConcurrentLinkedQueue<Long> queue = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentHashMap<Long, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder keysRequested = new LongAdder();
+
+    private RemoteCacheClient client;
+
+    @PostConstruct
+    void init() {
+        if (enabled && clients.isResolvable()) {
+            use(clients.get());
+        }
+    }
+
+    void use(RemoteCacheClient remote) {
+        client = remote;
+        LOGGER.info("Shared user cache enabled through " + remote.getClass().getName());
+    }
+
+    public boolean isEnabled() {
+        return client != null;
+    }
+
+    /**
+     * Look the id up in the shared tier, waiting at most the configured timeout
+     * or what is left of the request deadline.
+     */
+    public Optional<UserRegistration> findById(long id) {
+        if (client == null) {
+            return Optional.empty();
+        }
+        CompletableFuture<byte[]> value = pending.get(id);
+        if (value == null) {
+            CompletableFuture<byte[]> created = new CompletableFuture<>();
+            value = pending.putIfAbsent(id, created);
+            if (value == null) {
+                value = created;
+                queue.add(id);
+                drain();
+            }
+        }
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Optional<Deadline> deadline = Deadline.current();
+        if (deadline.isPresent()) {
+            waitNanos = Math.min(waitNanos, deadline.get().remainingNanos());
+        }
+        try {
+            byte[] bytes = value.get(waitNanos, TimeUnit.NANOSECONDS);
+            if (bytes == null || bytes.length < 2 || bytes[0] != FORMAT) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            UserRegistration user = UserRecordCodec.decode(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+            user.setCredentialDigest(null);
+            return Optional.of(user);
+        } catch (TimeoutException | ExecutionException | RuntimeException e) {
+            failures.increment();
+            LOGGER.log(Level.FINE, "Shared user cache lookup failed for " + id, e);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Store the user without credentials in the shared tier, unless it holds a
+     * later version, without waiting.
+     */
+    public void put(UserRegistration user) {
+        if (client == null || user.getId() == null) {
+            return;
+        }
+        Map<String, RemoteCacheClient.Versioned> entry = Map.of(KEY_PREFIX + user.getId(),
+                new RemoteCacheClient.Versioned(user.getVersion(), encode(user)));
+        client.putAllIfNewer(entry, Duration.ofSeconds(ttlSeconds))
+                .whenComplete((ignored, failure) -> recordFailure("store", failure));
+    }
+
+    public void invalidate(Long id) {
+        if (client == null || id == null) {
+            return;
+        }
+        client.deleteAll(List.of(KEY_PREFIX + id))
+                .whenComplete((ignored, failure) -> recordFailure("invalidate", failure));
+    }
+
+    void onUserChange(@Observes UserChangeEvent event) {
+        if (event.getType() == UserChangeEvent.Type.UPSERT) {
+            put(event.getUser());
+        } else if (event.getType() == UserChangeEvent.Type.DELETE) {
+            invalidate(event.getUserId());
+        }
+    }
+
+    static byte[] encode(UserRegistration user) {
+        byte[] record = UserRecordCodec.encodeWithoutCredential(user);
+        byte[] value = new byte[record.length + 1];
+        value[0] = FORMAT;
+        System.arraycopy(record, 0, value, 1, record.length);
+        return value;
+    }
+
+    /**
+     * Send queued keys while the pipeline has room. Only one thread builds
+     * batches at a time; a completing batch calls back in to send what queued up
+     * behind it.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && inFlight.get() < pipelineDepth) {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                while (!queue.isEmpty() && inFlight.get() < pipelineDepth) {
+                    send(poll());
+                }
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    private List<Long> poll() {
+        List<Long> ids = new ArrayList<>(Math.min(maxBatch, 16));
+        Long id;
+        while (ids.size() < maxBatch && (id = queue.poll()) != null) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private void send(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            keys.add(KEY_PREFIX + id);
+        }
+        inFlight.incrementAndGet();
+        batches.increment();
+        keysRequested.add(keys.size());
+        CompletableFuture<Map<String, byte[]>> response;
+        try {
+            // a store that never answers would otherwise hold its batch's slot in the pipeline
+            response = client.getAll(keys).orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((values, failure) -> {
+            inFlight.decrementAndGet();
+            for (Long id : ids) {
+                CompletableFuture<byte[]> value = pending.remove(id);
+                if (value == null) {
+                    continue;
+                }
+                if (failure != null) {
+                    value.completeExceptionally(failure);
+                } else {
+                    value.complete(values.get(KEY_PREFIX + id));
+                }
+            }
+            drain();
+        });
+    }
+
+    private void recordFailure(String operation, Throwable failure) {
+        if (failure != null) {
+            failures.increment();
+            LOGGER.log(Level.FINE, "Shared user cache " + operation + " failed", failure);
+        }
+    }
+
+    @Gauge(name = "user.remote-cache.hits", unit = MetricUnits.NONE, absolute = true,
+            description = "Lookups answered by the shared user cache")
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Gauge(name = "user.remote-cache.misses", unit = MetricUnits.NONE, absolute = true,
+            description = "Lookups the shared user cache did not hold")
+    public long misses() {
+        return misses.sum();
+    }
+
+    @Gauge(name = "user.remote-cache.failures", unit = MetricUnits.NONE, absolute = true,
+            description = "Shared user cache calls that failed or timed out")
+    public long failures() {
+        return failures.sum();
+    }
+
+    @Gauge(name = "user.remote-cache.batches", unit = MetricUnits.NONE, absolute = true,
+            description = "Multi-get batches sent to the shared user cache")
+    public long batches() {
+        return batches.sum();
+    }
+
+    @Gauge(name = "user.remote-cache.keys-requested", unit = MetricUnits.NONE, absolute = true,
+            description = "Keys requested across all multi-get batches")
+    public long keysRequested() {
+        return keysRequested.sum();
+    }
+}
@@ -0,0 +1,45 @@
+package com.angrysurfer.atomic.user.cache;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import com.angrysurfer.atomic.user.search.UserSearchIndex;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Reports not-ready until the user snapshot has been loaded into the id index and,
+ * when enabled, the off-heap index has finished its first load. The search index
+ * is reported but does not gate readiness, since search falls back to Mongo.
+ */
+@Readiness
+@ApplicationScoped
+public class UserCacheReadinessCheck implements HealthCheck {
+
+    @Inject
+    private UserSnapshotService snapshotService;
+
+    @Inject
+    private OffHeapUserStore offHeapStore;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @Inject
+    private UserIdIndex userIdIndex;
+
+    @Inject
+    private UserSearchIndex searchIndex;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("user-cache")
+                .status(snapshotService.isLoaded() && offHeapStore.isReady())
+                .withData("entries", userCache.size())
+                .withData("id-entries", userIdIndex.size())
+                .withData("search-indexed", searchIndex.isReady())
+                .build();
+    }
+}
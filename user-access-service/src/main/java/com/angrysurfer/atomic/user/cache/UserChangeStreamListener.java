@@ -0,0 +1,206 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Tails the atomic.users change stream and republishes every change as a
+ * {@link UserChangeEvent}, so in-process caches on every replica stay coherent
+ * with writes made anywhere. The position of the last applied change is handed
+ * to {@link UserSnapshotService}, which saves it with the snapshot, so a restart
+ * replays exactly the changes the restored cache has not seen.
+ */
+@ApplicationScoped
+public class UserChangeStreamListener {
+
+    private static final Logger LOGGER = Logger.getLogger(UserChangeStreamListener.class.getName());
+
+    // $changeStream is only supported on replica sets / sharded clusters
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    // servers before 6.0 do not know fullDocumentBeforeChange
+    private static final int UNKNOWN_FIELD = 40415;
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Inject
+    @ConfigProperty(name = "user.changestream.enabled", defaultValue = "true")
+    boolean changeStreamEnabled;
+
+    @Inject
+    UserRegistrationRepository userRepository;
+
+    @Inject
+    UserSnapshotService snapshotService;
+
+    @Inject
+    Event<UserChangeEvent> userChanged;
+
+    volatile boolean running;
+    private Thread worker;
+    // ask for deleted documents so that delete events carry the user's numeric id and alias
+    private boolean preImages = true;
+
+    void onStart(@Observes @RuntimeStart Object event) {
+        if (!changeStreamEnabled) {
+            LOGGER.info("User change stream listener is disabled");
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "user-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void run() {
+        try {
+            // changes must land on top of the restored snapshot, never under it
+            while (running && !snapshotService.awaitLoaded(1, TimeUnit.SECONDS)) {
+                LOGGER.fine("Waiting for the user snapshot before watching atomic.users");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            userRepository.enableChangeStreamPreImages();
+        } catch (MongoException e) {
+            LOGGER.info("Could not enable change stream pre-images on atomic.users (" + e.getMessage()
+                    + "); deletes only carry the user's _id unless they are enabled");
+        }
+        BsonDocument resumeToken = snapshotService.resumeToken();
+        long backoff = 1000;
+        LOGGER.info("Watching atomic.users" + (resumeToken != null ? " from the snapshot's resume token" : ""));
+
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = userRepository.watch(resumeToken, preImages)
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .cursor()) {
+                backoff = 1000;
+                boolean open = true;
+                while (running && open) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        open = apply(change);
+                    }
+                    BsonDocument token = open ? cursor.getResumeToken() : null;
+                    if (token != null) {
+                        resumeToken = token;
+                    } else if (!open) {
+                        resumeToken = null;
+                    }
+                    if (!Objects.equals(resumeToken, snapshotService.resumeToken())) {
+                        snapshotService.changesAppliedThrough(resumeToken);
+                    }
+                }
+            } catch (MongoServerException e) {
+                if (e.getCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    LOGGER.warning("MongoDB deployment does not support change streams; "
+                            + "user caches will only see local writes");
+                    running = false;
+                    return;
+                }
+                if (e.getCode() == UNKNOWN_FIELD && preImages) {
+                    LOGGER.warning("MongoDB deployment does not support change stream pre-images; "
+                            + "deletes only carry the user's _id");
+                    preImages = false;
+                    continue;
+                }
+                if (e.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    LOGGER.warning("Change stream resume point is no longer in the oplog; resetting user caches");
+                    resumeToken = null;
+                    userChanged.fire(UserChangeEvent.reset());
+                    snapshotService.changesAppliedThrough(null);
+                }
+                backoff = pause(backoff, e);
+            } catch (MongoException e) {
+                backoff = pause(backoff, e);
+            }
+        }
+    }
+
+    /**
+     * @return false when the stream was invalidated and has to be reopened from scratch
+     */
+    boolean apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                Document doc = change.getFullDocument();
+                if (doc != null) {
+                    userChanged.fire(UserChangeEvent.upsert(userRepository.documentToUserRegistration(doc)));
+                } else {
+                    // the post-image lookup found nothing: deleted after this update
+                    userChanged.fire(UserChangeEvent.delete(mongoId(change.getDocumentKey())));
+                }
+            }
+            case DELETE -> {
+                Document deleted = change.getFullDocumentBeforeChange();
+                Long userId = deleted != null && deleted.get("id") instanceof Number id ? id.longValue() : null;
+                String alias = deleted != null ? deleted.getString("alias") : null;
+                userChanged.fire(UserChangeEvent.delete(mongoId(change.getDocumentKey()), userId, alias));
+            }
+            case DROP, RENAME, DROP_DATABASE -> userChanged.fire(UserChangeEvent.reset());
+            case INVALIDATE -> {
+                userChanged.fire(UserChangeEvent.reset());
+                return false;
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    private static String mongoId(BsonDocument documentKey) {
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        return id != null && id.isObjectId() ? id.asObjectId().getValue().toHexString() : null;
+    }
+
+    private long pause(long backoff, MongoException e) {
+        if (!running) {
+            return backoff;
+        }
+        LOGGER.log(Level.WARNING, "User change stream failed, retrying in " + backoff + " ms: " + e.getMessage());
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+            running = false;
+            Thread.currentThread().interrupt();
+        }
+        return Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+    }
+}
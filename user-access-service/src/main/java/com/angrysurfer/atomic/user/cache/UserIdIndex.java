@@ -0,0 +1,167 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Resident users keyed by their client-facing numeric id, held in a
+ * {@link LongObjectHashMap} so lookups never box. Misses go to the shared
+ * {@link RemoteUserCache}, then to Mongo through the id index, which is created on
+ * startup; a user read from Mongo is shared with the other replicas. Nothing read
+ * here needs a credential, so this is the tier the startup snapshot restores into.
+ */
+@ApplicationScoped
+public class UserIdIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(UserIdIndex.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "user.id-index.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    @Inject
+    UserRegistrationRepository userRepository;
+
+    @Inject
+    RemoteUserCache remoteCache;
+
+    private LongObjectHashMap<UserRegistration> byId;
+
+    // Change-stream deletes only carry _id, so track which id each resident record lives under
+    private final ConcurrentHashMap<String, Long> idByMongoId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        byId = new LongObjectHashMap<>(Math.min(maxEntries, 1 << 16));
+    }
+
+    void onStart(@Observes @RuntimeStart Object event) {
+        Thread indexer = new Thread(() -> {
+            try {
+                userRepository.ensureIdIndex();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to create index on atomic.users.id: " + e.getMessage());
+            }
+        }, "user-id-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    public Optional<UserRegistration> findById(long id) {
+        UserRegistration resident = byId.get(id);
+        if (resident != null) {
+            return Optional.of(resident);
+        }
+        Optional<UserRegistration> shared = remoteCache.findById(id);
+        if (shared.isPresent()) {
+            put(shared.get());
+            return shared;
+        }
+        Optional<UserRegistration> loaded = userRepository.findById(id).map(UserRegistration::withoutSecrets);
+        loaded.ifPresent(user -> {
+            put(user);
+            remoteCache.put(user);
+        });
+        return loaded;
+    }
+
+    /**
+     * Writers are serialized so the table and the mongoId mapping always agree;
+     * readers go straight to the table.
+     */
+    synchronized void put(UserRegistration user) {
+        if (user.getId() == null) {
+            return;
+        }
+        if (byId.size() >= maxEntries && byId.get(user.getId()) == null) {
+            forget(byId.evictOne());
+        }
+        store(user);
+    }
+
+    /**
+     * Take a restored user unless its id is already resident or the index is
+     * full: restored entries never push out users read since startup.
+     *
+     * @return false once the index is full
+     */
+    synchronized boolean restore(UserRegistration user) {
+        if (byId.size() >= maxEntries) {
+            return false;
+        }
+        if (user.getId() != null && byId.get(user.getId()) == null) {
+            store(user);
+        }
+        return true;
+    }
+
+    /**
+     * Refresh resident records on upsert and drop them on delete, looking the id
+     * up by mongoId since that is all a delete carries.
+     */
+    synchronized void onUserChange(@Observes UserChangeEvent event) {
+        switch (event.getType()) {
+            case UPSERT -> {
+                UserRegistration user = event.getUser();
+                Long residentId = event.getMongoId() != null ? idByMongoId.get(event.getMongoId()) : null;
+                if (residentId != null && !residentId.equals(user.getId())) {
+                    forget(byId.remove(residentId));
+                }
+                if (user.getId() != null && byId.get(user.getId()) != null) {
+                    store(user);
+                }
+            }
+            case DELETE -> {
+                Long residentId = event.getMongoId() != null ? idByMongoId.get(event.getMongoId()) : null;
+                if (residentId != null) {
+                    forget(byId.remove(residentId));
+                }
+            }
+            case RESET -> {
+                byId.clear();
+                idByMongoId.clear();
+            }
+        }
+    }
+
+    private void store(UserRegistration user) {
+        forget(byId.get(user.getId()));
+        byId.put(user.getId(), user);
+        if (user.getMongoId() != null) {
+            idByMongoId.put(user.getMongoId(), user.getId());
+        }
+    }
+
+    private void forget(UserRegistration removed) {
+        if (removed != null && removed.getMongoId() != null) {
+            idByMongoId.remove(removed.getMongoId(), removed.getId());
+        }
+    }
+
+    public List<UserRegistration> values() {
+        return byId.values();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    int maxEntries() {
+        return maxEntries;
+    }
+}
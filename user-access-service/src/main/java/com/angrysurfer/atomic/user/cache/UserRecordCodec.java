@@ -0,0 +1,210 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.bson.types.ObjectId;
+
+import com.angrysurfer.atomic.user.model.CredentialDigest;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+/**
+ * Compact binary encoding of a secret-free {@link UserRegistration}, shared by the
+ * local snapshot file and the other binary user stores.
+ *
+ * <pre>
+ * flags:u8  [id:i64]  [mongoId:12 bytes]  [version:i64]  [lockedUntil:i64]  alias  email  avatarUrl  [salt:16 digest:32]
+ * </pre>
+ * Strings are an unsigned 16-bit UTF-8 length followed by the bytes; 0xFFFF marks null.
+ * The identifier is never encoded, only its {@link CredentialDigest}, and that only
+ * for stores held inside this process.
+ */
+public final class UserRecordCodec {
+
+    private static final int FLAG_ADMIN = 1;
+    private static final int FLAG_ID = 1 << 1;
+    private static final int FLAG_MONGO_ID = 1 << 2;
+    private static final int FLAG_DIGEST = 1 << 3;
+    private static final int FLAG_VERSION = 1 << 4;
+    private static final int FLAG_LOCKED = 1 << 5;
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    // flags, id, mongoId, version, lockedUntil, three maximal strings and a digest
+    static final int MAX_RECORD_SIZE = 1 + Long.BYTES + 12 + Long.BYTES + Long.BYTES
+            + 3 * (Short.BYTES + NULL_STRING - 1) + CredentialDigest.SALT_LENGTH + CredentialDigest.DIGEST_LENGTH;
+
+    private UserRecordCodec() {
+    }
+
+    public static byte[] encode(UserRegistration user) {
+        return encode(user, user.getCredentialDigest());
+    }
+
+    /**
+     * Encode without the credential digest, for copies that leave the process.
+     * A decoded record then matches no password, so validation reads the user
+     * from Mongo.
+     */
+    public static byte[] encodeWithoutCredential(UserRegistration user) {
+        return encode(user, null);
+    }
+
+    private static byte[] encode(UserRegistration user, CredentialDigest credential) {
+        byte[] alias = utf8(user.getAlias());
+        byte[] email = utf8(user.getEmail());
+        byte[] avatarUrl = utf8(user.getAvatarUrl());
+
+        int flags = (user.isAdmin() ? FLAG_ADMIN : 0)
+                | (user.getId() != null ? FLAG_ID : 0)
+                | (user.getMongoId() != null ? FLAG_MONGO_ID : 0)
+                | (credential != null ? FLAG_DIGEST : 0)
+                | (user.getVersion() != 0 ? FLAG_VERSION : 0)
+                | (user.getLockedUntil() != 0 ? FLAG_LOCKED : 0);
+
+        int size = 1
+                + (user.getId() != null ? Long.BYTES : 0)
+                + (user.getMongoId() != null ? 12 : 0)
+                + (user.getVersion() != 0 ? Long.BYTES : 0)
+                + (user.getLockedUntil() != 0 ? Long.BYTES : 0)
+                + stringSize(alias) + stringSize(email) + stringSize(avatarUrl)
+                + (credential != null ? CredentialDigest.SALT_LENGTH + CredentialDigest.DIGEST_LENGTH : 0);
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put((byte) flags);
+        if (user.getId() != null) {
+            out.putLong(user.getId());
+        }
+        if (user.getMongoId() != null) {
+            out.put(new ObjectId(user.getMongoId()).toByteArray());
+        }
+        if (user.getVersion() != 0) {
+            out.putLong(user.getVersion());
+        }
+        if (user.getLockedUntil() != 0) {
+            out.putLong(user.getLockedUntil());
+        }
+        putString(out, alias);
+        putString(out, email);
+        putString(out, avatarUrl);
+        if (credential != null) {
+            out.put(credential.getSalt());
+            out.put(credential.getDigest());
+        }
+        return out.array();
+    }
+
+    /**
+     * Decode one record starting at the buffer's position, leaving the position
+     * just past it.
+     */
+    public static UserRegistration decode(ByteBuffer in) {
+        int flags = in.get() & 0xFF;
+        UserRegistration user = new UserRegistration();
+        user.setAdmin((flags & FLAG_ADMIN) != 0);
+        if ((flags & FLAG_ID) != 0) {
+            user.setId(in.getLong());
+        }
+        if ((flags & FLAG_MONGO_ID) != 0) {
+            byte[] objectId = new byte[12];
+            in.get(objectId);
+            user.setMongoId(new ObjectId(objectId).toHexString());
+        }
+        if ((flags & FLAG_VERSION) != 0) {
+            user.setVersion(in.getLong());
+        }
+        if ((flags & FLAG_LOCKED) != 0) {
+            user.setLockedUntil(in.getLong());
+        }
+        user.setAlias(getString(in));
+        user.setEmail(getString(in));
+        user.setAvatarUrl(getString(in));
+        if ((flags & FLAG_DIGEST) != 0) {
+            byte[] salt = new byte[CredentialDigest.SALT_LENGTH];
+            byte[] digest = new byte[CredentialDigest.DIGEST_LENGTH];
+            in.get(salt);
+            in.get(digest);
+            user.setCredentialDigest(new CredentialDigest(salt, digest));
+        }
+        return user;
+    }
+
+    /**
+     * Whether the record at the given absolute position has this UTF-8 alias,
+     * compared in place without decoding the record.
+     */
+    static boolean aliasEquals(ByteBuffer in, int position, byte[] alias) {
+        int flags = in.get(position) & 0xFF;
+        int at = position + 1
+                + ((flags & FLAG_ID) != 0 ? Long.BYTES : 0)
+                + ((flags & FLAG_MONGO_ID) != 0 ? 12 : 0)
+                + ((flags & FLAG_VERSION) != 0 ? Long.BYTES : 0)
+                + ((flags & FLAG_LOCKED) != 0 ? Long.BYTES : 0);
+        if ((in.getShort(at) & 0xFFFF) != alias.length) {
+            return false;
+        }
+        return bytesEqual(in, at + Short.BYTES, alias);
+    }
+
+    /**
+     * Whether the record at the given absolute position has this 12-byte
+     * ObjectId, compared in place without decoding the record.
+     */
+    static boolean mongoIdEquals(ByteBuffer in, int position, byte[] objectId) {
+        int flags = in.get(position) & 0xFF;
+        if ((flags & FLAG_MONGO_ID) == 0) {
+            return false;
+        }
+        return bytesEqual(in, position + 1 + ((flags & FLAG_ID) != 0 ? Long.BYTES : 0), objectId);
+    }
+
+    private static boolean bytesEqual(ByteBuffer in, int position, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (in.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String field too long to encode: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return Short.BYTES + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
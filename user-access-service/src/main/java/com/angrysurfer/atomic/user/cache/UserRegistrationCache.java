@@ -0,0 +1,115 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * In-process cache of recently used registrations keyed by alias. Entries never
+ * carry the identifier, only a {@link com.angrysurfer.atomic.user.model.CredentialDigest},
+ * which never leaves this process: the cache is not snapshotted or shared.
+ */
+@ApplicationScoped
+public class UserRegistrationCache {
+
+    @Inject
+    @ConfigProperty(name = "user.cache.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    private final ConcurrentHashMap<String, UserRegistration> byAlias = new ConcurrentHashMap<>();
+
+    // Change-stream deletes only carry _id, so track which alias each resident record lives under
+    private final ConcurrentHashMap<String, String> aliasByMongoId = new ConcurrentHashMap<>();
+
+    public Optional<UserRegistration> findByAlias(String alias) {
+        if (alias == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byAlias.get(alias));
+    }
+
+    /**
+     * Cache a registration, stripping the identifier if it is still present. When
+     * the cache is full an arbitrary entry is evicted to make room.
+     */
+    public void put(UserRegistration user) {
+        if (user.getAlias() == null) {
+            return;
+        }
+        UserRegistration resident = user.getIdentifier() != null ? user.withoutSecrets() : user;
+        if (byAlias.size() >= maxEntries && !byAlias.containsKey(resident.getAlias())) {
+            Iterator<String> victims = byAlias.keySet().iterator();
+            if (victims.hasNext()) {
+                invalidate(victims.next());
+            }
+        }
+        UserRegistration previous = byAlias.put(resident.getAlias(), resident);
+        if (previous != null && previous.getMongoId() != null
+                && !previous.getMongoId().equals(resident.getMongoId())) {
+            aliasByMongoId.remove(previous.getMongoId(), resident.getAlias());
+        }
+        if (resident.getMongoId() != null) {
+            aliasByMongoId.put(resident.getMongoId(), resident.getAlias());
+        }
+    }
+
+    public void invalidate(String alias) {
+        if (alias == null) {
+            return;
+        }
+        UserRegistration removed = byAlias.remove(alias);
+        if (removed != null && removed.getMongoId() != null) {
+            aliasByMongoId.remove(removed.getMongoId(), alias);
+        }
+    }
+
+    public void clear() {
+        byAlias.clear();
+        aliasByMongoId.clear();
+    }
+
+    /**
+     * Apply a change to atomic.users. Upserts refresh records that are already
+     * resident (following an alias rename if there was one) but do not pull new
+     * users into the cache; deletes evict by _id.
+     */
+    void onUserChange(@Observes UserChangeEvent event) {
+        switch (event.getType()) {
+            case UPSERT -> {
+                UserRegistration user = event.getUser();
+                String residentAlias = event.getMongoId() != null ? aliasByMongoId.get(event.getMongoId()) : null;
+                if (residentAlias == null && !byAlias.containsKey(user.getAlias())) {
+                    return;
+                }
+                if (residentAlias != null && !residentAlias.equals(user.getAlias())) {
+                    invalidate(residentAlias);
+                }
+                put(user);
+            }
+            case DELETE -> {
+                String alias = event.getMongoId() != null ? aliasByMongoId.get(event.getMongoId()) : null;
+                invalidate(alias);
+            }
+            case RESET -> clear();
+        }
+    }
+
+    public Collection<UserRegistration> values() {
+        return Collections.unmodifiableCollection(byAlias.values());
+    }
+
+    public int size() {
+        return byAlias.size();
+    }
+}
@@ -0,0 +1,218 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.bson.BsonDocument;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+/**
+ * Reads and writes the local user snapshot through memory-mapped I/O.
+ *
+ * <pre>
+ * magic:i32  version:i32  createdAt:i64  count:i32  tokenLength:i32  resumeToken  record*
+ * </pre>
+ * The resume token is the change stream position the records are current with,
+ * as UTF-8 JSON (length -1 when there is none). Saving the two in one file means
+ * a restart replays exactly the changes the records have not seen.
+ * Records use {@link UserRecordCodec} without credential digests, so the file holds
+ * nothing that can be attacked offline; restored users serve lookups by id, and
+ * logins are still verified against Mongo. Writes go to an owner-only sibling temp file that is
+ * atomically moved into place, so a crash mid-dump never leaves a torn snapshot.
+ */
+public final class UserSnapshotFile {
+
+    static final int MAGIC = 0x55534E50; // "USNP"
+
+    // 2: records carry the user version; 3: and never a credential digest; 4: resume token in the header
+    static final int VERSION = 4;
+
+    private static final int HEADER_SIZE = Integer.BYTES * 4 + Long.BYTES;
+
+    private static final int COUNT_OFFSET = Integer.BYTES * 2 + Long.BYTES;
+
+    private static final int WINDOW_SIZE = 32 * 1024 * 1024;
+
+    private static final FileAttribute<?> OWNER_ONLY =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+
+    private UserSnapshotFile() {
+    }
+
+    public static int write(Path path, Iterable<UserRegistration> users) throws IOException {
+        return write(path, users, null);
+    }
+
+    /**
+     * Write the given registrations, mapping the file in fixed windows so the
+     * snapshot size is not bounded by a single mapping.
+     *
+     * @param resumeToken the change stream position every record has caught up with, or null
+     * @return the number of records written
+     */
+    public static int write(Path path, Iterable<UserRegistration> users, BsonDocument resumeToken)
+            throws IOException {
+        return write(path, users, resumeToken, WINDOW_SIZE);
+    }
+
+    static int write(Path path, Iterable<UserRegistration> users, BsonDocument resumeToken, int windowSize)
+            throws IOException {
+        byte[] token = resumeToken != null ? resumeToken.toJson().getBytes(StandardCharsets.UTF_8) : null;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+
+        int count = 0;
+        try (FileChannel channel = create(temp)) {
+            long windowStart = 0;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, 0, windowSize);
+            window.putInt(MAGIC);
+            window.putInt(VERSION);
+            window.putLong(System.currentTimeMillis());
+            window.putInt(0);
+            window.putInt(token != null ? token.length : -1);
+            if (token != null) {
+                window.put(token);
+            }
+
+            for (UserRegistration user : users) {
+                byte[] record = UserRecordCodec.encodeWithoutCredential(user);
+                if (window.remaining() < record.length) {
+                    windowStart += window.position();
+                    window.force();
+                    window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart,
+                            Math.max(windowSize, record.length));
+                }
+                window.put(record);
+                count++;
+            }
+            long length = windowStart + window.position();
+            window.force();
+
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, count), COUNT_OFFSET);
+            channel.truncate(length);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Stream every record in the snapshot to the consumer, mapping the file in
+     * windows so that its size is not bounded by a single mapping.
+     *
+     * @return the number of records read, or -1 if there is no usable snapshot
+     */
+    public static int read(Path path, Consumer<UserRegistration> consumer) throws IOException {
+        return readWhile(path, user -> {
+            consumer.accept(user);
+            return true;
+        }, WINDOW_SIZE);
+    }
+
+    /**
+     * Stream records to the consumer until it returns false.
+     *
+     * @return the number of records handed to the consumer, or -1 if there is no usable snapshot
+     */
+    public static int readWhile(Path path, Predicate<UserRegistration> consumer) throws IOException {
+        return readWhile(path, consumer, WINDOW_SIZE);
+    }
+
+    static int read(Path path, Consumer<UserRegistration> consumer, int windowSize) throws IOException {
+        return readWhile(path, user -> {
+            consumer.accept(user);
+            return true;
+        }, windowSize);
+    }
+
+    static int readWhile(Path path, Predicate<UserRegistration> consumer, int windowSize) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return -1;
+            }
+            long windowStart = 0;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, windowSize));
+            if (window.getInt() != MAGIC || window.getInt() != VERSION) {
+                return -1;
+            }
+            window.getLong(); // createdAt
+            int count = window.getInt();
+            int tokenLength = window.getInt();
+            window.position(window.position() + Math.max(tokenLength, 0));
+            for (int i = 0; i < count; i++) {
+                // remap before a record could run past the window, unless the file ends first
+                if (window.remaining() < UserRecordCodec.MAX_RECORD_SIZE && windowStart + window.limit() < size) {
+                    windowStart += window.position();
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(size - windowStart, windowSize));
+                }
+                if (!consumer.test(UserRecordCodec.decode(window))) {
+                    return i + 1;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The change stream position the snapshot's records are current with.
+     *
+     * @return the resume token, or null if there is no usable snapshot or it has none
+     */
+    public static BsonDocument readResumeToken(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) < HEADER_SIZE) {
+                return null;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            header.getLong(); // createdAt
+            header.getInt(); // count
+            int tokenLength = header.getInt();
+            if (tokenLength < 0 || tokenLength > channel.size() - HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer token = ByteBuffer.allocate(tokenLength);
+            channel.read(token, HEADER_SIZE);
+            return BsonDocument.parse(new String(token.array(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static FileChannel create(Path path) throws IOException {
+        Set<StandardOpenOption> options = Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return FileChannel.open(path, options, OWNER_ONLY);
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system; fall back to the directory's defaults
+            return FileChannel.open(path, options);
+        }
+    }
+}
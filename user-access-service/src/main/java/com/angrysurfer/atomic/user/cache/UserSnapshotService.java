@@ -0,0 +1,153 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bson.BsonDocument;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Periodically dumps the users resident in the {@link UserIdIndex} to a local
+ * snapshot and loads them back on startup, so a freshly deployed pod answers
+ * lookups by id, profiles and relationship checks without sending them all to
+ * Mongo. Snapshots hold no credentials, so logins are not served from them.
+ * The load stops once the index is full and never evicts anything. Readiness
+ * stays down until it has finished, and the change stream only starts once it
+ * has, so restored entries never overwrite newer changes. Each snapshot carries
+ * the resume token of the last change applied before the index was copied, and
+ * the change stream resumes from it after a restart.
+ */
+@ApplicationScoped
+public class UserSnapshotService {
+
+    private static final Logger LOGGER = Logger.getLogger(UserSnapshotService.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "user.snapshot.enabled", defaultValue = "true")
+    boolean snapshotEnabled;
+
+    @Inject
+    @ConfigProperty(name = "user.snapshot.path", defaultValue = "data/user-snapshot.bin")
+    String snapshotPath;
+
+    @Inject
+    @ConfigProperty(name = "user.snapshot.interval.seconds", defaultValue = "300")
+    int snapshotInterval;
+
+    @Inject
+    UserIdIndex userIdIndex;
+
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private volatile BsonDocument resumeToken;
+    private ScheduledExecutorService scheduler;
+
+    void onStart(@Observes @RuntimeStart Object event) {
+        if (!snapshotEnabled) {
+            LOGGER.info("User snapshot is disabled");
+            loaded.countDown();
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::load);
+        scheduler.scheduleAtFixedRate(this::dump, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            scheduler.shutdown();
+            try {
+                if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                    scheduler.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                scheduler.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            // Leave a fresh snapshot behind for the next start
+            dump();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Wait for the startup load to finish, successfully or not.
+     *
+     * @return false if it is still running after the timeout
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+        return loaded.await(timeout, unit);
+    }
+
+    /**
+     * The change stream position the cache is current with: the one restored
+     * with the snapshot until the change stream reports its own progress.
+     */
+    public BsonDocument resumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * Record that every change up to the given token has reached the cache.
+     *
+     * @param token the stream position, or null once the caches were reset
+     */
+    public void changesAppliedThrough(BsonDocument token) {
+        resumeToken = token;
+    }
+
+    void load() {
+        long start = System.nanoTime();
+        try {
+            // anything already resident was read from Mongo after the snapshot was taken
+            int resident = userIdIndex.size();
+            int count = UserSnapshotFile.readWhile(Path.of(snapshotPath), userIdIndex::restore);
+            if (count < 0) {
+                LOGGER.info("No usable user snapshot at " + snapshotPath + ", starting cold");
+            } else {
+                resumeToken = UserSnapshotFile.readResumeToken(Path.of(snapshotPath));
+                LOGGER.info("Restored " + (userIdIndex.size() - resident) + " of " + count
+                        + " users read from snapshot in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load user snapshot " + snapshotPath + ": " + e.getMessage(), e);
+        } finally {
+            loaded.countDown();
+        }
+    }
+
+    void dump() {
+        if (!isLoaded()) {
+            // never overwrite a snapshot we have not read yet
+            return;
+        }
+        try {
+            // taken before the copy: replaying a change the copy already holds is harmless, missing one is not
+            BsonDocument token = resumeToken;
+            int count = UserSnapshotFile.write(Path.of(snapshotPath), userIdIndex.values(), token);
+            LOGGER.fine("Wrote " + count + " users to snapshot " + snapshotPath);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write user snapshot " + snapshotPath + ": " + e.getMessage(), e);
+        }
+    }
+}
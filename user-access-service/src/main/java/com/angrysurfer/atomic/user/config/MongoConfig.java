@@ -1,23 +1,60 @@
 package com.angrysurfer.atomic.user.config;
 
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.tracing.MongoTracingListener;
+import com.angrysurfer.atomic.user.tracing.Tracing;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class MongoConfig {
 
+    @Inject
     @ConfigProperty(name = "mongodb.connection.string", defaultValue = "mongodb://localhost:27017")
     String connectionString;
 
+    @Inject
     @ConfigProperty(name = "mongodb.database.name", defaultValue = "atomic")
     String databaseName;
 
+    @Inject
+    @ConfigProperty(name = "mongodb.server-selection-timeout-ms", defaultValue = "5000")
+    long serverSelectionTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "mongodb.connect-timeout-ms", defaultValue = "5000")
+    long connectTimeoutMs;
+
+    @Inject
+    Tracing tracing;
+
     @Produces
     @ApplicationScoped
     public MongoClient mongoClient() {
-        return MongoClients.create(connectionString);
+        return MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(connectionString))
+                // reads under a request deadline stop waiting sooner; these bound everything else
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(serverSelectionTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout((int) connectTimeoutMs, TimeUnit.MILLISECONDS))
+                .addCommandListener(new MongoTracingListener(tracing.tracer()))
+                .build());
+    }
+
+    /**
+     * Runs when the application scope is destroyed, after the web server has
+     * stopped and in-flight requests have drained.
+     */
+    public void closeMongoClient(@Disposes MongoClient mongoClient) {
+        mongoClient.close();
     }
 }
\ No newline at end of file
@@ -1,5 +1,11 @@
 package com.angrysurfer.atomic.user.config;
 
+import com.angrysurfer.atomic.user.rest.AdminAuthorizationFilter;
+import com.angrysurfer.atomic.user.rest.DeadlineExceededMapper;
+import com.angrysurfer.atomic.user.rest.DeadlineFilter;
+import com.angrysurfer.atomic.user.rest.MongoUnavailableMapper;
+import com.angrysurfer.atomic.user.rest.OwnerAuthorizationFilter;
+import com.angrysurfer.atomic.user.rest.TracingFilter;
 import com.angrysurfer.atomic.user.rest.UserResource;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -16,6 +22,12 @@ public class UserApplication extends Application {
     public Set<Class<?>> getClasses() {
         Set<Class<?>> classes = new HashSet<>();
         classes.add(UserResource.class);
+        classes.add(TracingFilter.class);
+        classes.add(DeadlineFilter.class);
+        classes.add(AdminAuthorizationFilter.class);
+        classes.add(OwnerAuthorizationFilter.class);
+        classes.add(DeadlineExceededMapper.class);
+        classes.add(MongoUnavailableMapper.class);
         return classes;
     }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.angrysurfer.atomic.user.deadline;
+
+/**
+ * A read did not finish before the request's {@link Deadline}.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,54 @@
+package com.angrysurfer.atomic.user.deadline;
+
+import java.time.Duration;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Turns a request's {@value #HEADER} header (milliseconds), or a gRPC call's
+ * {@code grpc-timeout}, into its {@link Deadline}: missing or malformed values get
+ * {@code user.deadline.default-ms} and nothing may exceed {@code user.deadline.max-ms}.
+ */
+@ApplicationScoped
+public class DeadlinePolicy {
+
+    public static final String HEADER = "X-Request-Timeout";
+
+    @Inject
+    @ConfigProperty(name = "user.deadline.default-ms", defaultValue = "3000")
+    long defaultMs;
+
+    @Inject
+    @ConfigProperty(name = "user.deadline.max-ms", defaultValue = "10000")
+    long maxMs;
+
+    public Deadline forRequest(String timeoutHeader) {
+        Duration requested = null;
+        if (timeoutHeader != null) {
+            try {
+                long millis = Long.parseLong(timeoutHeader.trim());
+                if (millis > 0) {
+                    requested = Duration.ofMillis(millis);
+                }
+            } catch (NumberFormatException e) {
+                // keep the default
+            }
+        }
+        return forTimeout(requested);
+    }
+
+    /**
+     * The deadline for a request that asked for {@code requested}, or for the
+     * default when it asked for nothing.
+     */
+    public Deadline forTimeout(Duration requested) {
+        Duration max = Duration.ofMillis(maxMs);
+        if (requested == null) {
+            requested = Duration.ofMillis(defaultMs);
+        }
+        return Deadline.after(requested.compareTo(max) > 0 ? max : requested);
+    }
+}
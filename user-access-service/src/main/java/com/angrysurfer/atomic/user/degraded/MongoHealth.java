@@ -0,0 +1,151 @@
+package com.angrysurfer.atomic.user.degraded;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bson.Document;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import com.mongodb.client.MongoClient;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Pings Mongo every {@code user.degraded.probe-interval-ms} and declares the
+ * service degraded when a ping fails or takes longer than
+ * {@code user.degraded.probe-timeout-ms}, until one succeeds again. Pings run on
+ * their own virtual thread, so a ping stuck in server selection delays only the
+ * next probe, never a request. The first probe runs during startup.
+ */
+@ApplicationScoped
+public class MongoHealth {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoHealth.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "user.degraded.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "user.degraded.probe-interval-ms", defaultValue = "2000")
+    long probeIntervalMs;
+
+    @Inject
+    @ConfigProperty(name = "user.degraded.probe-timeout-ms", defaultValue = "500")
+    long probeTimeoutMs;
+
+    @Inject
+    private MongoClient mongoClient;
+
+    private final AtomicLong failedProbes = new AtomicLong();
+
+    private volatile boolean degraded;
+
+    private volatile long degradedSince;
+
+    private ExecutorService pings;
+
+    private ScheduledExecutorService scheduler;
+
+    private Future<?> ping;
+
+    void start(@Observes @RuntimeStart Object event) {
+        if (!enabled) {
+            return;
+        }
+        pings = Executors.newVirtualThreadPerTaskExecutor();
+        probe();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mongo-health-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probe, probeIntervalMs, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * True while Mongo is considered unreachable.
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * When the current degraded period began, in epoch milliseconds, or 0.
+     */
+    public long degradedSince() {
+        return degraded ? degradedSince : 0;
+    }
+
+    void probe() {
+        if (ping != null && !ping.isDone()) {
+            // the previous ping is still waiting on the server
+            update(false, null);
+            return;
+        }
+        ping = pings.submit(() -> mongoClient.getDatabase("admin").runCommand(new Document("ping", 1)));
+        try {
+            ping.get(probeTimeoutMs, TimeUnit.MILLISECONDS);
+            update(true, null);
+        } catch (TimeoutException e) {
+            update(false, null);
+        } catch (ExecutionException e) {
+            update(false, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void update(boolean healthy, Throwable cause) {
+        if (healthy) {
+            if (degraded) {
+                degraded = false;
+                LOGGER.info("Mongo reachable again after "
+                        + (System.currentTimeMillis() - degradedSince) + " ms degraded");
+            }
+            return;
+        }
+        failedProbes.incrementAndGet();
+        if (!degraded) {
+            degradedSince = System.currentTimeMillis();
+            degraded = true;
+            LOGGER.log(Level.WARNING, "Mongo unreachable; validating from recently verified credentials", cause);
+        }
+    }
+
+    @Gauge(name = "user.mongo.degraded", unit = MetricUnits.NONE, absolute = true,
+            description = "1 while Mongo is unreachable and validation runs from verified credentials")
+    public long degradedGauge() {
+        return degraded ? 1 : 0;
+    }
+
+    @Gauge(name = "user.mongo.failed-probes", unit = MetricUnits.NONE, absolute = true,
+            description = "Mongo health probes that failed or timed out")
+    public long failedProbes() {
+        return failedProbes.get();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (pings != null) {
+            pings.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.angrysurfer.atomic.user.degraded;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Reports whether validation is running degraded. It stays up while degraded:
+ * every replica loses Mongo together, and taking them all out of rotation would
+ * refuse the logins that verified credentials can still answer.
+ */
+@Readiness
+@ApplicationScoped
+public class MongoReadinessCheck implements HealthCheck {
+
+    @Inject
+    private MongoHealth mongoHealth;
+
+    @Inject
+    private VerifiedCredentials verifiedCredentials;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("mongo")
+                .up()
+                .withData("degraded", mongoHealth.isDegraded())
+                .withData("degraded-since", mongoHealth.degradedSince())
+                .withData("verified-entries", verifiedCredentials.size())
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.angrysurfer.atomic.user.degraded;
+
+/**
+ * Mongo is unreachable and no recently verified credentials can answer in its place.
+ */
+public class MongoUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MongoUnavailableException(String message) {
+        super(message);
+    }
+
+    public MongoUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
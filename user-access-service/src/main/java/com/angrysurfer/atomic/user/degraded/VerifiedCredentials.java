@@ -0,0 +1,127 @@
+package com.angrysurfer.atomic.user.degraded;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * The users whose password this replica accepted most recently, at most
+ * {@code user.degraded.max-entries} of them, each kept with the time of that
+ * login. Entries hold only the salted credential digest. While Mongo is
+ * unreachable they stand in for it, up to {@code user.degraded.max-staleness-seconds}
+ * after the login that verified them. Any change to a user drops their entry
+ * until their next successful login.
+ */
+@ApplicationScoped
+public class VerifiedCredentials {
+
+    @Inject
+    @ConfigProperty(name = "user.degraded.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    @Inject
+    @ConfigProperty(name = "user.degraded.max-staleness-seconds", defaultValue = "900")
+    long maxStalenessSeconds;
+
+    private final Map<String, Verified> byAlias = new LinkedHashMap<>(16, 0.75f, false) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Remember a user whose credentials were just accepted; the least recently
+     * verified entry makes room when the store is full.
+     */
+    public void recordVerified(UserRegistration user) {
+        if (user.getAlias() == null) {
+            return;
+        }
+        UserRegistration resident = user.getIdentifier() != null ? user.withoutSecrets() : user;
+        Verified verified = new Verified(resident, System.currentTimeMillis());
+        synchronized (byAlias) {
+            byAlias.remove(resident.getAlias());
+            byAlias.put(resident.getAlias(), verified);
+        }
+    }
+
+    /**
+     * The user as last verified, unless that was longer ago than the staleness limit.
+     */
+    public Optional<UserRegistration> find(String alias) {
+        Verified verified;
+        synchronized (byAlias) {
+            verified = alias != null ? byAlias.get(alias) : null;
+        }
+        long oldest = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(maxStalenessSeconds);
+        if (verified == null || verified.at < oldest) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(verified.user);
+    }
+
+    void onUserChange(@Observes UserChangeEvent event) {
+        synchronized (byAlias) {
+            switch (event.getType()) {
+                case UPSERT -> {
+                    byAlias.remove(event.getUser().getAlias());
+                    removeByMongoId(event.getMongoId());
+                }
+                case DELETE -> removeByMongoId(event.getMongoId());
+                case RESET -> byAlias.clear();
+            }
+        }
+    }
+
+    private void removeByMongoId(String mongoId) {
+        if (mongoId != null) {
+            byAlias.values().removeIf(verified -> mongoId.equals(verified.user.getMongoId()));
+        }
+    }
+
+    @Gauge(name = "user.degraded.entries", unit = MetricUnits.NONE, absolute = true,
+            description = "Recently verified users available while Mongo is unreachable")
+    public int size() {
+        synchronized (byAlias) {
+            return byAlias.size();
+        }
+    }
+
+    @Gauge(name = "user.degraded.hits", unit = MetricUnits.NONE, absolute = true,
+            description = "Validations answered from verified credentials in place of Mongo")
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Gauge(name = "user.degraded.misses", unit = MetricUnits.NONE, absolute = true,
+            description = "Validations failed fast with no fresh verified credentials to stand in for Mongo")
+    public long misses() {
+        return misses.sum();
+    }
+
+    private record Verified(UserRegistration user, long at) {
+    }
+}
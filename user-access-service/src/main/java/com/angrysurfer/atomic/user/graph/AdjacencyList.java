@@ -0,0 +1,131 @@
+package com.angrysurfer.atomic.user.graph;
+
+import java.util.Arrays;
+
+/**
+ * One sorted {@code int[]} of neighbor ordinals per user ordinal. Rows grow by
+ * half when full, so an edge costs four bytes plus some slack, with no object
+ * per edge. Not thread-safe; {@link RelationshipGraph} guards it.
+ */
+final class AdjacencyList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] rows;
+
+    private int[] sizes;
+
+    AdjacencyList(int capacity) {
+        rows = new int[Math.max(16, capacity)][];
+        sizes = new int[rows.length];
+    }
+
+    void ensureCapacity(int ordinals) {
+        if (ordinals > rows.length) {
+            int capacity = Math.max(ordinals, rows.length + (rows.length >> 1));
+            rows = Arrays.copyOf(rows, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+    }
+
+    boolean add(int from, int to) {
+        int[] row = row(from);
+        int size = sizes[from];
+        int at = Arrays.binarySearch(row, 0, size, to);
+        if (at >= 0) {
+            return false;
+        }
+        at = -at - 1;
+        if (size == row.length) {
+            int[] grown = new int[Math.max(4, size + (size >> 1))];
+            System.arraycopy(row, 0, grown, 0, at);
+            System.arraycopy(row, at, grown, at + 1, size - at);
+            rows[from] = grown;
+            row = grown;
+        } else {
+            System.arraycopy(row, at, row, at + 1, size - at);
+        }
+        row[at] = to;
+        sizes[from] = size + 1;
+        return true;
+    }
+
+    boolean remove(int from, int to) {
+        int[] row = row(from);
+        int size = sizes[from];
+        int at = Arrays.binarySearch(row, 0, size, to);
+        if (at < 0) {
+            return false;
+        }
+        System.arraycopy(row, at + 1, row, at, size - at - 1);
+        sizes[from] = size - 1;
+        return true;
+    }
+
+    /**
+     * Drop every edge out of {@code from} and return the former neighbors.
+     */
+    int[] clear(int from) {
+        int[] neighbors = Arrays.copyOf(row(from), sizes[from]);
+        rows[from] = null;
+        sizes[from] = 0;
+        return neighbors;
+    }
+
+    int size(int from) {
+        return from < sizes.length ? sizes[from] : 0;
+    }
+
+    int[] row(int from) {
+        int[] row = rows[from];
+        return row != null ? row : EMPTY;
+    }
+
+    long reservedBytes() {
+        long bytes = rows.length * (long) (Integer.BYTES + 8);
+        for (int[] row : rows) {
+            if (row != null) {
+                // array header plus payload
+                bytes += 16 + row.length * (long) Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Add an edge without keeping the row sorted, for bulk loads. Rows must be
+     * {@link #seal() sealed} before anything else touches them.
+     */
+    void append(int from, int to) {
+        int[] row = row(from);
+        int size = sizes[from];
+        if (size == row.length) {
+            row = Arrays.copyOf(row, Math.max(4, size + (size >> 1)));
+            rows[from] = row;
+        }
+        row[size] = to;
+        sizes[from] = size + 1;
+    }
+
+    /**
+     * Sort and de-duplicate appended rows and trim them to size.
+     */
+    void seal() {
+        for (int i = 0; i < rows.length; i++) {
+            int[] row = rows[i];
+            if (row == null) {
+                continue;
+            }
+            int size = sizes[i];
+            Arrays.sort(row, 0, size);
+            int unique = 0;
+            for (int j = 0; j < size; j++) {
+                if (unique == 0 || row[unique - 1] != row[j]) {
+                    row[unique++] = row[j];
+                }
+            }
+            sizes[i] = unique;
+            rows[i] = unique == 0 ? null : unique == row.length ? row : Arrays.copyOf(row, unique);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.angrysurfer.atomic.user.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Follow and friend relationships between users, keyed by numeric user id.
+ *
+ * Each user id is mapped to a dense int ordinal on first use. Adjacency is kept
+ * as one sorted {@code int[]} of ordinals per user and relation. An edge costs
+ * about four bytes per direction instead of a boxed entry in a
+ * {@code HashSet<String>}. Follows are directed and stored in both directions so
+ * followers can be listed without a scan. Friendships are symmetric. Sorted
+ * rows let mutual friends be found with a merge, or with a binary search when
+ * one row is much shorter than the other.
+ */
+public final class RelationshipGraph {
+
+    public enum Adjacency {
+        FOLLOWING, FOLLOWERS, FRIENDS
+    }
+
+    // past this size ratio, probing the long row beats merging both rows
+    private static final int GALLOP_RATIO = 32;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntHashMap ordinals;
+
+    private long[] ids;
+
+    private final AdjacencyList following;
+
+    private final AdjacencyList followers;
+
+    private final AdjacencyList friends;
+
+    public RelationshipGraph(int expectedUsers) {
+        int capacity = Math.max(16, expectedUsers);
+        ordinals = new LongIntHashMap(capacity);
+        ids = new long[capacity];
+        following = new AdjacencyList(capacity);
+        followers = new AdjacencyList(capacity);
+        friends = new AdjacencyList(capacity);
+    }
+
+    /**
+     * @return true if {@code from} was not already following {@code to}
+     */
+    public boolean follow(long from, long to) {
+        requireDistinct(from, to);
+        lock.writeLock().lock();
+        try {
+            int a = ordinal(from);
+            int b = ordinal(to);
+            following.add(a, b);
+            return followers.add(b, a);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean unfollow(long from, long to) {
+        lock.writeLock().lock();
+        try {
+            int a = ordinals.get(from);
+            int b = ordinals.get(to);
+            if (a == LongIntHashMap.MISSING || b == LongIntHashMap.MISSING) {
+                return false;
+            }
+            following.remove(a, b);
+            return followers.remove(b, a);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the two users were not already friends
+     */
+    public boolean befriend(long user, long friend) {
+        requireDistinct(user, friend);
+        lock.writeLock().lock();
+        try {
+            int a = ordinal(user);
+            int b = ordinal(friend);
+            friends.add(b, a);
+            return friends.add(a, b);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean unfriend(long user, long friend) {
+        lock.writeLock().lock();
+        try {
+            int a = ordinals.get(user);
+            int b = ordinals.get(friend);
+            if (a == LongIntHashMap.MISSING || b == LongIntHashMap.MISSING) {
+                return false;
+            }
+            friends.remove(b, a);
+            return friends.remove(a, b);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop every relationship the user takes part in. The ordinal stays allocated.
+     */
+    public void removeUser(long id) {
+        lock.writeLock().lock();
+        try {
+            int a = ordinals.get(id);
+            if (a == LongIntHashMap.MISSING) {
+                return;
+            }
+            for (int b : following.clear(a)) {
+                followers.remove(b, a);
+            }
+            for (int b : followers.clear(a)) {
+                following.remove(b, a);
+            }
+            for (int b : friends.clear(a)) {
+                friends.remove(b, a);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int count(long id, Adjacency adjacency) {
+        lock.readLock().lock();
+        try {
+            int a = ordinals.get(id);
+            return a == LongIntHashMap.MISSING ? 0 : list(adjacency).size(a);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One page of user ids, in the order users were first seen by the graph, so
+     * pages stay stable while other users join.
+     */
+    public long[] neighbors(long id, Adjacency adjacency, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            int a = ordinals.get(id);
+            if (a == LongIntHashMap.MISSING) {
+                return new long[0];
+            }
+            AdjacencyList list = list(adjacency);
+            int from = Math.min(Math.max(0, offset), list.size(a));
+            int to = (int) Math.min(list.size(a), (long) from + Math.max(0, limit));
+            int[] row = list.row(a);
+            long[] page = new long[to - from];
+            for (int i = from; i < to; i++) {
+                page[i - from] = ids[row[i]];
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code limit} users who are friends with both {@code a} and {@code b}.
+     */
+    public long[] mutualFriends(long a, long b, int limit) {
+        lock.readLock().lock();
+        try {
+            int x = ordinals.get(a);
+            int y = ordinals.get(b);
+            if (x == LongIntHashMap.MISSING || y == LongIntHashMap.MISSING) {
+                return new long[0];
+            }
+            int[] common = new int[Math.min(Math.max(0, limit), Math.min(friends.size(x), friends.size(y)))];
+            int found = intersect(friends.row(x), friends.size(x), friends.row(y), friends.size(y), common);
+            long[] result = new long[found];
+            for (int i = 0; i < found; i++) {
+                result[i] = ids[common[i]];
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int mutualFriendCount(long a, long b) {
+        lock.readLock().lock();
+        try {
+            int x = ordinals.get(a);
+            int y = ordinals.get(b);
+            if (x == LongIntHashMap.MISSING || y == LongIntHashMap.MISSING) {
+                return 0;
+            }
+            return intersect(friends.row(x), friends.size(x), friends.row(y), friends.size(y), null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int userCount() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate heap held by the graph: ordinal table, id array and adjacency rows.
+     */
+    public long reservedBytes() {
+        lock.readLock().lock();
+        try {
+            return ordinals.reservedBytes() + ids.length * (long) Long.BYTES + following.reservedBytes()
+                    + followers.reservedBytes() + friends.reservedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk-load a follow edge while the graph is not yet shared. Call {@link #seal()}
+     * once every edge has been appended.
+     */
+    void appendFollow(long from, long to) {
+        if (from == to) {
+            return;
+        }
+        int a = ordinal(from);
+        int b = ordinal(to);
+        following.append(a, b);
+        followers.append(b, a);
+    }
+
+    void appendFriendship(long user, long friend) {
+        if (user == friend) {
+            return;
+        }
+        int a = ordinal(user);
+        int b = ordinal(friend);
+        friends.append(a, b);
+        friends.append(b, a);
+    }
+
+    void seal() {
+        following.seal();
+        followers.seal();
+        friends.seal();
+    }
+
+    /**
+     * Write the intersection of two sorted rows into {@code out}, stopping when it
+     * is full, or only count it when {@code out} is null.
+     */
+    static int intersect(int[] a, int aSize, int[] b, int bSize, int[] out) {
+        if (aSize > bSize) {
+            return intersect(b, bSize, a, aSize, out);
+        }
+        int capacity = out != null ? out.length : Integer.MAX_VALUE;
+        int found = 0;
+        if ((long) aSize * GALLOP_RATIO < bSize) {
+            int low = 0;
+            for (int i = 0; i < aSize && found < capacity; i++) {
+                int at = Arrays.binarySearch(b, low, bSize, a[i]);
+                if (at >= 0) {
+                    if (out != null) {
+                        out[found] = a[i];
+                    }
+                    found++;
+                    low = at + 1;
+                } else {
+                    low = -at - 1;
+                }
+            }
+            return found;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < aSize && j < bSize && found < capacity) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[found] = a[i];
+                }
+                found++;
+                i++;
+                j++;
+            }
+        }
+        return found;
+    }
+
+    private AdjacencyList list(Adjacency adjacency) {
+        switch (adjacency) {
+            case FOLLOWING:
+                return following;
+            case FOLLOWERS:
+                return followers;
+            default:
+                return friends;
+        }
+    }
+
+    private int ordinal(long id) {
+        int ordinal = ordinals.get(id);
+        if (ordinal != LongIntHashMap.MISSING) {
+            return ordinal;
+        }
+        ordinal = ordinals.size();
+        if (ordinal == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length + (ids.length >> 1));
+        }
+        ids[ordinal] = id;
+        ordinals.put(id, ordinal);
+        following.ensureCapacity(ordinal + 1);
+        followers.ensureCapacity(ordinal + 1);
+        friends.ensureCapacity(ordinal + 1);
+        return ordinal;
+    }
+
+    private static void requireDistinct(long a, long b) {
+        if (a == b) {
+            throw new IllegalArgumentException("A user cannot have a relationship with themselves");
+        }
+    }
+}
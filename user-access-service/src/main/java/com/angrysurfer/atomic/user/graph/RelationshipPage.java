@@ -0,0 +1,31 @@
+package com.angrysurfer.atomic.user.graph;
+
+/**
+ * A page of related user ids; {@code total} is the full count for the relation.
+ */
+public final class RelationshipPage {
+
+    private final long[] ids;
+
+    private final int offset;
+
+    private final int total;
+
+    public RelationshipPage(long[] ids, int offset, int total) {
+        this.ids = ids;
+        this.offset = offset;
+        this.total = total;
+    }
+
+    public long[] getIds() {
+        return ids;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+}
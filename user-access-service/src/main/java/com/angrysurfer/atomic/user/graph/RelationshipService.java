@@ -0,0 +1,441 @@
+package com.angrysurfer.atomic.user.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.cache.UserIdIndex;
+import com.angrysurfer.atomic.user.graph.RelationshipGraph.Adjacency;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.repository.RelationshipRepository;
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Serves followers, following and friends from a resident {@link RelationshipGraph}
+ * loaded from atomic.relationships on startup and kept in step with writes made
+ * on other replicas by tailing the collection's change stream. Writes go to Mongo
+ * first and then to the graph; writes made while the graph loads are replayed
+ * onto it before it is published. Friendships need both users to ask: the first
+ * request is stored until the other user asks back.
+ */
+@ApplicationScoped
+public class RelationshipService {
+
+    private static final Logger LOGGER = Logger.getLogger(RelationshipService.class.getName());
+
+    // $changeStream is only supported on replica sets / sharded clusters
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    // servers before 6.0 do not know fullDocumentBeforeChange
+    private static final int UNKNOWN_FIELD = 40415;
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Inject
+    @ConfigProperty(name = "user.graph.enabled", defaultValue = "true")
+    boolean graphEnabled;
+
+    @Inject
+    @ConfigProperty(name = "user.graph.changestream.enabled", defaultValue = "true")
+    boolean changeStreamEnabled;
+
+    @Inject
+    @ConfigProperty(name = "user.graph.expected-users", defaultValue = "100000")
+    int expectedUsers;
+
+    @Inject
+    @ConfigProperty(name = "user.graph.load.batch-size", defaultValue = "10000")
+    int loadBatchSize;
+
+    @Inject
+    @ConfigProperty(name = "user.graph.max-limit", defaultValue = "1000")
+    int maxLimit;
+
+    @Inject
+    RelationshipRepository relationshipRepository;
+
+    @Inject
+    UserIdIndex userIdIndex;
+
+    long initialBackoffMillis = 1000;
+
+    volatile boolean running;
+    private Thread worker;
+    // ask for deleted edges so that deletes can be applied without a rescan
+    private boolean preImages = true;
+
+    private volatile RelationshipGraph graph;
+    private List<Change> pending;
+    private final Object pendingLock = new Object();
+
+    /**
+     * An edge added or removed, or with a null type every edge of user {@code from}.
+     */
+    private record Change(String type, long from, long to, boolean added) {
+
+        static Change removeUser(long id) {
+            return new Change(null, id, id, false);
+        }
+    }
+
+    void onStart(@Observes @RuntimeStart Object event) {
+        if (!graphEnabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "user-graph-sync");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * True once the graph has been loaded; reads are refused until then.
+     */
+    public boolean isReady() {
+        return graph != null;
+    }
+
+    public RelationshipPage page(long userId, Adjacency adjacency, int offset, int limit) {
+        RelationshipGraph current = loaded();
+        int start = Math.max(0, offset);
+        return new RelationshipPage(current.neighbors(userId, adjacency, start, cap(limit)), start,
+                current.count(userId, adjacency));
+    }
+
+    public RelationshipPage mutualFriends(long userId, long otherId, int limit) {
+        RelationshipGraph current = loaded();
+        return new RelationshipPage(current.mutualFriends(userId, otherId, cap(limit)), 0,
+                current.mutualFriendCount(userId, otherId));
+    }
+
+    /**
+     * Users waiting for {@code userId} to accept their friend request, oldest first.
+     */
+    public RelationshipPage friendRequests(long userId, int offset, int limit) {
+        requireEnabled();
+        int start = Math.max(0, offset);
+        return new RelationshipPage(relationshipRepository.requestsTo(userId, start, cap(limit)), start,
+                relationshipRepository.countRequestsTo(userId));
+    }
+
+    public void follow(long from, long to) {
+        requireUsers(from, to);
+        write(new Change(RelationshipRepository.FOLLOW, from, to, true));
+    }
+
+    public void unfollow(long from, long to) {
+        write(new Change(RelationshipRepository.FOLLOW, from, to, false));
+    }
+
+    /**
+     * Ask to be friends, or accept the other user's request.
+     *
+     * @return true when the two users are now friends, false while the request
+     *         waits for the other user
+     */
+    public boolean befriend(long userId, long friendId) {
+        requireUsers(userId, friendId);
+        if (relationshipRepository.exists(RelationshipRepository.FRIEND, userId, friendId)
+                || relationshipRepository.exists(RelationshipRepository.REQUEST, friendId, userId)) {
+            accept(userId, friendId);
+            return true;
+        }
+        relationshipRepository.add(RelationshipRepository.REQUEST, userId, friendId);
+        // both users may have asked at the same time, each before seeing the other's request
+        if (relationshipRepository.exists(RelationshipRepository.REQUEST, friendId, userId)) {
+            accept(userId, friendId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * End a friendship, or withdraw or decline a request in either direction.
+     */
+    public void unfriend(long userId, long friendId) {
+        write(new Change(RelationshipRepository.FRIEND, userId, friendId, false));
+        relationshipRepository.remove(RelationshipRepository.REQUEST, userId, friendId);
+        relationshipRepository.remove(RelationshipRepository.REQUEST, friendId, userId);
+    }
+
+    private void accept(long userId, long friendId) {
+        write(new Change(RelationshipRepository.FRIEND, userId, friendId, true));
+        relationshipRepository.remove(RelationshipRepository.REQUEST, userId, friendId);
+        relationshipRepository.remove(RelationshipRepository.REQUEST, friendId, userId);
+    }
+
+    /**
+     * Drop a deleted user's edges and requests. Every replica sees the delete and
+     * prunes its own graph; the Mongo delete is idempotent.
+     */
+    void onUserChange(@Observes UserChangeEvent event) {
+        if (!graphEnabled || event.getType() != UserChangeEvent.Type.DELETE || event.getUserId() == null) {
+            return;
+        }
+        long id = event.getUserId();
+        try {
+            relationshipRepository.removeUser(id);
+        } catch (MongoException e) {
+            LOGGER.log(Level.WARNING, "Failed to remove relationships of deleted user " + id + ": " + e.getMessage());
+        }
+        record(Change.removeUser(id));
+    }
+
+    private void requireUsers(long userId, long otherId) {
+        requireEnabled();
+        for (long id : new long[] {userId, otherId}) {
+            if (userIdIndex.findById(id).isEmpty()) {
+                throw new NoSuchElementException("No user with id " + id);
+            }
+        }
+    }
+
+    private void requireEnabled() {
+        if (!graphEnabled) {
+            throw new IllegalStateException("Relationships are disabled");
+        }
+    }
+
+    private void write(Change change) {
+        if (change.from == change.to) {
+            throw new IllegalArgumentException("A user cannot have a relationship with themselves");
+        }
+        requireEnabled();
+        if (change.added) {
+            relationshipRepository.add(change.type, change.from, change.to);
+        } else {
+            relationshipRepository.remove(change.type, change.from, change.to);
+        }
+        record(change);
+    }
+
+    private void record(Change change) {
+        synchronized (pendingLock) {
+            if (pending != null) {
+                pending.add(change);
+            }
+        }
+        apply(graph, change);
+    }
+
+    private static void apply(RelationshipGraph target, Change change) {
+        if (target == null) {
+            return;
+        }
+        if (change.type == null) {
+            target.removeUser(change.from);
+        } else if (RelationshipRepository.FOLLOW.equals(change.type)) {
+            if (change.added) {
+                target.follow(change.from, change.to);
+            } else {
+                target.unfollow(change.from, change.to);
+            }
+        } else if (RelationshipRepository.FRIEND.equals(change.type)) {
+            if (change.added) {
+                target.befriend(change.from, change.to);
+            } else {
+                target.unfriend(change.from, change.to);
+            }
+        }
+    }
+
+    private RelationshipGraph loaded() {
+        RelationshipGraph current = graph;
+        if (current == null) {
+            throw new IllegalStateException(graphEnabled ? "Relationships are still loading" : "Relationships are disabled");
+        }
+        return current;
+    }
+
+    private int cap(int limit) {
+        return Math.max(0, Math.min(limit, maxLimit));
+    }
+
+    /**
+     * Load the graph, then follow the change stream. The stream is opened before
+     * the scan so nothing written during it is missed; applying a change twice is
+     * harmless. A stream that cannot be resumed, or a delete that does not say
+     * which edge went, is answered with a fresh scan.
+     */
+    void run() {
+        boolean watch = changeStreamEnabled;
+        if (watch) {
+            try {
+                relationshipRepository.enableChangeStreamPreImages();
+            } catch (MongoException e) {
+                LOGGER.info("Could not enable change stream pre-images on atomic.relationships (" + e.getMessage()
+                        + "); every delete made elsewhere will rescan the graph");
+            }
+        }
+        BsonDocument resumeToken = null;
+        long backoff = initialBackoffMillis;
+
+        while (running) {
+            try {
+                if (!watch) {
+                    load();
+                    return;
+                }
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = relationshipRepository
+                        .watch(resumeToken, preImages)
+                        .maxAwaitTime(1, TimeUnit.SECONDS)
+                        .cursor()) {
+                    if (resumeToken == null) {
+                        load();
+                    }
+                    backoff = initialBackoffMillis;
+                    boolean current = true;
+                    while (running && current) {
+                        ChangeStreamDocument<Document> change = cursor.tryNext();
+                        if (change != null) {
+                            current = apply(change);
+                        }
+                        BsonDocument token = cursor.getResumeToken();
+                        resumeToken = current ? (token != null ? token : resumeToken) : null;
+                    }
+                }
+            } catch (MongoServerException e) {
+                if (e.getCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    LOGGER.warning("MongoDB deployment does not support change streams; "
+                            + "relationships written by other replicas are only seen after a restart");
+                    watch = false;
+                    continue;
+                }
+                if (e.getCode() == UNKNOWN_FIELD && preImages) {
+                    LOGGER.warning("MongoDB deployment does not support change stream pre-images; "
+                            + "every delete made elsewhere will rescan the graph");
+                    preImages = false;
+                    continue;
+                }
+                if (e.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    LOGGER.warning("Relationship change stream resume point is no longer in the oplog; rescanning");
+                    resumeToken = null;
+                }
+                backoff = pause(backoff, e);
+            } catch (RuntimeException e) {
+                // anything else is retried too, so one bad edge or bug does not stop the graph for good
+                backoff = pause(backoff, e);
+            }
+        }
+    }
+
+    /**
+     * @return false when the graph has to be rescanned
+     */
+    boolean apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, REPLACE -> {
+                return applyEdge(change.getFullDocument(), true);
+            }
+            case DELETE -> {
+                return applyEdge(change.getFullDocumentBeforeChange(), false);
+            }
+            case UPDATE -> {
+                // edges are only ever upserted with $setOnInsert, which arrives as an insert
+                return true;
+            }
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    private boolean applyEdge(Document edge, boolean added) {
+        if (edge == null || !(edge.get("from") instanceof Number from) || !(edge.get("to") instanceof Number to)) {
+            return false;
+        }
+        String type = edge.getString("type");
+        if (RelationshipRepository.FOLLOW.equals(type) || RelationshipRepository.FRIEND.equals(type)) {
+            record(new Change(type, from.longValue(), to.longValue(), added));
+        }
+        return true;
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        synchronized (pendingLock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            relationshipRepository.ensureIndexes();
+            RelationshipGraph fresh = new RelationshipGraph(expectedUsers);
+            long[] edges = new long[1];
+            relationshipRepository.forEachEdge(loadBatchSize, (type, from, to) -> {
+                if (RelationshipRepository.FOLLOW.equals(type)) {
+                    fresh.appendFollow(from, to);
+                    edges[0]++;
+                } else if (RelationshipRepository.FRIEND.equals(type)) {
+                    fresh.appendFriendship(from, to);
+                    edges[0]++;
+                }
+            });
+            fresh.seal();
+            synchronized (pendingLock) {
+                for (Change change : pending) {
+                    apply(fresh, change);
+                }
+                graph = fresh;
+            }
+            LOGGER.info("Loaded " + edges[0] + " relationships between " + fresh.userCount() + " users ("
+                    + fresh.reservedBytes() / (1024 * 1024) + " MiB) in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        } finally {
+            synchronized (pendingLock) {
+                pending = null;
+            }
+        }
+    }
+
+    private long pause(long backoff, RuntimeException e) {
+        if (!running) {
+            return backoff;
+        }
+        if (e instanceof MongoException) {
+            LOGGER.log(Level.WARNING, "Failed to load or follow user relationships, retrying in " + backoff
+                    + " ms: " + e.getMessage());
+        } else {
+            LOGGER.log(Level.SEVERE, "Failed to load or follow user relationships, retrying in " + backoff
+                    + " ms: " + e.getMessage(), e);
+        }
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+            running = false;
+            Thread.currentThread().interrupt();
+        }
+        return Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+    }
+}
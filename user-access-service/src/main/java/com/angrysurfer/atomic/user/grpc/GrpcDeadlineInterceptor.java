@@ -0,0 +1,98 @@
+package com.angrysurfer.atomic.user.grpc;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+
+import io.grpc.Context;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Binds each gRPC call's {@link Deadline}, as {@code DeadlineFilter} does for
+ * REST: the caller's deadline from the call context, or from the
+ * {@code grpc-timeout} header when the server has not decoded it, through
+ * {@link DeadlinePolicy}. Messages may be delivered on different threads, so the
+ * deadline is bound around every callback rather than once per call.
+ */
+class GrpcDeadlineInterceptor implements ServerInterceptor {
+
+    static final Metadata.Key<String> TIMEOUT = Metadata.Key.of("grpc-timeout", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final DeadlinePolicy deadlinePolicy;
+
+    GrpcDeadlineInterceptor(DeadlinePolicy deadlinePolicy) {
+        this.deadlinePolicy = deadlinePolicy;
+    }
+
+    @Override
+    @SuppressWarnings("try") // the scopes are only held to unbind the deadline
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        Deadline deadline = deadlinePolicy.forTimeout(requested(headers));
+        ServerCall.Listener<ReqT> listener;
+        try (Deadline.Scope scope = deadline.bind()) {
+            listener = next.startCall(call, headers);
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                try (Deadline.Scope scope = deadline.bind()) {
+                    super.onMessage(message);
+                }
+            }
+
+            @Override
+            public void onHalfClose() {
+                // unary calls run the service method here
+                try (Deadline.Scope scope = deadline.bind()) {
+                    super.onHalfClose();
+                }
+            }
+        };
+    }
+
+    /**
+     * The time the caller allowed, or null when it set no deadline.
+     */
+    static Duration requested(Metadata headers) {
+        io.grpc.Deadline callerDeadline = Context.current().getDeadline();
+        if (callerDeadline != null) {
+            return Duration.ofNanos(Math.max(0, callerDeadline.timeRemaining(TimeUnit.NANOSECONDS)));
+        }
+        return parseTimeout(headers.get(TIMEOUT));
+    }
+
+    /**
+     * Decode a {@code grpc-timeout} value: up to eight digits and a unit, one of
+     * {@code H M S m u n}.
+     */
+    static Duration parseTimeout(String value) {
+        if (value == null || value.length() < 2 || value.length() > 9) {
+            return null;
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(value.substring(0, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (amount < 0) {
+            return null;
+        }
+        return switch (value.charAt(value.length() - 1)) {
+            case 'H' -> Duration.ofHours(amount);
+            case 'M' -> Duration.ofMinutes(amount);
+            case 'S' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMillis(amount);
+            case 'u' -> Duration.ofNanos(amount * 1_000);
+            case 'n' -> Duration.ofNanos(amount);
+            default -> null;
+        };
+    }
+}
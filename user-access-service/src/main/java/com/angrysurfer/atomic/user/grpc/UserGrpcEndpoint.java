@@ -0,0 +1,55 @@
+package com.angrysurfer.atomic.user.grpc;
+
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+
+import io.grpc.BindableService;
+import io.grpc.ServerInterceptors;
+import io.helidon.microprofile.server.ServerCdiExtension;
+import io.helidon.webserver.grpc.GrpcRouting;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import static jakarta.interceptor.Interceptor.Priority.PLATFORM_AFTER;
+
+/**
+ * Adds {@link UserGrpcService} to the server's default socket, next to the JAX-RS
+ * application, with each call's deadline bound by {@link GrpcDeadlineInterceptor}.
+ * It has to run before the server starts, which happens at
+ * {@code PLATFORM_AFTER + 100} once the application scope is initialized.
+ */
+@ApplicationScoped
+public class UserGrpcEndpoint {
+
+    private static final Logger LOGGER = Logger.getLogger(UserGrpcEndpoint.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "user.grpc.enabled", defaultValue = "true")
+    boolean grpcEnabled;
+
+    @Inject
+    private UserAccessService userAccessService;
+
+    @Inject
+    private DeadlinePolicy deadlinePolicy;
+
+    void register(@Observes @Priority(PLATFORM_AFTER) @Initialized(ApplicationScoped.class) Object event,
+                  ServerCdiExtension server) {
+        if (!grpcEnabled) {
+            LOGGER.info("gRPC endpoint is disabled");
+            return;
+        }
+        // intercepted per service: routing-level interceptors are not applied by every Helidon 4 release
+        BindableService service = () -> ServerInterceptors.intercept(new UserGrpcService(userAccessService),
+                new GrpcDeadlineInterceptor(deadlinePolicy));
+        server.addRouting(GrpcRouting.builder().service(service));
+        LOGGER.info("Registered gRPC service " + UserAccessGrpc.SERVICE_NAME);
+    }
+}
@@ -0,0 +1,140 @@
+package com.angrysurfer.atomic.user.grpc;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+import com.angrysurfer.atomic.user.degraded.MongoUnavailableException;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * gRPC face of {@link UserAccessService}, for internal callers that would
+ * otherwise pay for an HTTP/1.1 connection and JSON parsing per validation.
+ * Calls multiplex over one HTTP/2 connection; {@code ValidateUsers} keeps a
+ * stream open and answers each request in order.
+ */
+public class UserGrpcService extends UserAccessGrpc.UserAccessImplBase {
+
+    private static final Logger LOGGER = Logger.getLogger(UserGrpcService.class.getName());
+
+    private static final ValidateReply INVALID = ValidateReply.newBuilder().setValid(false).build();
+
+    private static final UserReply NOT_FOUND = UserReply.newBuilder().setFound(false).build();
+
+    private final UserAccessService userAccessService;
+
+    public UserGrpcService(UserAccessService userAccessService) {
+        this.userAccessService = userAccessService;
+    }
+
+    @Override
+    public void validateUser(ValidateRequest request, StreamObserver<ValidateReply> responseObserver) {
+        try {
+            responseObserver.onNext(validate(request));
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(failure(e));
+        }
+    }
+
+    @Override
+    public StreamObserver<ValidateRequest> validateUsers(StreamObserver<ValidateReply> responseObserver) {
+        return new StreamObserver<>() {
+            private boolean failed;
+
+            @Override
+            public void onNext(ValidateRequest request) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    responseObserver.onNext(validate(request));
+                } catch (RuntimeException e) {
+                    failed = true;
+                    responseObserver.onError(failure(e));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                LOGGER.log(Level.FINE, "ValidateUsers stream cancelled by client", t);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!failed) {
+                    responseObserver.onCompleted();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void getUserById(UserByIdRequest request, StreamObserver<UserReply> responseObserver) {
+        try {
+            UserRegistrationDTO userDto = userAccessService.getUserById(request.getId());
+            responseObserver.onNext(userDto != null
+                    ? UserReply.newBuilder().setFound(true).setUser(toUser(userDto)).build()
+                    : NOT_FOUND);
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(failure(e));
+        }
+    }
+
+    private ValidateReply validate(ValidateRequest request) {
+        UserRegistrationDTO userDto = userAccessService.validateUser(request.getAlias(), request.getIdentifier());
+        if (userDto == null) {
+            return INVALID;
+        }
+        ValidateReply.Builder reply = ValidateReply.newBuilder().setValid(true).setUser(toUser(userDto));
+        if (userDto.getToken() != null) {
+            reply.setToken(userDto.getToken());
+        }
+        return reply.build();
+    }
+
+    private static User toUser(UserRegistrationDTO dto) {
+        User.Builder user = User.newBuilder().setAdmin(dto.isAdmin());
+        // toDTO() renders a missing id as "null"
+        if (dto.getId() != null && !"null".equals(dto.getId())) {
+            user.setId(Long.parseLong(dto.getId()));
+        }
+        if (dto.getAlias() != null) {
+            user.setAlias(dto.getAlias());
+        }
+        if (dto.getEmail() != null) {
+            user.setEmail(dto.getEmail());
+        }
+        if (dto.getAvatarUrl() != null) {
+            user.setAvatarUrl(dto.getAvatarUrl());
+        }
+        return user.build();
+    }
+
+    /**
+     * Map a failed call to a status the client can act on: UNAVAILABLE, worth
+     * retrying, while Mongo cannot be reached; DEADLINE_EXCEEDED when the request
+     * ran out of time; INTERNAL for anything else, which a retry will not fix.
+     */
+    private static Throwable failure(RuntimeException e) {
+        Status status;
+        if (e instanceof DeadlineExceededException) {
+            status = Status.DEADLINE_EXCEEDED;
+        } else if (e instanceof MongoUnavailableException || e instanceof MongoSocketException
+                || e instanceof MongoTimeoutException) {
+            status = Status.UNAVAILABLE;
+        } else {
+            LOGGER.log(Level.SEVERE, "User lookup failed", e);
+            return Status.INTERNAL.withDescription("User lookup failed").asRuntimeException();
+        }
+        LOGGER.log(Level.WARNING, "User lookup failed: " + e.getMessage());
+        return status.withDescription(e.getMessage()).asRuntimeException();
+    }
+}
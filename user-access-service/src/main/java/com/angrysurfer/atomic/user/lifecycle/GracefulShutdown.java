@@ -0,0 +1,128 @@
+package com.angrysurfer.atomic.user.lifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.helidon.registration.ServiceRegistryRegistrationService;
+import com.angrysurfer.atomic.user.service.RegistryClientService;
+
+import io.helidon.microprofile.server.ServerCdiExtension;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.BeforeDestroyed;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import static jakarta.interceptor.Interceptor.Priority.PLATFORM_AFTER;
+import static jakarta.interceptor.Interceptor.Priority.PLATFORM_BEFORE;
+
+/**
+ * Coordinated shutdown. The server extension stops the web server in a
+ * {@code @BeforeDestroyed(ApplicationScoped)} observer at {@code PLATFORM_BEFORE};
+ * this one runs ahead of it in the same event and
+ * <ol>
+ * <li>deregisters from the service registry and stops heartbeats,</li>
+ * <li>reports not-ready, so load balancers stop sending traffic,</li>
+ * <li>waits {@code user.shutdown.propagation-delay-ms} for both to take effect,</li>
+ * <li>waits up to {@code user.shutdown.drain-timeout-ms} for in-flight requests.</li>
+ * </ol>
+ * Both registries are called at once and waited for at most
+ * {@code user.shutdown.deregister-timeout-ms}, and the whole sequence is cut
+ * short at {@code user.shutdown.timeout-ms}, which has to fit in the
+ * orchestrator's grace period. The server then stops, and the Mongo and HTTP
+ * clients are closed as their beans are destroyed.
+ */
+@ApplicationScoped
+public class GracefulShutdown {
+
+    private static final Logger LOGGER = Logger.getLogger(GracefulShutdown.class.getName());
+
+    private static final int BEFORE_SERVER_STOP = PLATFORM_BEFORE - 100;
+
+    @Inject
+    @ConfigProperty(name = "user.shutdown.propagation-delay-ms", defaultValue = "2000")
+    long propagationDelayMillis;
+
+    @Inject
+    @ConfigProperty(name = "user.shutdown.drain-timeout-ms", defaultValue = "10000")
+    long drainTimeoutMillis;
+
+    @Inject
+    @ConfigProperty(name = "user.shutdown.deregister-timeout-ms", defaultValue = "3000")
+    long deregisterTimeoutMillis;
+
+    @Inject
+    @ConfigProperty(name = "user.shutdown.timeout-ms", defaultValue = "25000")
+    long shutdownTimeoutMillis;
+
+    @Inject
+    ServiceRegistryRegistrationService registrationService;
+
+    @Inject
+    RegistryClientService registryClient;
+
+    final InFlightRequests inFlight = new InFlightRequests();
+
+    private volatile boolean draining;
+
+    void register(@Observes @Priority(PLATFORM_AFTER) @Initialized(ApplicationScoped.class) Object event,
+                  ServerCdiExtension server) {
+        server.serverRoutingBuilder().addFilter(inFlight);
+    }
+
+    void beforeServerStop(@Observes @Priority(BEFORE_SERVER_STOP) @BeforeDestroyed(ApplicationScoped.class) Object event) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        LOGGER.info("Shutting down: deregistering and draining " + inFlight.count() + " in-flight requests");
+
+        // a registry that does not answer must not use up the time left for draining
+        List<Thread> deregistrations = List.of(
+                deregistration(registrationService::deregister, "service-registry-deregister"),
+                deregistration(registryClient::deregister, "host-server-deregister"));
+        draining = true;
+
+        boolean drained = false;
+        try {
+            long deregistered = Math.min(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deregisterTimeoutMillis),
+                    deadline);
+            for (Thread deregistration : deregistrations) {
+                deregistration.join(Duration.ofNanos(Math.max(0, deregistered - System.nanoTime())));
+            }
+            if (deregistrations.stream().anyMatch(Thread::isAlive)) {
+                LOGGER.warning("Registry did not confirm deregistration within " + deregisterTimeoutMillis + " ms");
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.MILLISECONDS.toNanos(propagationDelayMillis),
+                    Math.max(0, deadline - System.nanoTime())));
+            drained = inFlight.awaitIdle(Duration.ofNanos(Math.min(TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis),
+                    Math.max(0, deadline - System.nanoTime()))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (drained) {
+            LOGGER.info("Drained in-flight requests in " + elapsed + " ms");
+        } else {
+            LOGGER.warning("Stopping with " + inFlight.count() + " requests still in flight after " + elapsed + " ms");
+        }
+    }
+
+    private static Thread deregistration(Runnable deregister, String name) {
+        Thread thread = new Thread(deregister, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * True once shutdown has begun; readiness reports down from then on.
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+}
@@ -0,0 +1,72 @@
+package com.angrysurfer.atomic.user.lifecycle;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.helidon.webserver.http.Filter;
+import io.helidon.webserver.http.FilterChain;
+import io.helidon.webserver.http.RoutingRequest;
+import io.helidon.webserver.http.RoutingResponse;
+
+/**
+ * Counts HTTP requests between routing and the end of their handler, so shutdown
+ * can wait for the ones already accepted before the server is stopped. Health
+ * and metrics scrapes are left out: they keep arriving while the pod drains and
+ * would otherwise hold shutdown up to its timeout.
+ */
+public final class InFlightRequests implements Filter {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final Object idle = new Object();
+
+    @Override
+    public void filter(FilterChain chain, RoutingRequest req, RoutingResponse res) {
+        if (isProbe(req.path().path())) {
+            chain.proceed();
+            return;
+        }
+        count.incrementAndGet();
+        try {
+            chain.proceed();
+        } finally {
+            if (count.decrementAndGet() == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+    }
+
+    static boolean isProbe(String path) {
+        return isUnder(path, "/health") || isUnder(path, "/metrics");
+    }
+
+    private static boolean isUnder(String path, String prefix) {
+        return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+
+    public int count() {
+        return count.get();
+    }
+
+    /**
+     * Wait until no request is in flight or the timeout passes.
+     *
+     * @return true if the server went idle in time
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (count.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.angrysurfer.atomic.user.lifecycle;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Reports not-ready once {@link GracefulShutdown} has started draining.
+ */
+@Readiness
+@ApplicationScoped
+public class ShutdownReadinessCheck implements HealthCheck {
+
+    @Inject
+    private GracefulShutdown shutdown;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("shutdown")
+                .status(!shutdown.isDraining())
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.angrysurfer.atomic.user.lockout;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Counts failed logins per alias and per caller address in two sliding-window
+ * count-min sketches, so that repeated guessing is refused before any lookup and
+ * attackers cycling through aliases or addresses cannot grow memory. A sketch
+ * only overcounts: a colliding alias may be refused early, never let through.
+ * When a wrong password for an existing account takes its alias over the
+ * threshold, the caller persists the lockout on the account. The per-address
+ * count is only kept when a source threshold is configured.
+ */
+@ApplicationScoped
+public class LoginLockout {
+
+    private static final Logger LOGGER = Logger.getLogger(LoginLockout.class.getName());
+
+    private static final int DEPTH = 4;
+
+    private static final int BUCKETS = 6;
+
+    @Inject
+    @ConfigProperty(name = "user.lockout.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "user.lockout.window-seconds", defaultValue = "900")
+    long windowSeconds;
+
+    @Inject
+    @ConfigProperty(name = "user.lockout.alias-threshold", defaultValue = "10")
+    int aliasThreshold;
+
+    // off by default: behind a proxy every caller may share one address
+    @Inject
+    @ConfigProperty(name = "user.lockout.source-threshold", defaultValue = "0")
+    int sourceThreshold;
+
+    @Inject
+    @ConfigProperty(name = "user.lockout.lock-seconds", defaultValue = "900")
+    long lockSeconds;
+
+    @Inject
+    @ConfigProperty(name = "user.lockout.sketch-width", defaultValue = "4096")
+    int sketchWidth;
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder blocked = new LongAdder();
+
+    private final LongAdder confirmed = new LongAdder();
+
+    private SlidingCountMinSketch aliases;
+
+    private SlidingCountMinSketch sources;
+
+    @PostConstruct
+    void init() {
+        SecureRandom random = new SecureRandom();
+        long windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        aliases = new SlidingCountMinSketch(DEPTH, sketchWidth, BUCKETS, windowMillis, random.nextLong());
+        sources = new SlidingCountMinSketch(DEPTH, sketchWidth, BUCKETS, windowMillis, random.nextLong());
+        LOGGER.fine(() -> "Login lockout sketches use " + 2L * DEPTH * sketchWidth * BUCKETS * Integer.BYTES
+                + " bytes");
+    }
+
+    /**
+     * Whether recent failures for this alias or from this caller mean the attempt
+     * should be refused without checking credentials.
+     *
+     * @param client the caller's address, or null when not known
+     */
+    public boolean isBlocked(String alias, String client) {
+        if (!enabled) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        boolean refused = alias != null && aliases.estimate(alias, now) >= aliasThreshold
+                || sourceThreshold > 0 && client != null && sources.estimate(client, now) >= sourceThreshold;
+        if (refused) {
+            blocked.increment();
+        }
+        return refused;
+    }
+
+    /**
+     * Count a failed attempt.
+     *
+     * @return true when this failure took the alias to its threshold
+     */
+    public boolean recordFailure(String alias, String client) {
+        if (!enabled) {
+            return false;
+        }
+        failures.increment();
+        long now = System.currentTimeMillis();
+        if (sourceThreshold > 0 && client != null) {
+            sources.add(client, now);
+        }
+        return alias != null && aliases.add(alias, now) >= aliasThreshold;
+    }
+
+    /**
+     * Clear the alias's failures after it logged in, so earlier typos do not count
+     * towards a lockout. Failures from the caller's address are kept.
+     */
+    public void recordSuccess(String alias) {
+        if (enabled && alias != null) {
+            aliases.forget(alias, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Count a lockout being persisted and return its expiry in epoch milliseconds.
+     */
+    public long confirmLockout() {
+        confirmed.increment();
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lockSeconds);
+    }
+
+    @Gauge(name = "user.lockout.failures", unit = MetricUnits.NONE, absolute = true,
+            description = "Failed logins counted by the lockout sketches")
+    public long failures() {
+        return failures.sum();
+    }
+
+    @Gauge(name = "user.lockout.blocked", unit = MetricUnits.NONE, absolute = true,
+            description = "Logins refused before lookup because of recent failures")
+    public long blocked() {
+        return blocked.sum();
+    }
+
+    @Gauge(name = "user.lockout.confirmed", unit = MetricUnits.NONE, absolute = true,
+            description = "Lockouts persisted on an account")
+    public long confirmed() {
+        return confirmed.sum();
+    }
+}
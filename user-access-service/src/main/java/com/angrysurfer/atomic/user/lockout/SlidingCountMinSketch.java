@@ -0,0 +1,168 @@
+package com.angrysurfer.atomic.user.lockout;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate per-key event counts over a sliding time window, in fixed memory
+ * regardless of how many distinct keys are seen. The window is split into
+ * {@code buckets} sub-windows, each a count-min sketch of {@code depth} rows by
+ * {@code width} counters; the oldest sub-window is cleared as time moves on.
+ * Estimates never undercount a key and overcount only through hash collisions,
+ * which conservative updates (raising only the rows at the minimum) keep low.
+ * Keys are hashed with a per-instance seed so collisions cannot be precomputed.
+ */
+final class SlidingCountMinSketch {
+
+    private final int depth;
+
+    private final int mask;
+
+    private final int buckets;
+
+    private final long bucketMillis;
+
+    private final long seed;
+
+    private final AtomicIntegerArray[] counters;
+
+    // which sub-window (time / bucketMillis) each bucket currently holds
+    private final AtomicLongArray epochs;
+
+    SlidingCountMinSketch(int depth, int width, int buckets, long windowMillis, long seed) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Sketch width must be a power of two: " + width);
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, (windowMillis + buckets - 1) / buckets);
+        this.seed = seed;
+        this.counters = new AtomicIntegerArray[buckets];
+        this.epochs = new AtomicLongArray(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            counters[bucket] = new AtomicIntegerArray(depth * width);
+            epochs.set(bucket, -1);
+        }
+    }
+
+    /**
+     * Count one event for the key and return its new estimate.
+     */
+    int add(String key, long nowMillis) {
+        long hash = hash(key);
+        long epoch = nowMillis / bucketMillis;
+        AtomicIntegerArray current = bucket(epoch);
+        int[] totals = rowTotals(hash, epoch);
+        int min = min(totals);
+        for (int row = 0; row < depth; row++) {
+            if (totals[row] == min) {
+                current.incrementAndGet(index(hash, row));
+            }
+        }
+        return min + 1;
+    }
+
+    /**
+     * Events counted for the key within the window; at least the true count.
+     */
+    int estimate(String key, long nowMillis) {
+        return min(rowTotals(hash(key), nowMillis / bucketMillis));
+    }
+
+    /**
+     * Take the key's events out of the window. Each sub-window drops the key's
+     * estimate there from all of its rows, so a key sharing counters with this
+     * one may lose up to that many of its own events.
+     */
+    void forget(String key, long nowMillis) {
+        long hash = hash(key);
+        long epoch = nowMillis / bucketMillis;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (!holds(bucket, epoch)) {
+                continue;
+            }
+            AtomicIntegerArray counts = counters[bucket];
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, counts.get(index(hash, row)));
+            }
+            int estimate = min;
+            for (int row = 0; row < depth && estimate > 0; row++) {
+                counts.getAndUpdate(index(hash, row), count -> Math.max(0, count - estimate));
+            }
+        }
+    }
+
+    long windowMillis() {
+        return bucketMillis * buckets;
+    }
+
+    private int[] rowTotals(long hash, long epoch) {
+        int[] totals = new int[depth];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (!holds(bucket, epoch)) {
+                continue;
+            }
+            AtomicIntegerArray counts = counters[bucket];
+            for (int row = 0; row < depth; row++) {
+                totals[row] += counts.get(index(hash, row));
+            }
+        }
+        return totals;
+    }
+
+    // whether the bucket holds a sub-window still inside the window ending at epoch
+    private boolean holds(int bucket, long epoch) {
+        long held = epochs.get(bucket);
+        return held >= 0 && held <= epoch && epoch - held < buckets;
+    }
+
+    /**
+     * The bucket for the given sub-window, cleared first if it still holds an
+     * older one.
+     */
+    private AtomicIntegerArray bucket(long epoch) {
+        int bucket = (int) (epoch % buckets);
+        if (epochs.get(bucket) != epoch) {
+            synchronized (this) {
+                if (epochs.get(bucket) < epoch) {
+                    AtomicIntegerArray counts = counters[bucket];
+                    for (int i = 0; i < counts.length(); i++) {
+                        counts.set(i, 0);
+                    }
+                    epochs.set(bucket, epoch);
+                }
+            }
+        }
+        return counters[bucket];
+    }
+
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private long hash(String key) {
+        long h = seed ^ 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        // murmur3 finalizer spreads FNV's weak high bits across both halves
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int min(int[] values) {
+        int min = Integer.MAX_VALUE;
+        for (int value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+}
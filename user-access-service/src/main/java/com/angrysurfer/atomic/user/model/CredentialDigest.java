@@ -0,0 +1,59 @@
+package com.angrysurfer.atomic.user.model;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Salted SHA-256 of a user identifier. Caches and snapshots keep this instead
+ * of the identifier itself so that nothing resident can be replayed as a credential.
+ */
+public final class CredentialDigest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int SALT_LENGTH = 16;
+
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final byte[] salt;
+
+    private final byte[] digest;
+
+    public CredentialDigest(byte[] salt, byte[] digest) {
+        this.salt = salt;
+        this.digest = digest;
+    }
+
+    public static CredentialDigest of(String identifier) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return new CredentialDigest(salt, hash(salt, identifier));
+    }
+
+    public boolean matches(String identifier) {
+        return identifier != null && MessageDigest.isEqual(digest, hash(salt, identifier));
+    }
+
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    private static byte[] hash(byte[] salt, String identifier) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(salt);
+            return sha.digest(identifier.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.angrysurfer.atomic.user.model;
+
+/**
+ * CDI event describing a change to atomic.users, fired for local saves and for
+ * changes observed on the Mongo change stream. In-process caches and indexes
+ * observe it to stay coherent with writes made by other replicas or services.
+ */
+public final class UserChangeEvent {
+
+    public enum Type {
+        /** A user was inserted or updated; {@link #getUser()} holds the new secret-free state. */
+        UPSERT,
+        /**
+         * A user was deleted; {@link #getMongoId()} is known, and {@link #getUserId()}
+         * and {@link #getAlias()} too when the change stream carried the deleted document.
+         */
+        DELETE,
+        /** Changes may have been missed; drop everything derived from atomic.users. */
+        RESET
+    }
+
+    private final Type type;
+
+    private final String mongoId;
+
+    private final UserRegistration user;
+
+    private final Long deletedId;
+
+    private final String deletedAlias;
+
+    private UserChangeEvent(Type type, String mongoId, UserRegistration user, Long deletedId,
+                            String deletedAlias) {
+        this.type = type;
+        this.mongoId = mongoId;
+        this.user = user;
+        this.deletedId = deletedId;
+        this.deletedAlias = deletedAlias;
+    }
+
+    public static UserChangeEvent upsert(UserRegistration user) {
+        UserRegistration resident = user.getIdentifier() != null ? user.withoutSecrets() : user;
+        return new UserChangeEvent(Type.UPSERT, resident.getMongoId(), resident, null, null);
+    }
+
+    public static UserChangeEvent delete(String mongoId) {
+        return delete(mongoId, null);
+    }
+
+    /**
+     * @param userId the deleted user's numeric id, or null when it is not known
+     */
+    public static UserChangeEvent delete(String mongoId, Long userId) {
+        return delete(mongoId, userId, null);
+    }
+
+    /**
+     * @param userId the deleted user's numeric id, or null when it is not known
+     * @param alias the deleted user's alias, or null when it is not known
+     */
+    public static UserChangeEvent delete(String mongoId, Long userId, String alias) {
+        return new UserChangeEvent(Type.DELETE, mongoId, null, userId, alias);
+    }
+
+    public static UserChangeEvent reset() {
+        return new UserChangeEvent(Type.RESET, null, null, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getMongoId() {
+        return mongoId;
+    }
+
+    public UserRegistration getUser() {
+        return user;
+    }
+
+    /**
+     * The numeric id of the user this event is about, or null when it is not known.
+     */
+    public Long getUserId() {
+        return user != null ? user.getId() : deletedId;
+    }
+
+    /**
+     * The alias of the user this event is about, or null when it is not known.
+     */
+    public String getAlias() {
+        return user != null ? user.getAlias() : deletedAlias;
+    }
+}
@@ -11,6 +11,8 @@ public class UserRegistration implements Serializable {
 
     private static final long serialVersionUID = 2747813660378401172L;
 
+    private static final String DEFAULT_AVATAR_URL = "https://picsum.photos/50/50";
+
     private String mongoId;
 
     // Client-facing ID - for compatibility with existing web clients
@@ -26,7 +28,16 @@ public class UserRegistration implements Serializable {
     @Email(message = "Email should be valid")
     private String email;
 
-    private String avatarUrl = "https://picsum.photos/50/50";
+    private String avatarUrl = DEFAULT_AVATAR_URL;
+
+    // Bumped on every save; profile ETags are derived from it
+    private long version;
+
+    // Epoch millis until which logins are refused after repeated failures; 0 when not locked
+    private long lockedUntil;
+
+    // Held in place of the identifier by in-process caches, never persisted to Mongo
+    private transient CredentialDigest credentialDigest;
 
     public UserRegistrationDTO toDTO() {
         UserRegistrationDTO dto = new UserRegistrationDTO();
@@ -39,21 +50,59 @@ public class UserRegistration implements Serializable {
         return dto;
     }
 
+    /**
+     * @throws IllegalArgumentException if the DTO carries an id that is not a number
+     */
+    public static UserRegistration fromDTO(UserRegistrationDTO dto) {
+        UserRegistration user = new UserRegistration(dto.getAlias(), dto.getEmail(),
+                dto.getAvatarUrl() != null ? dto.getAvatarUrl() : DEFAULT_AVATAR_URL, dto.getIdentifier());
+        // toDTO() renders a missing id as "null", so accept that back as no id
+        if (dto.getId() != null && !dto.getId().isBlank() && !"null".equals(dto.getId())) {
+            try {
+                user.setId(Long.valueOf(dto.getId().trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("User id is not a number: " + dto.getId(), e);
+            }
+        }
+        user.setAdmin(dto.isAdmin());
+        return user;
+    }
+
+    /**
+     * Copy of this registration with the identifier replaced by a salted digest,
+     * suitable for keeping in memory or writing to a local snapshot.
+     */
+    public UserRegistration withoutSecrets() {
+        UserRegistration copy = new UserRegistration(getAlias(), getEmail(), getAvatarUrl());
+        copy.setMongoId(getMongoId());
+        copy.setId(getId());
+        copy.setAdmin(isAdmin());
+        copy.setVersion(getVersion());
+        copy.setLockedUntil(getLockedUntil());
+        copy.setCredentialDigest(getIdentifier() != null ? CredentialDigest.of(getIdentifier()) : getCredentialDigest());
+        return copy;
+    }
+
+    public boolean credentialsMatch(String candidate) {
+        if (getIdentifier() != null) {
+            return getIdentifier().equals(candidate);
+        }
+        return credentialDigest != null && credentialDigest.matches(candidate);
+    }
+
     public UserRegistration() {
 
     }
 
     public UserRegistration(String alias, String email, String avatarUrl) {
-        setAlias(alias);
-        setEmail(email);
-        setAvatarUrl(avatarUrl);
+        this.alias = alias;
+        this.email = email;
+        this.avatarUrl = avatarUrl;
     }
 
     public UserRegistration(String alias, String email, String avatarUrl, String identifier) {
-        setAlias(alias);
-        setEmail(email);
-        setAvatarUrl(avatarUrl);
-        setIdentifier(identifier);
+        this(alias, email, avatarUrl);
+        this.identifier = identifier;
     }
 
     public String getMongoId() {
@@ -112,4 +161,32 @@ public class UserRegistration implements Serializable {
         this.admin = admin;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getLockedUntil() {
+        return lockedUntil;
+    }
+
+    public void setLockedUntil(long lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+
+    public boolean isLockedAt(long nowMillis) {
+        return lockedUntil > nowMillis;
+    }
+
+    public CredentialDigest getCredentialDigest() {
+        return credentialDigest;
+    }
+
+    public void setCredentialDigest(CredentialDigest credentialDigest) {
+        this.credentialDigest = credentialDigest;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.angrysurfer.atomic.user.profile;
+
+/**
+ * A profile already serialized to JSON, with the strong ETag of that exact
+ * representation. Served as-is, so a hit costs no serialization.
+ */
+public final class CachedProfile {
+
+    private final String mongoId;
+
+    private final long id;
+
+    private final long version;
+
+    private final String etag;
+
+    private final byte[] json;
+
+    CachedProfile(String mongoId, long id, long version, byte[] json) {
+        this.mongoId = mongoId;
+        this.id = id;
+        this.version = version;
+        this.etag = "\"" + id + "-" + version + "\"";
+        this.json = json;
+    }
+
+    /**
+     * The quoted ETag header value.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header names this representation. The
+     * header may list several tags or {@code *}; weak tags compare by their
+     * opaque value, as RFC 9110 requires for this header.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    String mongoId() {
+        return mongoId;
+    }
+
+    long id() {
+        return id;
+    }
+
+    long version() {
+        return version;
+    }
+}
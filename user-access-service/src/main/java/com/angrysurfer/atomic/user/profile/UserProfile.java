@@ -0,0 +1,51 @@
+package com.angrysurfer.atomic.user.profile;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+/**
+ * The public profile fields of a user, as served by the profile endpoint.
+ */
+public final class UserProfile {
+
+    private final Long id;
+
+    private final String alias;
+
+    private final String email;
+
+    private final String avatarUrl;
+
+    private final boolean admin;
+
+    public UserProfile(Long id, String alias, String email, String avatarUrl, boolean admin) {
+        this.id = id;
+        this.alias = alias;
+        this.email = email;
+        this.avatarUrl = avatarUrl;
+        this.admin = admin;
+    }
+
+    public static UserProfile of(UserRegistration user) {
+        return new UserProfile(user.getId(), user.getAlias(), user.getEmail(), user.getAvatarUrl(), user.isAdmin());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+}
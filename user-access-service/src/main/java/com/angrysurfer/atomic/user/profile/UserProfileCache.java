@@ -0,0 +1,129 @@
+package com.angrysurfer.atomic.user.profile;
+
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.cache.LongObjectHashMap;
+import com.angrysurfer.atomic.user.cache.UserIdIndex;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Serialized profiles keyed by numeric user id. A profile is rendered once per
+ * user version, from {@link UserIdIndex} on a miss or from the new state carried
+ * by a {@link UserChangeEvent}; an older version never replaces a newer one.
+ */
+@ApplicationScoped
+public class UserProfileCache {
+
+    @Inject
+    @ConfigProperty(name = "user.profile.cache.max-entries", defaultValue = "100000")
+    int maxEntries;
+
+    @Inject
+    private UserIdIndex userIdIndex;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LongObjectHashMap<CachedProfile> byId;
+
+    // Change-stream deletes may only carry _id, so track which id each resident profile lives under
+    private final ConcurrentHashMap<String, Long> idByMongoId = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        byId = new LongObjectHashMap<>(Math.min(maxEntries, 1 << 16));
+    }
+
+    public Optional<CachedProfile> find(long id) {
+        CachedProfile cached = byId.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<CachedProfile> rendered = userIdIndex.findById(id).map(this::render);
+        rendered.ifPresent(profile -> put(id, profile));
+        return rendered;
+    }
+
+    CachedProfile render(UserRegistration user) {
+        try {
+            return new CachedProfile(user.getMongoId(), user.getId(), user.getVersion(),
+                    objectMapper.writeValueAsBytes(UserProfile.of(user)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writers are serialized so the version check, the table and the mongoId
+     * mapping always agree; readers go straight to the table.
+     */
+    private synchronized void put(long id, CachedProfile profile) {
+        CachedProfile current = byId.get(id);
+        // a render from a slower read must not replace a newer version
+        if (current != null && current.version() > profile.version()) {
+            return;
+        }
+        if (current == null && byId.size() >= maxEntries) {
+            forget(byId.evictOne());
+        }
+        store(id, profile);
+    }
+
+    synchronized void onUserChange(@Observes UserChangeEvent event) {
+        switch (event.getType()) {
+            case UPSERT -> {
+                // render the new state rather than just dropping the entry, so a read racing
+                // with UserIdIndex's own refresh cannot put the old version back
+                UserRegistration user = event.getUser();
+                Long residentId = event.getMongoId() != null ? idByMongoId.get(event.getMongoId()) : null;
+                if (residentId != null && !residentId.equals(user.getId())) {
+                    forget(byId.remove(residentId));
+                }
+                CachedProfile current = user.getId() != null ? byId.get(user.getId()) : null;
+                if (current != null && current.version() <= user.getVersion()) {
+                    store(user.getId(), render(user));
+                }
+            }
+            case DELETE -> {
+                Long residentId = event.getUserId() != null ? event.getUserId()
+                        : event.getMongoId() != null ? idByMongoId.get(event.getMongoId()) : null;
+                if (residentId != null) {
+                    forget(byId.remove(residentId));
+                }
+            }
+            case RESET -> {
+                byId.clear();
+                idByMongoId.clear();
+            }
+        }
+    }
+
+    private void store(long id, CachedProfile profile) {
+        forget(byId.get(id));
+        byId.put(id, profile);
+        if (profile.mongoId() != null) {
+            idByMongoId.put(profile.mongoId(), id);
+        }
+    }
+
+    private void forget(CachedProfile removed) {
+        if (removed != null && removed.mongoId() != null) {
+            idByMongoId.remove(removed.mongoId(), removed.id());
+        }
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
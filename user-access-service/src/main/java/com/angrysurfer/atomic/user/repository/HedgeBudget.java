@@ -0,0 +1,41 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps hedged reads at a fraction of all reads: every read deposits {@code ratio}
+ * of a token, a hedge spends a whole one, and at most {@code burst} tokens are
+ * banked. When the secondary is needed for every read, as when the primary is
+ * down rather than slow, hedging cannot multiply the load beyond that ratio.
+ */
+final class HedgeBudget {
+
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final AtomicLong balance;
+
+    HedgeBudget(double ratio, int burst) {
+        this.deposit = Math.round(ratio * UNIT);
+        this.capacity = (long) burst * UNIT;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    void deposit() {
+        balance.getAndUpdate(tokens -> Math.min(capacity, tokens + deposit));
+    }
+
+    boolean tryWithdraw() {
+        long tokens;
+        do {
+            tokens = balance.get();
+            if (tokens < UNIT) {
+                return false;
+            }
+        } while (!balance.compareAndSet(tokens, tokens - UNIT));
+        return true;
+    }
+}
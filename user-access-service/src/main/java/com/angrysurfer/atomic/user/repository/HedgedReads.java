@@ -0,0 +1,317 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.ReadPreference;
+
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Runs point reads under the current {@link Deadline}, passing the time left to
+ * the server as {@code maxTimeMS}. Reads under a deadline run on a virtual thread
+ * and are abandoned once it passes, since {@code maxTimeMS} does not cover server
+ * selection, connection checkout or a stalled socket. With {@code user.hedge.enabled},
+ * if the primary has not answered within the recent p95 latency, the same read
+ * is sent with {@code secondaryPreferred} and whichever answers first wins. The loser is left to finish on its own. Hedges are limited
+ * to {@code user.hedge.max-ratio} of all reads, and the secondary may lag the
+ * primary by at most {@code user.hedge.max-staleness-seconds}. Reads whose answer
+ * must be current, such as credentials and lock state, use {@link #readPrimary}.
+ */
+@ApplicationScoped
+public class HedgedReads {
+
+    @Inject
+    @ConfigProperty(name = "user.hedge.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "user.hedge.percentile", defaultValue = "0.95")
+    double percentile;
+
+    @Inject
+    @ConfigProperty(name = "user.hedge.initial-delay-ms", defaultValue = "50")
+    long initialDelayMs;
+
+    @Inject
+    @ConfigProperty(name = "user.hedge.min-delay-ms", defaultValue = "2")
+    long minDelayMs;
+
+    @Inject
+    @ConfigProperty(name = "user.hedge.max-ratio", defaultValue = "0.05")
+    double maxRatio;
+
+    @Inject
+    @ConfigProperty(name = "user.hedge.burst", defaultValue = "10")
+    int burst;
+
+    // MongoDB refuses bounds under 90 s; 0 leaves the secondary unbounded
+    @Inject
+    @ConfigProperty(name = "user.hedge.max-staleness-seconds", defaultValue = "90")
+    long maxStalenessSeconds;
+
+    private final LatencyWindow latencies = new LatencyWindow(1024, 32);
+
+    private final LongAdder reads = new LongAdder();
+
+    private final LongAdder hedged = new LongAdder();
+
+    private final LongAdder secondaryWins = new LongAdder();
+
+    private final LongAdder throttled = new LongAdder();
+
+    private final LongAdder deadlineExceeded = new LongAdder();
+
+    private HedgeBudget budget;
+
+    private ReadPreference secondaryPreference;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        budget = new HedgeBudget(maxRatio, burst);
+        secondaryPreference = maxStalenessSeconds > 0
+                ? ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS)
+                : ReadPreference.secondaryPreferred();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Perform a read, hedged when enabled.
+     *
+     * @throws DeadlineExceededException when the current deadline passes first
+     */
+    public <T> T read(Read<T> read) {
+        return read(read, enabled);
+    }
+
+    /**
+     * Perform a read on the primary only, under the current deadline. For reads
+     * whose answer must reflect every acknowledged write.
+     *
+     * @throws DeadlineExceededException when the current deadline passes first
+     */
+    public <T> T readPrimary(Read<T> read) {
+        return read(read, false);
+    }
+
+    private <T> T read(Read<T> read, boolean hedge) {
+        Optional<Deadline> deadline = Deadline.current();
+        long maxTimeMs = deadline.map(this::remainingMillis).orElse(0L);
+        reads.increment();
+        if (!hedge && deadline.isEmpty()) {
+            return translate(() -> read.run(ReadPreference.primary(), maxTimeMs));
+        }
+        Context context = Context.current();
+        if (!hedge) {
+            // maxTimeMS does not stop server selection, pool checkout or a stalled socket; stop waiting here
+            return await(CompletableFuture.supplyAsync(context.wrapSupplier(
+                    () -> read.run(ReadPreference.primary(), maxTimeMs)), executor), deadline);
+        }
+        budget.deposit();
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(context.wrapSupplier(() -> {
+            T result = read.run(ReadPreference.primary(), maxTimeMs);
+            latencies.record(System.nanoTime() - start);
+            return result;
+        }), executor);
+
+        long delay = hedgeDelayNanos();
+        try {
+            return primary.get(deadline.map(d -> Math.min(delay, d.remainingNanos())).orElse(delay),
+                    TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // still running: hedge below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a read", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        if (deadline.isPresent() && deadline.get().isExpired()) {
+            throw exceeded(null);
+        }
+        if (!budget.tryWithdraw()) {
+            throttled.increment();
+            return await(primary, deadline);
+        }
+        hedged.increment();
+        long secondaryMaxTimeMs = deadline.map(this::remainingMillis).orElse(0L);
+        CompletableFuture<T> secondary = CompletableFuture.supplyAsync(context.wrapSupplier(
+                () -> read.run(secondaryPreference, secondaryMaxTimeMs)), executor);
+        return await(first(primary, secondary), deadline);
+    }
+
+    /**
+     * Delay before hedging: the configured percentile of recent primary reads,
+     * or the initial delay until enough reads have been seen.
+     */
+    long hedgeDelayNanos() {
+        long observed = latencies.percentile(percentile);
+        long delay = observed < 0 ? TimeUnit.MILLISECONDS.toNanos(initialDelayMs) : observed;
+        return Math.max(delay, TimeUnit.MILLISECONDS.toNanos(minDelayMs));
+    }
+
+    @Gauge(name = "user.mongo.reads", unit = MetricUnits.NONE, absolute = true,
+            description = "Point reads issued against Mongo")
+    public long reads() {
+        return reads.sum();
+    }
+
+    @Gauge(name = "user.mongo.hedged", unit = MetricUnits.NONE, absolute = true,
+            description = "Point reads that were also sent to a secondary")
+    public long hedged() {
+        return hedged.sum();
+    }
+
+    @Gauge(name = "user.mongo.hedge.secondary-wins", unit = MetricUnits.NONE, absolute = true,
+            description = "Hedged reads answered first by the secondary")
+    public long secondaryWins() {
+        return secondaryWins.sum();
+    }
+
+    @Gauge(name = "user.mongo.hedge.throttled", unit = MetricUnits.NONE, absolute = true,
+            description = "Slow reads not hedged because the hedge budget was spent")
+    public long throttled() {
+        return throttled.sum();
+    }
+
+    @Gauge(name = "user.mongo.hedge.rate", unit = MetricUnits.NONE, absolute = true,
+            description = "Fraction of point reads that were hedged")
+    public double hedgeRate() {
+        long total = reads.sum();
+        return total == 0 ? 0 : (double) hedged.sum() / total;
+    }
+
+    @Gauge(name = "user.mongo.hedge.win-rate", unit = MetricUnits.NONE, absolute = true,
+            description = "Fraction of hedged reads the secondary answered first")
+    public double winRate() {
+        long total = hedged.sum();
+        return total == 0 ? 0 : (double) secondaryWins.sum() / total;
+    }
+
+    @Gauge(name = "user.mongo.deadline-exceeded", unit = MetricUnits.NONE, absolute = true,
+            description = "Point reads abandoned because the request deadline passed")
+    public long deadlineExceeded() {
+        return deadlineExceeded.sum();
+    }
+
+    /**
+     * The first of the two reads to succeed; fails only when both fail. Counts a
+     * win when the secondary gets there first.
+     */
+    private <T> CompletableFuture<T> first(CompletableFuture<T> primary, CompletableFuture<T> secondary) {
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        // settled before completing, so the win is counted by the time the caller wakes
+        AtomicBoolean answered = new AtomicBoolean();
+        primary.whenComplete((result, failure) -> {
+            if (failure == null) {
+                if (answered.compareAndSet(false, true)) {
+                    first.complete(result);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(failure);
+            }
+        });
+        secondary.whenComplete((result, failure) -> {
+            if (failure == null) {
+                if (answered.compareAndSet(false, true)) {
+                    secondaryWins.increment();
+                    first.complete(result);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(failure);
+            }
+        });
+        return first;
+    }
+
+    private <T> T await(CompletableFuture<T> future, Optional<Deadline> deadline) {
+        try {
+            return deadline.isPresent()
+                    ? future.get(deadline.get().remainingNanos(), TimeUnit.NANOSECONDS)
+                    : future.get();
+        } catch (TimeoutException e) {
+            throw exceeded(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a read", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private <T> T translate(Supplier<T> read) {
+        try {
+            return read.get();
+        } catch (MongoExecutionTimeoutException e) {
+            throw exceeded(e);
+        }
+    }
+
+    private long remainingMillis(Deadline deadline) {
+        if (deadline.isExpired()) {
+            throw exceeded(null);
+        }
+        return deadline.remainingMillis();
+    }
+
+    private RuntimeException unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof MongoExecutionTimeoutException timeout) {
+            return exceeded(timeout);
+        }
+        if (failure instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException(failure);
+    }
+
+    private DeadlineExceededException exceeded(Throwable cause) {
+        deadlineExceeded.increment();
+        return new DeadlineExceededException("Read did not finish before the request deadline", cause);
+    }
+
+    /**
+     * One read against the collection.
+     */
+    @FunctionalInterface
+    public interface Read<T> {
+
+        /**
+         * @param preference where to send the read
+         * @param maxTimeMs server-side time limit, or 0 for none
+         */
+        T run(ReadPreference preference, long maxTimeMs);
+    }
+}
@@ -0,0 +1,56 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The most recent read latencies in a fixed ring, with percentiles computed from
+ * a sorted copy that is reused for a short while so the read path rarely sorts.
+ */
+final class LatencyWindow {
+
+    private static final long RECOMPUTE_NANOS = 250_000_000L;
+
+    private final AtomicLongArray samples;
+
+    private final AtomicInteger recorded = new AtomicInteger();
+
+    private final int minSamples;
+
+    private volatile long[] sorted = new long[0];
+
+    private volatile long sortedAt;
+
+    LatencyWindow(int size, int minSamples) {
+        this.samples = new AtomicLongArray(size);
+        this.minSamples = minSamples;
+    }
+
+    void record(long nanos) {
+        samples.set(Math.floorMod(recorded.getAndIncrement(), samples.length()), nanos);
+    }
+
+    /**
+     * The given percentile (0..1) of the recorded latencies in nanoseconds, or -1
+     * until enough samples have been seen.
+     */
+    long percentile(double percentile) {
+        long now = System.nanoTime();
+        long[] snapshot = sorted;
+        if (snapshot.length == 0 || now - sortedAt >= RECOMPUTE_NANOS) {
+            int count = Math.min(recorded.get(), samples.length());
+            if (count < minSamples) {
+                return -1;
+            }
+            snapshot = new long[count];
+            for (int i = 0; i < count; i++) {
+                snapshot[i] = samples.get(i);
+            }
+            Arrays.sort(snapshot);
+            sorted = snapshot;
+            sortedAt = now;
+        }
+        return snapshot[Math.min(snapshot.length - 1, (int) (percentile * snapshot.length))];
+    }
+}
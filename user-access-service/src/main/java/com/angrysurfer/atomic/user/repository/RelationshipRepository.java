@@ -0,0 +1,154 @@
+package com.angrysurfer.atomic.user.repository;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Edges of the user relationship graph in atomic.relationships, one document
+ * per edge: {@code {type, from, to}} with numeric user ids. Friendships are
+ * symmetric and stored once, with the lower id in {@code from}; a friend request
+ * is stored from the requester to the user asked until it is accepted.
+ */
+@ApplicationScoped
+public class RelationshipRepository {
+
+    public static final String FOLLOW = "follow";
+
+    public static final String FRIEND = "friend";
+
+    public static final String REQUEST = "request";
+
+    public interface EdgeConsumer {
+        void accept(String type, long from, long to);
+    }
+
+    @Inject
+    private MongoClient mongoClient;
+
+    private MongoCollection<Document> getCollection() {
+        return mongoClient.getDatabase("atomic").getCollection("relationships", Document.class);
+    }
+
+    /**
+     * One document per edge; the unique index also serves upserts and deletes.
+     * Idempotent; safe to call on every start.
+     */
+    public void ensureIndexes() {
+        getCollection().createIndex(Indexes.ascending("from", "type", "to"),
+                new IndexOptions().name("from_1_type_1_to_1").unique(true));
+    }
+
+    public void add(String type, long from, long to) {
+        Bson edge = edge(type, from, to);
+        getCollection().updateOne(edge, Updates.setOnInsert("since", new Date()), new UpdateOptions().upsert(true));
+    }
+
+    public boolean remove(String type, long from, long to) {
+        return getCollection().deleteOne(edge(type, from, to)).getDeletedCount() > 0;
+    }
+
+    public boolean exists(String type, long from, long to) {
+        return getCollection().find(edge(type, from, to)).projection(Projections.include("_id")).first() != null;
+    }
+
+    /**
+     * Delete every edge and request the user takes part in.
+     */
+    public long removeUser(long id) {
+        return getCollection().deleteMany(Filters.or(Filters.eq("from", id), Filters.eq("to", id))).getDeletedCount();
+    }
+
+    /**
+     * Ids of the users waiting for {@code id} to accept their friend request, oldest first.
+     */
+    public long[] requestsTo(long id, int skip, int limit) {
+        List<Long> from = new ArrayList<>();
+        try (MongoCursor<Document> cursor = getCollection().find(requests(id))
+                .projection(Projections.fields(Projections.include("from"), Projections.excludeId()))
+                .sort(Sorts.ascending("since"))
+                .skip(skip)
+                .limit(limit)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                from.add(((Number) cursor.next().get("from")).longValue());
+            }
+        }
+        return from.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public int countRequestsTo(long id) {
+        return (int) getCollection().countDocuments(requests(id));
+    }
+
+    /**
+     * Open a change stream over atomic.relationships, resuming after the given
+     * token when one is known.
+     *
+     * @param preImages ask for the deleted edge on deletes, which MongoDB 6.0 and
+     *                  later supply once {@link #enableChangeStreamPreImages()} has run
+     */
+    public ChangeStreamIterable<Document> watch(BsonDocument resumeToken, boolean preImages) {
+        ChangeStreamIterable<Document> changes = getCollection().watch();
+        if (preImages) {
+            changes = changes.fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        }
+        return resumeToken != null ? changes.resumeAfter(resumeToken) : changes;
+    }
+
+    /**
+     * Record pre-images of atomic.relationships so that change-stream deletes say
+     * which edge went. Idempotent; needs the collMod privilege and MongoDB 6.0.
+     */
+    public void enableChangeStreamPreImages() {
+        mongoClient.getDatabase("atomic").runCommand(new Document("collMod", "relationships")
+                .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+    }
+
+    /**
+     * Walk every edge with a server-side cursor.
+     */
+    public void forEachEdge(int batchSize, EdgeConsumer action) {
+        try (MongoCursor<Document> cursor = getCollection().find()
+                .projection(Projections.fields(Projections.include("type", "from", "to"), Projections.excludeId()))
+                .batchSize(batchSize)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                action.accept(doc.getString("type"), ((Number) doc.get("from")).longValue(),
+                        ((Number) doc.get("to")).longValue());
+            }
+        }
+    }
+
+    private static Bson requests(long to) {
+        return Filters.and(Filters.eq("to", to), Filters.eq("type", REQUEST));
+    }
+
+    private static Bson edge(String type, long from, long to) {
+        if (FRIEND.equals(type) && from > to) {
+            long swap = from;
+            from = to;
+            to = swap;
+        }
+        return Filters.and(Filters.eq("from", from), Filters.eq("type", type), Filters.eq("to", to));
+    }
+}
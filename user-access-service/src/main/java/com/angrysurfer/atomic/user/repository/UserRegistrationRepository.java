@@ -1,15 +1,41 @@
 package com.angrysurfer.atomic.user.repository;
 
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
 import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ChangeStreamIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import org.bson.BsonDocument;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @ApplicationScoped
 public class UserRegistrationRepository {
@@ -17,43 +43,228 @@ public class UserRegistrationRepository {
     @Inject
     private MongoClient mongoClient;
 
-    private MongoCollection<Document> getCollection() {
+    @Inject
+    Event<UserChangeEvent> userChanged;
+
+    @Inject
+    private HedgedReads hedgedReads;
+
+    MongoCollection<Document> getCollection() {
         MongoDatabase database = mongoClient.getDatabase("atomic");
         return database.getCollection("users", Document.class);
     }
 
+    /**
+     * The lookup behind validation, so it is never hedged: a secondary could
+     * still hold a changed password or a lifted lock.
+     */
     public Optional<UserRegistration> findByAlias(String alias) {
-        Document doc = getCollection().find(new Document("alias", alias)).first();
-        if (doc != null) {
-            return Optional.of(documentToUserRegistration(doc));
-        }
-        return Optional.empty();
+        return findOne(new Document("alias", alias), false);
     }
 
     public Optional<UserRegistration> findByEmail(String email) {
-        Document doc = getCollection().find(new Document("email", email)).first();
+        return findOne(new Document("email", email), true);
+    }
+
+    public Optional<UserRegistration> findById(long id) {
+        return findOne(new Document("id", id), true);
+    }
+
+    /**
+     * Single-document lookup bounded by the request deadline and, if allowed,
+     * hedged to a secondary when that is enabled.
+     */
+    private Optional<UserRegistration> findOne(Bson filter, boolean hedge) {
+        HedgedReads.Read<Document> read = (preference, maxTimeMs) -> getCollection()
+                .withReadPreference(preference)
+                .find(filter)
+                .maxTime(maxTimeMs, TimeUnit.MILLISECONDS)
+                .first();
+        Document doc = hedge ? hedgedReads.read(read) : hedgedReads.readPrimary(read);
         if (doc != null) {
             return Optional.of(documentToUserRegistration(doc));
         }
         return Optional.empty();
     }
 
+    /**
+     * Users whose alias or email starts with the prefix, ignoring case, ordered by
+     * alias. A case-insensitive regex cannot use an index, so this scans the
+     * collection; it only serves searches until the resident prefix index is loaded.
+     */
+    public List<UserRegistration> findByPrefix(String prefix, int skip, int limit) {
+        Pattern pattern = Pattern.compile("^" + Pattern.quote(prefix), Pattern.CASE_INSENSITIVE);
+        List<UserRegistration> users = new ArrayList<>();
+        try (MongoCursor<Document> cursor = getCollection()
+                .find(Filters.or(Filters.regex("alias", pattern), Filters.regex("email", pattern)))
+                .sort(Sorts.ascending("alias"))
+                .skip(skip)
+                .limit(limit)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                users.add(documentToUserRegistration(cursor.next()));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Index the client-facing numeric id so findById is not a collection scan.
+     * Idempotent; safe to call on every start.
+     */
+    public void ensureIdIndex() {
+        getCollection().createIndex(Indexes.ascending("id"), new IndexOptions().name("id_1").sparse(true));
+    }
+
+    /**
+     * Insert a new user at version 1, or overwrite an existing one. The stored
+     * version is incremented by the server, so concurrent saves each get their
+     * own version and an ETag never names two different states. A lockout is
+     * left as stored and copied onto the saved user, and so is the credential
+     * when the user carries none, as a secret-free resident copy does.
+     *
+     * @return the saved user, or null when an existing user was deleted meanwhile
+     */
     public UserRegistration save(UserRegistration userRegistration) {
         MongoCollection<Document> collection = getCollection();
-        Document doc = userRegistrationToDocument(userRegistration);
         
         if (userRegistration.getMongoId() != null) {
             // Update existing
-            collection.replaceOne(new Document("_id", new ObjectId(userRegistration.getMongoId())), doc);
+            Document fields = userRegistrationToDocument(userRegistration);
+            fields.remove("_id");
+            fields.remove("version");
+            if (userRegistration.getIdentifier() == null) {
+                fields.remove("identifier");
+            }
+            Document stored = collection.findOneAndUpdate(
+                    Filters.eq("_id", new ObjectId(userRegistration.getMongoId())),
+                    Updates.combine(new Document("$set", fields), Updates.inc("version", 1L)),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                            .projection(Projections.include("version", "lockedUntil")));
+            if (stored == null) {
+                // deleted meanwhile: there is nothing to announce, and $set does not recreate it
+                return null;
+            }
+            if (stored.get("version") instanceof Number version) {
+                userRegistration.setVersion(version.longValue());
+            }
+            userRegistration.setLockedUntil(stored.get("lockedUntil") instanceof Number lockedUntil
+                    ? lockedUntil.longValue() : 0);
         } else {
             // Insert new
+            userRegistration.setVersion(1);
+            userRegistration.setLockedUntil(0);
+            Document doc = userRegistrationToDocument(userRegistration);
             collection.insertOne(doc);
             userRegistration.setMongoId(doc.getObjectId("_id").toHexString());
         }
+        userChanged.fire(UserChangeEvent.upsert(userRegistration));
         return userRegistration;
     }
 
-    private UserRegistration documentToUserRegistration(Document doc) {
+    /**
+     * Refuse logins for the user until the given time. Only the lock is written,
+     * so a secret-free resident copy can be passed in. The version is incremented
+     * like any other change, so caches keyed on it take the lock.
+     */
+    public UserRegistration lockUntil(UserRegistration user, long lockedUntil) {
+        Document stored = getCollection().findOneAndUpdate(Filters.eq("alias", user.getAlias()),
+                Updates.combine(Updates.set("lockedUntil", lockedUntil), Updates.inc("version", 1L)),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                        .projection(Projections.include("version")));
+        UserRegistration locked = user.withoutSecrets();
+        locked.setLockedUntil(lockedUntil);
+        if (stored != null && stored.get("version") instanceof Number version) {
+            locked.setVersion(version.longValue());
+        }
+        userChanged.fire(UserChangeEvent.upsert(locked));
+        return locked;
+    }
+
+    /**
+     * Upsert a chunk of users keyed by alias in a single unordered bulkWrite.
+     * Fields of existing records are overwritten, except that a user given without
+     * an identifier keeps the stored one, so an export can be imported back.
+     * Change events carry the stored documents.
+     */
+    public BulkWriteResult upsertAllByAlias(List<UserRegistration> users) {
+        List<WriteModel<Document>> writes = new ArrayList<>(users.size());
+        List<String> aliases = new ArrayList<>(users.size());
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        for (UserRegistration user : users) {
+            Document fields = userRegistrationToDocument(user);
+            fields.remove("_id");
+            // the server increments the stored version, starting inserts at 1
+            fields.remove("version");
+            if (user.getIdentifier() == null) {
+                fields.remove("identifier");
+            }
+            writes.add(new UpdateOneModel<>(Filters.eq("alias", user.getAlias()),
+                    Updates.combine(new Document("$set", fields), Updates.inc("version", 1L)), upsert));
+            aliases.add(user.getAlias());
+        }
+        BulkWriteResult result = getCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        try (MongoCursor<Document> stored = getCollection().find(Filters.in("alias", aliases)).iterator()) {
+            while (stored.hasNext()) {
+                userChanged.fire(UserChangeEvent.upsert(documentToUserRegistration(stored.next())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walk the whole collection with a server-side cursor, handing each projected
+     * document to the consumer. Only one cursor batch is held in memory at a time.
+     */
+    public void forEach(List<String> fields, int batchSize, Consumer<Document> action) {
+        try (MongoCursor<Document> cursor = getCollection().find()
+                .projection(Projections.fields(Projections.include(fields), Projections.excludeId()))
+                .batchSize(batchSize)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        }
+    }
+
+    /**
+     * Walk every full user document with a server-side cursor. Used to build
+     * resident indexes; callers should strip secrets before keeping the result.
+     */
+    public void forEachUser(int batchSize, Consumer<UserRegistration> action) {
+        try (MongoCursor<Document> cursor = getCollection().find().batchSize(batchSize).iterator()) {
+            while (cursor.hasNext()) {
+                action.accept(documentToUserRegistration(cursor.next()));
+            }
+        }
+    }
+
+    /**
+     * Open a change stream over atomic.users that carries the post-image of updates,
+     * resuming after the given token when one is known.
+     *
+     * @param preImages also ask for the deleted document on deletes, which MongoDB
+     *                  6.0 and later supply once {@link #enableChangeStreamPreImages()}
+     *                  has run; older servers reject the option
+     */
+    public ChangeStreamIterable<Document> watch(BsonDocument resumeToken, boolean preImages) {
+        ChangeStreamIterable<Document> changes = getCollection().watch().fullDocument(FullDocument.UPDATE_LOOKUP);
+        if (preImages) {
+            changes = changes.fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        }
+        return resumeToken != null ? changes.resumeAfter(resumeToken) : changes;
+    }
+
+    /**
+     * Record pre-images of atomic.users so that change-stream deletes carry the
+     * user's numeric id. Idempotent; needs the collMod privilege and MongoDB 6.0.
+     */
+    public void enableChangeStreamPreImages() {
+        mongoClient.getDatabase("atomic").runCommand(new Document("collMod", "users")
+                .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+    }
+
+    public UserRegistration documentToUserRegistration(Document doc) {
         UserRegistration user = new UserRegistration();
         user.setMongoId(doc.getObjectId("_id").toHexString());
         if (doc.containsKey("id")) {
@@ -74,10 +285,16 @@ public class UserRegistrationRepository {
         if (doc.containsKey("avatarUrl")) {
             user.setAvatarUrl(doc.getString("avatarUrl"));
         }
+        if (doc.get("version") instanceof Number version) {
+            user.setVersion(version.longValue());
+        }
+        if (doc.get("lockedUntil") instanceof Number lockedUntil) {
+            user.setLockedUntil(lockedUntil.longValue());
+        }
         return user;
     }
 
-    private Document userRegistrationToDocument(UserRegistration user) {
+    Document userRegistrationToDocument(UserRegistration user) {
         Document doc = new Document();
         if (user.getMongoId() != null) {
             doc.put("_id", new ObjectId(user.getMongoId()));
@@ -90,6 +307,9 @@ public class UserRegistrationRepository {
         doc.put("alias", user.getAlias());
         doc.put("email", user.getEmail());
         doc.put("avatarUrl", user.getAvatarUrl());
+        doc.put("version", user.getVersion());
+        // lockedUntil is written only by lockUntil, so a save or import of a copy
+        // read before a lockout can neither clear nor shorten it
         return doc;
     }
 }
\ No newline at end of file
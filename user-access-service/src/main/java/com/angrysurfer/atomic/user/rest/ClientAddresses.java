@@ -0,0 +1,64 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.helidon.http.HeaderNames;
+import io.helidon.webserver.http.ServerRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * The address a request came from, for the login audit and lockout. Behind a
+ * load balancer or ingress listed in {@code user.client.trusted-proxies}, the
+ * caller is the rightmost {@code X-Forwarded-For} entry that is not itself a
+ * trusted proxy; entries to its left were written by the caller and are ignored.
+ * From any other peer the header is not believed.
+ */
+@ApplicationScoped
+public class ClientAddresses {
+
+    @Inject
+    @ConfigProperty(name = "user.client.trusted-proxies")
+    Optional<String> trustedProxies;
+
+    private Set<String> trusted;
+
+    @PostConstruct
+    void init() {
+        trusted = trustedProxies.stream()
+                .flatMap(proxies -> Arrays.stream(proxies.split(",")))
+                .map(String::trim)
+                .filter(proxy -> !proxy.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public String of(ServerRequest request) {
+        String peer = request.remotePeer().host();
+        if (!trusted.contains(peer)) {
+            return peer;
+        }
+        List<String> forwarded = request.headers().all(HeaderNames.X_FORWARDED_FOR, List::of);
+        String client = peer;
+        for (int header = forwarded.size() - 1; header >= 0; header--) {
+            String[] hops = forwarded.get(header).split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (hop.isEmpty()) {
+                    continue;
+                }
+                client = hop;
+                if (!trusted.contains(client)) {
+                    return client;
+                }
+            }
+        }
+        return client;
+    }
+}
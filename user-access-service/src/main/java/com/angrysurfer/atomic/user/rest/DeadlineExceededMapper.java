@@ -0,0 +1,19 @@
+package com.angrysurfer.atomic.user.rest;
+
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * A request that ran out of time answers 503 so callers can retry elsewhere.
+ */
+@Provider
+public class DeadlineExceededMapper implements ExceptionMapper<DeadlineExceededException> {
+
+    @Override
+    public Response toResponse(DeadlineExceededException exception) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    }
+}
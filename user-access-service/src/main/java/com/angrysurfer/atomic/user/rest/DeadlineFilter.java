@@ -0,0 +1,42 @@
+package com.angrysurfer.atomic.user.rest;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Binds each {@link UserResource} call's {@link Deadline}, taken from the
+ * {@value DeadlinePolicy#HEADER} header, for as long as the resource method runs.
+ */
+@Provider
+@ApplicationScoped
+@Priority(Priorities.AUTHENTICATION - 90)
+public class DeadlineFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String SCOPE = DeadlineFilter.class.getName() + ".scope";
+
+    @Inject
+    private DeadlinePolicy deadlinePolicy;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        Deadline deadline = deadlinePolicy.forRequest(request.getHeaderString(DeadlinePolicy.HEADER));
+        request.setProperty(SCOPE, deadline.bind());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (request.getProperty(SCOPE) instanceof Deadline.Scope scope) {
+            scope.close();
+        }
+    }
+}
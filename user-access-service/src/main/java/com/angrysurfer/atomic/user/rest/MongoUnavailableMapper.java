@@ -0,0 +1,20 @@
+package com.angrysurfer.atomic.user.rest;
+
+import com.angrysurfer.atomic.user.degraded.MongoUnavailableException;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Validation that needs Mongo while it is unreachable answers 503 at once rather
+ * than waiting on server selection.
+ */
+@Provider
+public class MongoUnavailableMapper implements ExceptionMapper<MongoUnavailableException> {
+
+    @Override
+    public Response toResponse(MongoUnavailableException exception) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.util.Optional;
+
+import com.angrysurfer.atomic.user.token.SessionClaims;
+import com.angrysurfer.atomic.user.token.SessionTokenService;
+
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Lets an {@link OwnerOrAdmin} call through only with a valid session token for
+ * the user named by the {@code {id}} path parameter, or for an admin: 401
+ * without one, 403 for anyone else.
+ */
+@Provider
+@OwnerOrAdmin
+@ApplicationScoped
+@Priority(Priorities.AUTHORIZATION)
+public class OwnerAuthorizationFilter implements ContainerRequestFilter {
+
+    @Inject
+    private SessionTokenService tokenService;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        Optional<SessionClaims> claims = tokenService.verify(
+                UserResource.bearerToken(request.getHeaderString(HttpHeaders.AUTHORIZATION)));
+        if (claims.isEmpty()) {
+            request.abortWith(Response.status(Response.Status.UNAUTHORIZED)
+                    .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                    .build());
+        } else if (!claims.get().isAdmin() && !isOwner(claims.get(), request)) {
+            request.abortWith(Response.status(Response.Status.FORBIDDEN).build());
+        }
+    }
+
+    private static boolean isOwner(SessionClaims claims, ContainerRequestContext request) {
+        String id = request.getUriInfo().getPathParameters().getFirst("id");
+        return claims.getId() != null && id != null && id.equals(String.valueOf(claims.getId()));
+    }
+}
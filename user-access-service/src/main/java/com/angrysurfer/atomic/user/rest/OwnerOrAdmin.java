@@ -0,0 +1,19 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import jakarta.ws.rs.NameBinding;
+
+/**
+ * Resource methods acting on behalf of the user in the {@code {id}} path
+ * parameter, which only that user or an admin may reach; enforced by
+ * {@link OwnerAuthorizationFilter}.
+ */
+@NameBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OwnerOrAdmin {
+}
@@ -0,0 +1,111 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.angrysurfer.atomic.user.tracing.Tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.UriBuilder;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Opens a server span for every {@link UserResource} call, named after the
+ * matched route ({@code GET /api/user/id/{id}/profile}) and continuing the
+ * caller's trace when a {@code traceparent} header is present. The span is
+ * current while the resource method runs, so service and Mongo spans nest
+ * under it.
+ */
+@Provider
+@ApplicationScoped
+@Priority(Priorities.AUTHENTICATION - 100)
+public class TracingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final AttributeKey<String> HTTP_METHOD = AttributeKey.stringKey("http.request.method");
+
+    private static final AttributeKey<String> HTTP_ROUTE = AttributeKey.stringKey("http.route");
+
+    private static final AttributeKey<Long> HTTP_STATUS = AttributeKey.longKey("http.response.status_code");
+
+    private static final String SPAN = TracingFilter.class.getName() + ".span";
+
+    private static final String SCOPE = TracingFilter.class.getName() + ".scope";
+
+    private static final TextMapGetter<ContainerRequestContext> HEADERS = new TextMapGetter<>() {
+
+        @Override
+        public Iterable<String> keys(ContainerRequestContext request) {
+            return request.getHeaders().keySet();
+        }
+
+        @Override
+        public String get(ContainerRequestContext request, String key) {
+            return request == null ? null : request.getHeaderString(key);
+        }
+    };
+
+    private final Map<Method, String> routes = new ConcurrentHashMap<>();
+
+    @Inject
+    private Tracing tracing;
+
+    @jakarta.ws.rs.core.Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        String route = route(request);
+        Context parent = tracing.propagator().extract(Context.root(), request, HEADERS);
+        Span span = tracing.tracer().spanBuilder(request.getMethod() + " " + route)
+                .setParent(parent)
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute(HTTP_METHOD, request.getMethod())
+                .setAttribute(HTTP_ROUTE, route)
+                .startSpan();
+        request.setProperty(SPAN, span);
+        request.setProperty(SCOPE, span.makeCurrent());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (request.getProperty(SCOPE) instanceof Scope scope) {
+            scope.close();
+        }
+        if (request.getProperty(SPAN) instanceof Span span) {
+            span.setAttribute(HTTP_STATUS, (long) response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            span.end();
+        }
+    }
+
+    private String route(ContainerRequestContext request) {
+        Method method = resourceInfo.getResourceMethod();
+        if (method == null) {
+            return request.getUriInfo().getPath();
+        }
+        return routes.computeIfAbsent(method, m -> {
+            UriBuilder route = UriBuilder.fromPath(request.getUriInfo().getBaseUri().getPath())
+                    .path(resourceInfo.getResourceClass());
+            return (m.isAnnotationPresent(Path.class) ? route.path(m) : route).toTemplate();
+        });
+    }
+}
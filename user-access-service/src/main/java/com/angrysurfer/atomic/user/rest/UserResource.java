@@ -1,45 +1,303 @@
 package com.angrysurfer.atomic.user.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.graph.RelationshipGraph.Adjacency;
+import com.angrysurfer.atomic.user.graph.RelationshipService;
+import com.angrysurfer.atomic.user.profile.CachedProfile;
+import com.angrysurfer.atomic.user.profile.UserProfileCache;
+import com.angrysurfer.atomic.user.search.UserSearchIndex;
 import com.angrysurfer.atomic.user.service.UserAccessService;
+import com.angrysurfer.atomic.user.service.UserTransferService;
 
-import jakarta.enterprise.context.RequestScoped;
+import io.helidon.webserver.http.ServerRequest;
+import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
+/**
+ * Stateless singleton: every field is an application-scoped service or a config
+ * value, so one instance serves all requests and no bean is created per call.
+ * Responses are still built per call because Jersey writes headers into the
+ * {@link Response} it is handed, so a shared instance cannot be reused.
+ * {@link ValidateUserRoute} can serve validation without JAX-RS at all.
+ */
 @Path("/user")
-@RequestScoped
+@ApplicationScoped
 public class UserResource {
 
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    // clients may keep the profile but must revalidate it with If-None-Match before use
+    private static final CacheControl REVALIDATE = new CacheControl();
+
+    static {
+        REVALIDATE.setNoCache(true);
+        REVALIDATE.setNoTransform(false);
+    }
+
     @Inject
     private UserAccessService userAccessService;
 
+    @Inject
+    private UserTransferService userTransferService;
+
+    @Inject
+    private UserSearchIndex userSearchIndex;
+
+    @Inject
+    private RelationshipService relationshipService;
+
+    @Inject
+    private UserProfileCache profileCache;
+
+    @Inject
+    private ClientAddresses clientAddresses;
+
+    @Inject
+    @ConfigProperty(name = "user.bulk.enabled", defaultValue = "false")
+    boolean bulkEnabled;
+
     @POST
     @Path("/validate")
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response validateUser(@FormParam("alias") String alias, @FormParam("identifier") String password) {
-        UserRegistrationDTO userDto = userAccessService.validateUser(alias, password);
-        
-        if (userDto != null) {
-            return Response.ok(userDto).build();
+    public Response validateUser(@FormParam("alias") String alias, @FormParam("identifier") String password,
+                                 @Context ServerRequest request) {
+        return validated(userAccessService.validateUser(alias, password, clientAddresses.of(request)));
+    }
+
+    @GET
+    @Path("/validate")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response validateUserGet(@QueryParam("alias") String alias, @QueryParam("identifier") String password,
+                                    @Context ServerRequest request) {
+        return validated(userAccessService.validateUser(alias, password, clientAddresses.of(request)));
+    }
+
+    @POST
+    @Path("/token/verify")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response verifyToken(@FormParam("token") String token) {
+        return validated(userAccessService.verifyToken(token));
+    }
+
+    @GET
+    @Path("/token/verify")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response verifyBearerToken(@HeaderParam(HttpHeaders.AUTHORIZATION) String authorization) {
+        return verifyToken(bearerToken(authorization));
+    }
+
+    @POST
+    @Path("/token/revoke")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    public Response revokeToken(@FormParam("token") String token) {
+        if (userAccessService.revokeToken(token)) {
+            return Response.noContent().build();
         } else {
-            return Response.status(Response.Status.UNAUTHORIZED).build();
+            return unauthorized();
         }
     }
 
     @GET
-    @Path("/validate")
+    @Path("/id/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response validateUserGet(@QueryParam("alias") String alias, @QueryParam("identifier") String password) {
-        UserRegistrationDTO userDto = userAccessService.validateUser(alias, password);
-        
+    public Response getUserById(@PathParam("id") long id) {
+        UserRegistrationDTO userDto = userAccessService.getUserById(id);
+
         if (userDto != null) {
             return Response.ok(userDto).build();
         } else {
-            return Response.status(Response.Status.UNAUTHORIZED).build();
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+    }
+
+    @GET
+    @Path("/id/{id}/profile")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getUserProfile(@PathParam("id") long id,
+                                   @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        CachedProfile profile = profileCache.find(id).orElse(null);
+
+        if (profile == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        Response.ResponseBuilder response = profile.matches(ifNoneMatch)
+                ? Response.notModified()
+                : Response.ok(profile.getJson(), MediaType.APPLICATION_JSON_TYPE);
+        return response.header(HttpHeaders.ETAG, profile.getEtag()).cacheControl(REVALIDATE).build();
+    }
+
+    @GET
+    @Path("/id/{id}/followers")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getFollowers(@PathParam("id") long id,
+                                 @QueryParam("offset") @DefaultValue("0") int offset,
+                                 @QueryParam("limit") @DefaultValue("100") int limit) {
+        return relationships(() -> relationshipService.page(id, Adjacency.FOLLOWERS, offset, limit));
+    }
+
+    @GET
+    @Path("/id/{id}/following")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getFollowing(@PathParam("id") long id,
+                                 @QueryParam("offset") @DefaultValue("0") int offset,
+                                 @QueryParam("limit") @DefaultValue("100") int limit) {
+        return relationships(() -> relationshipService.page(id, Adjacency.FOLLOWING, offset, limit));
+    }
+
+    @GET
+    @Path("/id/{id}/friends")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getFriends(@PathParam("id") long id,
+                               @QueryParam("offset") @DefaultValue("0") int offset,
+                               @QueryParam("limit") @DefaultValue("100") int limit) {
+        return relationships(() -> relationshipService.page(id, Adjacency.FRIENDS, offset, limit));
+    }
+
+    @GET
+    @Path("/id/{id}/friends/requests")
+    @OwnerOrAdmin
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getFriendRequests(@PathParam("id") long id,
+                                      @QueryParam("offset") @DefaultValue("0") int offset,
+                                      @QueryParam("limit") @DefaultValue("100") int limit) {
+        return relationships(() -> relationshipService.friendRequests(id, offset, limit));
+    }
+
+    @GET
+    @Path("/id/{id}/friends/mutual/{other}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMutualFriends(@PathParam("id") long id, @PathParam("other") long other,
+                                     @QueryParam("limit") @DefaultValue("100") int limit) {
+        return relationships(() -> relationshipService.mutualFriends(id, other, limit));
+    }
+
+    @PUT
+    @Path("/id/{id}/following/{other}")
+    @OwnerOrAdmin
+    public Response follow(@PathParam("id") long id, @PathParam("other") long other) {
+        return relationships(() -> {
+            relationshipService.follow(id, other);
+            return null;
+        });
+    }
+
+    @DELETE
+    @Path("/id/{id}/following/{other}")
+    @OwnerOrAdmin
+    public Response unfollow(@PathParam("id") long id, @PathParam("other") long other) {
+        return relationships(() -> {
+            relationshipService.unfollow(id, other);
+            return null;
+        });
+    }
+
+    /**
+     * 202 while the request waits for the other user to ask back, 204 once the
+     * two are friends.
+     */
+    @PUT
+    @Path("/id/{id}/friends/{other}")
+    @OwnerOrAdmin
+    public Response befriend(@PathParam("id") long id, @PathParam("other") long other) {
+        return relationships(() -> relationshipService.befriend(id, other) ? null : Response.accepted().build());
+    }
+
+    @DELETE
+    @Path("/id/{id}/friends/{other}")
+    @OwnerOrAdmin
+    public Response unfriend(@PathParam("id") long id, @PathParam("other") long other) {
+        return relationships(() -> {
+            relationshipService.unfriend(id, other);
+            return null;
+        });
+    }
+
+    @GET
+    @Path("/search")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response searchUsers(@QueryParam("q") String prefix,
+                                @QueryParam("offset") @DefaultValue("0") int offset,
+                                @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        return Response.ok(userSearchIndex.search(prefix.trim(), offset, limit)).build();
+    }
+
+    @POST
+    @Path("/import")
+    @AdminOnly
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importUsers(InputStream body) throws IOException {
+        if (!bulkEnabled) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(userTransferService.importUsers(body)).build();
+    }
+
+    @GET
+    @Path("/export")
+    @AdminOnly
+    @Produces(APPLICATION_NDJSON)
+    public Response exportUsers(@QueryParam("fields") String fields, @QueryParam("batchSize") Integer batchSize) {
+        if (!bulkEnabled) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!userTransferService.isExportable(fields)) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        StreamingOutput stream = out -> userTransferService.exportUsers(out, fields, batchSize);
+        return Response.ok(stream).build();
+    }
+
+    private static Response validated(UserRegistrationDTO userDto) {
+        return userDto != null ? Response.ok(userDto).build() : unauthorized();
+    }
+
+    private static Response unauthorized() {
+        // no entity, headers or variants to negotiate: the cheapest Response Jersey accepts
+        return Response.status(Response.Status.UNAUTHORIZED).build();
+    }
+
+    private static Response relationships(Supplier<Object> call) {
+        try {
+            Object entity = call.get();
+            if (entity instanceof Response response) {
+                return response;
+            }
+            return entity != null ? Response.ok(entity).build() : Response.noContent().build();
+        } catch (NoSuchElementException e) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    static String bearerToken(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
         }
+        return authorization.substring(BEARER_PREFIX.length()).trim();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+import com.angrysurfer.atomic.user.degraded.MongoUnavailableException;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.helidon.common.media.type.MediaTypes;
+import io.helidon.http.HeaderNames;
+import io.helidon.http.HeaderValues;
+import io.helidon.http.Status;
+import io.helidon.webserver.http.HttpRules;
+import io.helidon.webserver.http.HttpService;
+import io.helidon.webserver.http.ServerRequest;
+import io.helidon.webserver.http.ServerResponse;
+
+/**
+ * {@code /api/user/validate} served straight from Helidon routing, with no JAX-RS
+ * resource matching, CDI lookup or {@code Response} building. It answers exactly
+ * like {@link UserResource#validateUser} and {@link UserResource#validateUserGet}.
+ */
+final class ValidateUserHandler implements HttpService {
+
+    private final UserAccessService userAccessService;
+
+    private final DeadlinePolicy deadlinePolicy;
+
+    private final ClientAddresses clientAddresses;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    ValidateUserHandler(UserAccessService userAccessService, DeadlinePolicy deadlinePolicy,
+                        ClientAddresses clientAddresses) {
+        this.userAccessService = userAccessService;
+        this.deadlinePolicy = deadlinePolicy;
+        this.clientAddresses = clientAddresses;
+    }
+
+    @Override
+    public void routing(HttpRules rules) {
+        rules.get("/", this::validateGet)
+                .post("/", this::validatePost);
+    }
+
+    private void validateGet(ServerRequest req, ServerResponse res) throws Exception {
+        String alias = req.query().contains("alias") ? req.query().get("alias") : null;
+        String identifier = req.query().contains("identifier") ? req.query().get("identifier") : null;
+        validate(alias, identifier, req, res);
+    }
+
+    private void validatePost(ServerRequest req, ServerResponse res) throws Exception {
+        // as UserResource's @Consumes does: a JSON or multipart body is not read as a form
+        boolean form = req.headers().contentType()
+                .map(type -> type.test(MediaTypes.APPLICATION_FORM_URLENCODED))
+                .orElse(false);
+        if (!form) {
+            res.status(Status.UNSUPPORTED_MEDIA_TYPE_415).send();
+            return;
+        }
+        String alias = null;
+        String identifier = null;
+        for (String pair : req.content().as(String.class).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                continue;
+            }
+            String name = pair.substring(0, eq);
+            if (name.equals("alias")) {
+                alias = URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            } else if (name.equals("identifier")) {
+                identifier = URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        validate(alias, identifier, req, res);
+    }
+
+    @SuppressWarnings("try") // the scope is only held to unbind the deadline
+    private void validate(String alias, String identifier, ServerRequest req, ServerResponse res) throws Exception {
+        UserRegistrationDTO userDto;
+        Deadline deadline = deadlinePolicy.forRequest(
+                req.headers().first(HeaderNames.create(DeadlinePolicy.HEADER)).orElse(null));
+        try (Deadline.Scope scope = deadline.bind()) {
+            userDto = userAccessService.validateUser(alias, identifier, clientAddresses.of(req));
+        } catch (DeadlineExceededException | MongoUnavailableException e) {
+            res.status(Status.SERVICE_UNAVAILABLE_503).send();
+            return;
+        }
+        respond(userDto, res);
+    }
+
+    private void respond(UserRegistrationDTO userDto, ServerResponse res) throws Exception {
+        if (userDto == null) {
+            res.status(Status.UNAUTHORIZED_401).send();
+            return;
+        }
+        res.header(HeaderValues.CONTENT_TYPE_JSON).send(objectMapper.writeValueAsBytes(userDto));
+    }
+}
@@ -0,0 +1,55 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+
+import io.helidon.microprofile.server.ServerCdiExtension;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import static jakarta.interceptor.Interceptor.Priority.PLATFORM_AFTER;
+
+/**
+ * Optionally mounts {@link ValidateUserHandler} on the server routing. Routes
+ * registered here come before the JAX-RS application, so at the default path
+ * it takes over validation from {@link UserResource}.
+ */
+@ApplicationScoped
+public class ValidateUserRoute {
+
+    private static final Logger LOGGER = Logger.getLogger(ValidateUserRoute.class.getName());
+
+    @Inject
+    @ConfigProperty(name = "user.validate.raw-handler.enabled", defaultValue = "false")
+    boolean rawHandlerEnabled;
+
+    @Inject
+    @ConfigProperty(name = "user.validate.raw-handler.path", defaultValue = "/api/user/validate")
+    String rawHandlerPath;
+
+    @Inject
+    private UserAccessService userAccessService;
+
+    @Inject
+    private DeadlinePolicy deadlinePolicy;
+
+    @Inject
+    private ClientAddresses clientAddresses;
+
+    void register(@Observes @Priority(PLATFORM_AFTER) @Initialized(ApplicationScoped.class) Object event,
+                  ServerCdiExtension server) {
+        if (!rawHandlerEnabled) {
+            return;
+        }
+        server.serverRoutingBuilder()
+                .register(rawHandlerPath, new ValidateUserHandler(userAccessService, deadlinePolicy, clientAddresses));
+        LOGGER.info("Serving " + rawHandlerPath + " from Helidon routing, bypassing JAX-RS");
+    }
+}
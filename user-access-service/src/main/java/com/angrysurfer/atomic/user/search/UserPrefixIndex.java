@@ -0,0 +1,290 @@
+package com.angrysurfer.atomic.user.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Case-insensitive prefix index over user aliases and emails.
+ *
+ * The bulk of the index is a pair of parallel arrays sorted by (term, mongoId)
+ * that is searched with a binary search and never modified. Changes land in a
+ * small sorted overlay, with base entries they replace recorded as hidden; once
+ * enough changes pile up the overlay is merged into a fresh base. Readers work
+ * off whichever base/overlay pair is current and never take a lock.
+ */
+public final class UserPrefixIndex {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final Comparator<Entry> ORDER = Comparator.<Entry, String>comparing(e -> e.term)
+            .thenComparing(e -> e.user.mongoId());
+
+    private final Object writeLock = new Object();
+
+    private final Map<String, UserSuggestion> byMongoId = new ConcurrentHashMap<>();
+
+    private final int compactThreshold;
+
+    private int pendingWrites;
+
+    private volatile State state;
+
+    private static final class State {
+
+        final String[] terms;
+
+        final UserSuggestion[] users;
+
+        // term + SEPARATOR + mongoId, which sorts the same way as the base arrays
+        final ConcurrentSkipListMap<String, UserSuggestion> added = new ConcurrentSkipListMap<>();
+
+        final Set<String> hidden = ConcurrentHashMap.newKeySet();
+
+        State(String[] terms, UserSuggestion[] users) {
+            this.terms = terms;
+            this.users = users;
+        }
+    }
+
+    private record Entry(String term, UserSuggestion user) {
+    }
+
+    public UserPrefixIndex(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+        this.state = new State(new String[0], new UserSuggestion[0]);
+    }
+
+    /**
+     * Build the base directly from a full scan, which is far cheaper than
+     * inserting users one at a time.
+     */
+    public UserPrefixIndex(Collection<UserSuggestion> users, int compactThreshold) {
+        this(compactThreshold);
+        for (UserSuggestion user : users) {
+            append(user);
+        }
+        seal();
+    }
+
+    /**
+     * Bulk-load a user while the index is not yet shared, as a scan streams them
+     * in. Call {@link #seal()} once every user has been appended.
+     */
+    void append(UserSuggestion user) {
+        if (user.mongoId() != null) {
+            byMongoId.put(user.mongoId(), user);
+        }
+    }
+
+    /**
+     * Sort the appended users into the base in one pass.
+     */
+    void seal() {
+        List<Entry> entries = new ArrayList<>(byMongoId.size() * 2);
+        for (UserSuggestion user : byMongoId.values()) {
+            for (String term : terms(user)) {
+                entries.add(new Entry(term, user));
+            }
+        }
+        entries.sort(ORDER);
+        state = toState(entries);
+    }
+
+    public void put(UserSuggestion user) {
+        if (user.mongoId() == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            State current = state;
+            UserSuggestion previous = byMongoId.put(user.mongoId(), user);
+            if (previous != null) {
+                hide(current, previous);
+            }
+            for (String term : terms(user)) {
+                if (inBase(current, term, user.mongoId())) {
+                    current.hidden.add(key(term, user.mongoId()));
+                }
+                current.added.put(key(term, user.mongoId()), user);
+            }
+            afterWrite();
+        }
+    }
+
+    public void remove(String mongoId) {
+        synchronized (writeLock) {
+            UserSuggestion previous = byMongoId.remove(mongoId);
+            if (previous != null) {
+                hide(state, previous);
+                afterWrite();
+            }
+        }
+    }
+
+    /**
+     * Users with an alias or email starting with {@code prefix}, in term order,
+     * each listed once however many of their terms match.
+     */
+    public UserSearchPage search(String prefix, int offset, int limit) {
+        String p = normalize(prefix);
+        State current = state;
+        String[] terms = current.terms;
+        UserSuggestion[] users = current.users;
+        boolean anyHidden = !current.hidden.isEmpty();
+
+        int i = lowerBound(terms, users, p, "");
+        Iterator<Map.Entry<String, UserSuggestion>> overlay = current.added.tailMap(p).entrySet().iterator();
+        Map.Entry<String, UserSuggestion> next = overlay.hasNext() ? overlay.next() : null;
+
+        Set<String> seen = new HashSet<>();
+        List<UserSuggestion> page = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        while (true) {
+            while (anyHidden && i < terms.length && current.hidden.contains(key(terms[i], users[i].mongoId()))) {
+                i++;
+            }
+            boolean baseMatches = i < terms.length && terms[i].startsWith(p);
+            boolean overlayMatches = next != null && next.getKey().startsWith(p);
+            if (!baseMatches && !overlayMatches) {
+                return new UserSearchPage(page, offset, false);
+            }
+
+            UserSuggestion candidate;
+            if (baseMatches && (!overlayMatches || key(terms[i], users[i].mongoId()).compareTo(next.getKey()) < 0)) {
+                candidate = users[i++];
+            } else {
+                candidate = next.getValue();
+                next = overlay.hasNext() ? overlay.next() : null;
+            }
+
+            if (!seen.add(candidate.mongoId())) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else if (page.size() == limit) {
+                return new UserSearchPage(page, offset, true);
+            } else {
+                page.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Merge the overlay into a new base. Readers keep using the old one until
+     * the swap.
+     */
+    public void compact() {
+        synchronized (writeLock) {
+            State current = state;
+            List<Entry> merged = new ArrayList<>(current.terms.length + current.added.size());
+            Iterator<Map.Entry<String, UserSuggestion>> overlay = current.added.entrySet().iterator();
+            Map.Entry<String, UserSuggestion> next = overlay.hasNext() ? overlay.next() : null;
+            for (int i = 0; i < current.terms.length; i++) {
+                String baseKey = key(current.terms[i], current.users[i].mongoId());
+                while (next != null && next.getKey().compareTo(baseKey) < 0) {
+                    merged.add(overlayEntry(next));
+                    next = overlay.hasNext() ? overlay.next() : null;
+                }
+                if (!current.hidden.contains(baseKey)) {
+                    merged.add(new Entry(current.terms[i], current.users[i]));
+                }
+            }
+            while (next != null) {
+                merged.add(overlayEntry(next));
+                next = overlay.hasNext() ? overlay.next() : null;
+            }
+            state = toState(merged);
+            pendingWrites = 0;
+        }
+    }
+
+    public int size() {
+        return byMongoId.size();
+    }
+
+    static String normalize(String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        // most aliases are already lower case; keep one copy of the string
+        return lower.equals(value) ? value : lower;
+    }
+
+    private void afterWrite() {
+        if (++pendingWrites >= compactThreshold) {
+            compact();
+        }
+    }
+
+    private static void hide(State current, UserSuggestion user) {
+        for (String term : terms(user)) {
+            current.added.remove(key(term, user.mongoId()));
+            if (inBase(current, term, user.mongoId())) {
+                current.hidden.add(key(term, user.mongoId()));
+            }
+        }
+    }
+
+    private static boolean inBase(State current, String term, String mongoId) {
+        int i = lowerBound(current.terms, current.users, term, mongoId);
+        return i < current.terms.length && current.terms[i].equals(term) && current.users[i].mongoId().equals(mongoId);
+    }
+
+    private static int lowerBound(String[] terms, UserSuggestion[] users, String term, String mongoId) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = terms[mid].compareTo(term);
+            if (cmp == 0) {
+                cmp = users[mid].mongoId().compareTo(mongoId);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> terms(UserSuggestion user) {
+        List<String> terms = new ArrayList<>(2);
+        if (user.getAlias() != null && !user.getAlias().isEmpty()) {
+            terms.add(normalize(user.getAlias()));
+        }
+        if (user.email() != null && !user.email().isEmpty()) {
+            String email = normalize(user.email());
+            if (!terms.contains(email)) {
+                terms.add(email);
+            }
+        }
+        return terms;
+    }
+
+    private static String key(String term, String mongoId) {
+        return term + SEPARATOR + mongoId;
+    }
+
+    private static Entry overlayEntry(Map.Entry<String, UserSuggestion> overlay) {
+        String key = overlay.getKey();
+        return new Entry(key.substring(0, key.lastIndexOf(SEPARATOR)), overlay.getValue());
+    }
+
+    private static State toState(List<Entry> entries) {
+        String[] terms = new String[entries.size()];
+        UserSuggestion[] users = new UserSuggestion[entries.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = entries.get(i).term;
+            users[i] = entries.get(i).user;
+        }
+        return new State(terms, users);
+    }
+}
@@ -0,0 +1,191 @@
+package com.angrysurfer.atomic.user.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+
+import io.helidon.microprofile.cdi.RuntimeStart;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Typeahead search over user aliases and emails. Every user is loaded into a
+ * {@link UserPrefixIndex} on startup and kept current from {@link UserChangeEvent}s;
+ * a reset rebuilds it in the background. A failed load is retried with backoff;
+ * until the first load completes, searches fall back to a regex query against Mongo.
+ */
+@ApplicationScoped
+public class UserSearchIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(UserSearchIndex.class.getName());
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Inject
+    @ConfigProperty(name = "user.search.enabled", defaultValue = "true")
+    boolean searchEnabled;
+
+    @Inject
+    @ConfigProperty(name = "user.search.load.batch-size", defaultValue = "5000")
+    int loadBatchSize;
+
+    @Inject
+    @ConfigProperty(name = "user.search.compact-threshold", defaultValue = "10000")
+    int compactThreshold;
+
+    @Inject
+    @ConfigProperty(name = "user.search.max-limit", defaultValue = "100")
+    int maxLimit;
+
+    @Inject
+    @ConfigProperty(name = "user.search.max-window", defaultValue = "1000")
+    int maxWindow;
+
+    @Inject
+    UserRegistrationRepository userRepository;
+
+    long initialBackoffMillis = 1000;
+
+    private volatile UserPrefixIndex index;
+    // changes that arrive while a rebuild scans, replayed onto the fresh index before the swap
+    private List<UserChangeEvent> pending;
+    private final Object pendingLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    void onStart(@Observes @RuntimeStart Object event) {
+        if (searchEnabled) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * True when search is disabled or the index has finished its first load.
+     */
+    public boolean isReady() {
+        return !searchEnabled || index != null;
+    }
+
+    /**
+     * One page of users whose alias or email starts with {@code prefix}. The limit
+     * is capped at {@code user.search.max-limit} and deep pages beyond
+     * {@code user.search.max-window} results come back empty.
+     */
+    public UserSearchPage search(String prefix, int offset, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxLimit));
+        int start = Math.max(0, offset);
+        if (start >= maxWindow) {
+            return new UserSearchPage(List.of(), start, false);
+        }
+        pageSize = Math.min(pageSize, maxWindow - start);
+
+        UserPrefixIndex current = index;
+        if (current != null) {
+            return current.search(prefix, start, pageSize);
+        }
+        if (!searchEnabled) {
+            return new UserSearchPage(List.of(), start, false);
+        }
+        List<UserSuggestion> users = new ArrayList<>(pageSize + 1);
+        for (UserRegistration user : userRepository.findByPrefix(prefix, start, pageSize + 1)) {
+            users.add(UserSuggestion.of(user));
+        }
+        boolean more = users.size() > pageSize;
+        return new UserSearchPage(more ? users.subList(0, pageSize) : users, start, more);
+    }
+
+    void onUserChange(@Observes UserChangeEvent event) {
+        if (!searchEnabled) {
+            return;
+        }
+        if (event.getType() == UserChangeEvent.Type.RESET) {
+            scheduleRebuild();
+            return;
+        }
+        synchronized (pendingLock) {
+            if (pending != null) {
+                pending.add(event);
+            }
+        }
+        apply(index, event);
+    }
+
+    private static void apply(UserPrefixIndex target, UserChangeEvent event) {
+        if (target == null) {
+            return;
+        }
+        if (event.getType() == UserChangeEvent.Type.DELETE) {
+            if (event.getMongoId() != null) {
+                target.remove(event.getMongoId());
+            }
+        } else {
+            target.put(UserSuggestion.of(event.getUser()));
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread loader = new Thread(this::rebuild, "user-search-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Scan every user into a fresh index and swap it in, retrying with backoff
+     * until a scan succeeds so that a Mongo outage at startup does not leave
+     * search on the regex fallback for the life of the pod.
+     */
+    private void rebuild() {
+        synchronized (pendingLock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            long backoff = initialBackoffMillis;
+            while (!tryRebuild()) {
+                LOGGER.log(Level.WARNING, "Retrying the user search index load in " + backoff + " ms");
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (pendingLock) {
+                pending = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    private boolean tryRebuild() {
+        long start = System.nanoTime();
+        try {
+            // users go straight from the cursor into the index, one batch in memory at a time
+            UserPrefixIndex fresh = new UserPrefixIndex(compactThreshold);
+            userRepository.forEachUser(loadBatchSize, user -> fresh.append(UserSuggestion.of(user)));
+            fresh.seal();
+            synchronized (pendingLock) {
+                for (UserChangeEvent event : pending) {
+                    apply(fresh, event);
+                }
+                index = fresh;
+            }
+            LOGGER.info("Indexed " + fresh.size() + " users for search in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load user search index: " + e.getMessage(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.angrysurfer.atomic.user.search;
+
+import java.util.List;
+
+/**
+ * A page of typeahead results; {@code more} tells the caller whether asking for
+ * the next offset will return anything.
+ */
+public final class UserSearchPage {
+
+    private final List<UserSuggestion> users;
+
+    private final int offset;
+
+    private final boolean more;
+
+    public UserSearchPage(List<UserSuggestion> users, int offset, boolean more) {
+        this.users = users;
+        this.offset = offset;
+        this.more = more;
+    }
+
+    public List<UserSuggestion> getUsers() {
+        return users;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+}
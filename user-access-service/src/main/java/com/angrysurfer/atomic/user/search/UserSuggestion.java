@@ -0,0 +1,53 @@
+package com.angrysurfer.atomic.user.search;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+/**
+ * One typeahead result. Users can be found by email prefix, but only the
+ * alias, numeric id and avatar are ever returned.
+ */
+public final class UserSuggestion {
+
+    private final Long id;
+
+    private final String alias;
+
+    private final String avatarUrl;
+
+    // index bookkeeping only, never serialized
+    private final String mongoId;
+
+    private final String email;
+
+    public UserSuggestion(String mongoId, Long id, String alias, String email, String avatarUrl) {
+        this.mongoId = mongoId;
+        this.id = id;
+        this.alias = alias;
+        this.email = email;
+        this.avatarUrl = avatarUrl;
+    }
+
+    public static UserSuggestion of(UserRegistration user) {
+        return new UserSuggestion(user.getMongoId(), user.getId(), user.getAlias(), user.getEmail(), user.getAvatarUrl());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    String mongoId() {
+        return mongoId;
+    }
+
+    String email() {
+        return email;
+    }
+}
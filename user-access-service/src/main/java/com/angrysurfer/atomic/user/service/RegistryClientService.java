@@ -70,7 +70,11 @@ public class RegistryClientService {
 
         LOGGER.info("Starting host-server registration service");
 
-        httpClient = ClientBuilder.newClient();
+        // bounded so an unreachable registry cannot stall deregistration on shutdown
+        httpClient = ClientBuilder.newBuilder()
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .readTimeout(5, TimeUnit.SECONDS)
+                .build();
 
         // Initial registration
         registerService();
@@ -92,8 +96,41 @@ public class RegistryClientService {
                 ", Heartbeats every " + heartbeatInterval + " seconds to " + hostServerUrl);
     }
 
+    /**
+     * Stop heartbeats and remove this instance from the registry. Heartbeats stop
+     * first so a late one cannot re-announce the instance.
+     */
+    public void deregister() {
+        stopHeartbeat();
+        if (httpClient == null) {
+            return;
+        }
+        try {
+            Response response = httpClient.target(hostServerUrl + "/api/registry/deregister/" + serviceName)
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.json("{}"));
+
+            if (response.getStatus() >= 200 && response.getStatus() < 300) {
+                LOGGER.info("Deregistered from host-server: " + serviceName);
+            } else {
+                LOGGER.warning("Failed to deregister from host-server. Status: " + response.getStatus());
+            }
+            response.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to deregister from host-server: " + e.getMessage(), e);
+        }
+    }
+
     @PreDestroy
     public void shutdown() {
+        stopHeartbeat();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        LOGGER.info("Registry client shut down");
+    }
+
+    private void stopHeartbeat() {
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdown();
             try {
@@ -105,10 +142,6 @@ public class RegistryClientService {
                 Thread.currentThread().interrupt();
             }
         }
-        if (httpClient != null) {
-            httpClient.close();
-        }
-        LOGGER.info("Registry client shut down");
     }
 
     /**
@@ -2,15 +2,31 @@ package com.angrysurfer.atomic.user.service;
 
 import com.angrysurfer.atomic.user.UserDTO;
 import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.audit.LoginAudit;
+import com.angrysurfer.atomic.user.audit.LoginOutcome;
+import com.angrysurfer.atomic.user.cache.OffHeapUserStore;
+import com.angrysurfer.atomic.user.cache.UserIdIndex;
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+import com.angrysurfer.atomic.user.degraded.MongoHealth;
+import com.angrysurfer.atomic.user.degraded.MongoUnavailableException;
+import com.angrysurfer.atomic.user.degraded.VerifiedCredentials;
+import com.angrysurfer.atomic.user.lockout.LoginLockout;
 import com.angrysurfer.atomic.user.model.UserRegistration;
 import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+import com.angrysurfer.atomic.user.token.SessionClaims;
+import com.angrysurfer.atomic.user.token.SessionTokenService;
+import com.angrysurfer.atomic.user.tracing.Traced;
 import com.angrysurfer.atomic.broker.spi.BrokerOperation;
 import com.angrysurfer.atomic.broker.spi.BrokerParam;
+import com.mongodb.MongoException;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+@Traced
 @ApplicationScoped
 public class UserAccessService {
 
@@ -19,20 +35,147 @@ public class UserAccessService {
     @Inject
     private UserRegistrationRepository userRepository;
 
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @Inject
+    private OffHeapUserStore offHeapStore;
+
+    @Inject
+    private UserIdIndex userIdIndex;
+
+    @Inject
+    private SessionTokenService tokenService;
+
+    @Inject
+    private LoginAudit loginAudit;
+
+    @Inject
+    private LoginLockout loginLockout;
+
+    @Inject
+    private MongoHealth mongoHealth;
+
+    @Inject
+    private VerifiedCredentials verifiedCredentials;
+
     public UserAccessService() {
         log.info("UserAccessService initialized");
     }
 
     @BrokerOperation("validateUser")
     public UserRegistrationDTO validateUser(@BrokerParam("alias") String alias, @BrokerParam("identifier") String password) {
+        return validateUser(alias, password, null);
+    }
+
+    /**
+     * Validate and record the outcome in the login audit log.
+     *
+     * @param client the caller's address for the audit log, or null when not known
+     */
+    public UserRegistrationDTO validateUser(String alias, String password, String client) {
 
         log.info("Validating user " + alias);
-        UserRegistration userReg = userRepository.findByAlias(alias).orElse(null);
+        if (loginLockout.isBlocked(alias, client)) {
+            loginAudit.record(alias, client, LoginOutcome.LOCKED_OUT, 0);
+            return null;
+        }
+        UserRegistration userReg = userCache.findByAlias(alias)
+                .or(() -> offHeapStore.findByAlias(alias))
+                .orElse(null);
 
-        if (userReg == null || !userReg.getIdentifier().equals(password)) {
+        // A miss, or a mismatch against a possibly stale cached digest, goes back to Mongo
+        if (userReg == null || !userReg.isLockedAt(System.currentTimeMillis()) && !userReg.credentialsMatch(password)) {
+            userReg = loadUser(alias);
+        }
+
+        if (userReg == null) {
+            loginLockout.recordFailure(alias, client);
+            loginAudit.record(alias, client, LoginOutcome.UNKNOWN_ALIAS, 0);
+            return null;
+        }
+        long userId = userReg.getId() == null ? 0 : userReg.getId();
+        if (userReg.isLockedAt(System.currentTimeMillis())) {
+            loginAudit.record(alias, client, LoginOutcome.LOCKED_OUT, userId);
+            return null;
+        }
+        if (!userReg.credentialsMatch(password)) {
+            if (loginLockout.recordFailure(alias, client)) {
+                lock(userReg);
+            }
+            loginAudit.record(alias, client, LoginOutcome.REJECTED, userId);
             return null;
         }
 
-        return userReg.toDTO();
+        loginLockout.recordSuccess(alias);
+        if (!mongoHealth.isDegraded()) {
+            verifiedCredentials.recordVerified(userReg);
+        }
+        UserRegistrationDTO userDto = userReg.toDTO();
+        userDto.setToken(tokenService.issue(userReg));
+        loginAudit.record(alias, client, LoginOutcome.ACCEPTED, userId);
+        return userDto;
+    }
+
+    /**
+     * Identify the holder of a session token issued by {@link #validateUser}.
+     * Only the token's own claims are returned; nothing is read from Mongo.
+     */
+    @BrokerOperation("verifyToken")
+    public UserRegistrationDTO verifyToken(@BrokerParam("token") String token) {
+        return tokenService.verify(token).map(SessionClaims::toDTO).orElse(null);
+    }
+
+    @BrokerOperation("revokeToken")
+    public boolean revokeToken(@BrokerParam("token") String token) {
+        return tokenService.revoke(token);
+    }
+
+    @BrokerOperation("getUserById")
+    public UserRegistrationDTO getUserById(@BrokerParam("id") long id) {
+        return userIdIndex.findById(id).map(UserRegistration::toDTO).orElse(null);
+    }
+
+    /**
+     * Persist a lockout the sketch has confirmed against an existing account, so
+     * it outlives the sliding window and reaches other replicas. The sketch keeps
+     * refusing the alias if the write fails.
+     */
+    private void lock(UserRegistration userReg) {
+        try {
+            userRepository.lockUntil(userReg, loginLockout.confirmLockout());
+            log.warning("Locked " + userReg.getAlias() + " after repeated failed logins");
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Could not persist lockout for " + userReg.getAlias(), e);
+        }
+    }
+
+    /**
+     * Read the user from Mongo into the per-pod cache. While Mongo is
+     * unreachable, or when this read fails, the user's recently verified
+     * credentials answer instead, or the call fails at once.
+     */
+    private UserRegistration loadUser(String alias) {
+        if (mongoHealth.isDegraded()) {
+            return verifiedCredentials.find(alias).orElseThrow(
+                    () -> new MongoUnavailableException("Mongo unreachable and no fresh credentials for " + alias));
+        }
+        UserRegistration userReg;
+        try {
+            userReg = userRepository.findByAlias(alias)
+                    .map(UserRegistration::withoutSecrets)
+                    .orElse(null);
+        } catch (DeadlineExceededException e) {
+            return verifiedCredentials.find(alias).orElseThrow(() -> e);
+        } catch (MongoException e) {
+            return verifiedCredentials.find(alias).orElseThrow(
+                    () -> new MongoUnavailableException("Could not read " + alias + " and no fresh credentials", e));
+        }
+        if (userReg != null) {
+            userCache.put(userReg);
+        } else {
+            userCache.invalidate(alias);
+        }
+        return userReg;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package com.angrysurfer.atomic.user.service;
+
+/**
+ * Counters reported back to the caller of a bulk NDJSON import.
+ */
+public class UserImportResult {
+
+    long received;
+
+    long inserted;
+
+    long updated;
+
+    long rejected;
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,175 @@
+package com.angrysurfer.atomic.user.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mongodb.bulk.BulkWriteResult;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Streams users in and out of atomic.users as newline-delimited JSON.
+ * Neither direction buffers more than one chunk (import) or one cursor
+ * batch (export), so memory stays flat regardless of collection size.
+ */
+@ApplicationScoped
+public class UserTransferService {
+
+    private static final Logger log = Logger.getLogger(UserTransferService.class.getName());
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    // never identifier or anything derived from it, whatever the caller or the config asks for
+    private static final Set<String> EXPORTABLE_FIELDS = Set.of("id", "alias", "email", "avatarUrl", "admin");
+
+    @Inject
+    UserRegistrationRepository userRepository;
+
+    @Inject
+    @ConfigProperty(name = "user.bulk.import.chunk-size", defaultValue = "1000")
+    int importChunkSize;
+
+    @Inject
+    @ConfigProperty(name = "user.bulk.export.batch-size", defaultValue = "1000")
+    int exportBatchSize;
+
+    @Inject
+    @ConfigProperty(name = "user.bulk.export.fields", defaultValue = "id,alias,email,avatarUrl,admin")
+    String exportFields;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ObjectReader userReader = objectMapper.readerFor(UserRegistrationDTO.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /**
+     * Parse NDJSON users from the stream one record at a time and upsert them by
+     * alias in bulkWrite chunks. Records that do not map to a user, or have no
+     * alias or a non-numeric id, are counted as rejected and skipped; the rest of
+     * the stream is still imported.
+     */
+    public UserImportResult importUsers(InputStream in) throws IOException {
+        UserImportResult result = new UserImportResult();
+        List<UserRegistration> chunk = new ArrayList<>(importChunkSize);
+
+        try (MappingIterator<UserRegistrationDTO> records = userReader.readValues(in)) {
+            while (records.hasNextValue()) {
+                result.received++;
+                UserRegistration user = nextUser(records);
+                if (user == null) {
+                    result.rejected++;
+                    continue;
+                }
+                chunk.add(user);
+                if (chunk.size() >= importChunkSize) {
+                    flush(chunk, result);
+                }
+            }
+        }
+        flush(chunk, result);
+
+        log.info("Imported users: received=" + result.received + ", inserted=" + result.inserted
+                + ", updated=" + result.updated + ", rejected=" + result.rejected);
+        return result;
+    }
+
+    /**
+     * Whether every requested field may be exported. No fields means the
+     * configured default projection.
+     */
+    public boolean isExportable(String fields) {
+        return EXPORTABLE_FIELDS.containsAll(parseFields(fields != null && !fields.isBlank() ? fields : exportFields));
+    }
+
+    /**
+     * Write every user as one JSON object per line. Only the requested fields are
+     * read from Mongo; when none are given the configured default projection is used.
+     * Fields outside the exportable set, the identifier above all, are refused.
+     */
+    public void exportUsers(OutputStream out, String fields, Integer batchSize) throws IOException {
+        if (!isExportable(fields)) {
+            throw new IllegalArgumentException("Only " + EXPORTABLE_FIELDS + " can be exported");
+        }
+        List<String> projection = parseFields(fields != null && !fields.isBlank() ? fields : exportFields);
+        int batch = batchSize != null && batchSize > 0 ? Math.min(batchSize, MAX_BATCH_SIZE) : exportBatchSize;
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            int[] pending = { 0 };
+            userRepository.forEach(projection, batch, doc -> {
+                try {
+                    generator.writeStartObject();
+                    for (var field : doc.entrySet()) {
+                        generator.writeFieldName(field.getKey());
+                        generator.writeObject(field.getValue());
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    if (++pending[0] >= batch) {
+                        generator.flush();
+                        pending[0] = 0;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // client went away mid-stream; unwrap so JAX-RS sees the original failure
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The next record as a user, or null when it cannot be imported. A record whose
+     * JSON does not map to a user is skipped in the stream; malformed JSON still
+     * ends the import.
+     */
+    private static UserRegistration nextUser(MappingIterator<UserRegistrationDTO> records) throws IOException {
+        try {
+            UserRegistrationDTO dto = records.nextValue();
+            if (dto.getAlias() == null || dto.getAlias().isBlank()) {
+                return null;
+            }
+            return UserRegistration.fromDTO(dto);
+        } catch (JsonMappingException | IllegalArgumentException e) {
+            log.fine("Rejected import record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void flush(List<UserRegistration> chunk, UserImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        BulkWriteResult written = userRepository.upsertAllByAlias(chunk);
+        result.inserted += written.getUpserts().size();
+        result.updated += written.getMatchedCount();
+        chunk.clear();
+    }
+
+    private static List<String> parseFields(String fields) {
+        return Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty() && !"_id".equals(field))
+                .toList();
+    }
+}
@@ -0,0 +1,67 @@
+package com.angrysurfer.atomic.user.token;
+
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+
+/**
+ * What a session token vouches for: who the user is, whether they are an admin,
+ * and the window in which the token is valid (epoch seconds).
+ */
+public final class SessionClaims {
+
+    private final long tokenId;
+
+    private final Long id;
+
+    private final String alias;
+
+    private final boolean admin;
+
+    private final long issuedAt;
+
+    private final long expiresAt;
+
+    public SessionClaims(long tokenId, Long id, String alias, boolean admin, long issuedAt, long expiresAt) {
+        this.tokenId = tokenId;
+        this.id = id;
+        this.alias = alias;
+        this.admin = admin;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public UserRegistrationDTO toDTO() {
+        UserRegistrationDTO dto = new UserRegistrationDTO();
+        dto.setId(String.valueOf(id));
+        dto.setAlias(alias);
+        dto.setAdmin(admin);
+        return dto;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    public long getTokenId() {
+        return tokenId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,118 @@
+package com.angrysurfer.atomic.user.token;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Compact HMAC-SHA256 signed session tokens: {@code base64url(claims).base64url(mac)}.
+ *
+ * The claims are packed in binary rather than JSON to keep tokens short and
+ * verification allocation-light:
+ * version u8, flags u8 (bit 0 id present, bit 1 admin), tokenId i64, [id i64],
+ * issuedAt i64, expiresAt i64, alias UTF-8 (rest of the payload).
+ */
+public final class SessionTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_ID = 1;
+
+    private static final int FLAG_ADMIN = 2;
+
+    private static final int MAC_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+
+    // Mac instances are not thread-safe; initialising one per call costs more than the signature
+    private final ThreadLocal<Mac> macs;
+
+    public SessionTokenCodec(byte[] secret) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("Token secret must not be empty");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public String encode(SessionClaims claims) {
+        byte[] alias = claims.getAlias() != null ? claims.getAlias().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer payload = ByteBuffer.allocate(2 + 8 + (claims.getId() != null ? 8 : 0) + 16 + alias.length);
+        payload.put(VERSION);
+        payload.put((byte) ((claims.getId() != null ? FLAG_ID : 0) | (claims.isAdmin() ? FLAG_ADMIN : 0)));
+        payload.putLong(claims.getTokenId());
+        if (claims.getId() != null) {
+            payload.putLong(claims.getId());
+        }
+        payload.putLong(claims.getIssuedAt());
+        payload.putLong(claims.getExpiresAt());
+        payload.put(alias);
+
+        byte[] body = payload.array();
+        return ENCODER.encodeToString(body) + '.' + ENCODER.encodeToString(macs.get().doFinal(body));
+    }
+
+    /**
+     * Claims of a token whose signature checks out, or null for anything malformed
+     * or signed with another key. Expiry and revocation are left to the caller.
+     */
+    public SessionClaims decode(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) {
+            return null;
+        }
+        byte[] body;
+        byte[] signature;
+        try {
+            body = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (signature.length != MAC_LENGTH || !MessageDigest.isEqual(signature, macs.get().doFinal(body))) {
+            return null;
+        }
+
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(body);
+            if (payload.get() != VERSION) {
+                return null;
+            }
+            int flags = payload.get();
+            long tokenId = payload.getLong();
+            Long id = (flags & FLAG_ID) != 0 ? payload.getLong() : null;
+            long issuedAt = payload.getLong();
+            long expiresAt = payload.getLong();
+            String alias = new String(Arrays.copyOfRange(body, payload.position(), body.length), StandardCharsets.UTF_8);
+            return new SessionClaims(tokenId, id, alias, (flags & FLAG_ADMIN) != 0, issuedAt, expiresAt);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        }
+    }
+}
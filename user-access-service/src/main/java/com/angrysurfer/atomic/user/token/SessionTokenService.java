@@ -0,0 +1,94 @@
+package com.angrysurfer.atomic.user.token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Issues session tokens on successful validation and verifies them without
+ * going back to Mongo. Revocations are held locally until the revoked token
+ * would have expired anyway, so every replica that should honour a revocation
+ * has to be told about it.
+ */
+@ApplicationScoped
+public class SessionTokenService {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionTokenService.class.getName());
+
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Inject
+    @ConfigProperty(name = "user.token.secret")
+    Optional<String> secret;
+
+    @Inject
+    @ConfigProperty(name = "user.token.ttl.seconds", defaultValue = "3600")
+    long ttlSeconds;
+
+    private SessionTokenCodec codec;
+
+    // tokenId -> expiresAt, so entries can be dropped once the token is dead anyway
+    private final Map<Long, Long> revoked = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        byte[] key = secret.orElse("").getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0) {
+            LOGGER.warning("user.token.secret is not set; using a random key, so tokens will not be accepted"
+                    + " by other replicas or after a restart");
+            key = new byte[MIN_SECRET_LENGTH];
+            RANDOM.nextBytes(key);
+        } else if (key.length < MIN_SECRET_LENGTH) {
+            LOGGER.warning("user.token.secret is shorter than " + MIN_SECRET_LENGTH + " bytes");
+        }
+        codec = new SessionTokenCodec(key);
+    }
+
+    public String issue(UserRegistration user) {
+        long now = now();
+        return codec.encode(new SessionClaims(RANDOM.nextLong(), user.getId(), user.getAlias(), user.isAdmin(),
+                now, now + ttlSeconds));
+    }
+
+    /**
+     * Claims of a token that is correctly signed, unexpired and not revoked.
+     */
+    public Optional<SessionClaims> verify(String token) {
+        SessionClaims claims = codec.decode(token);
+        if (claims == null || claims.isExpired(now()) || revoked.containsKey(claims.getTokenId())) {
+            return Optional.empty();
+        }
+        return Optional.of(claims);
+    }
+
+    /**
+     * Revoke a valid token. Returns false if the token was not valid to begin with.
+     */
+    public boolean revoke(String token) {
+        Optional<SessionClaims> claims = verify(token);
+        if (claims.isEmpty()) {
+            return false;
+        }
+        long now = now();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        revoked.put(claims.get().getTokenId(), claims.get().getExpiresAt());
+        return true;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
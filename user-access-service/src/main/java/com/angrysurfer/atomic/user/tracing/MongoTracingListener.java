@@ -0,0 +1,99 @@
+package com.angrysurfer.atomic.user.tracing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+
+/**
+ * Turns each Mongo command into a client span under the span current on the
+ * calling thread, so repository queries show up inside the request that issued
+ * them. Commands issued outside any span (bulk loads, the change stream's
+ * getMores) are not traced. The command document is never recorded: it can
+ * carry credential digests.
+ */
+public class MongoTracingListener implements CommandListener {
+
+    static final AttributeKey<String> DB_SYSTEM = AttributeKey.stringKey("db.system");
+
+    static final AttributeKey<String> DB_NAME = AttributeKey.stringKey("db.name");
+
+    static final AttributeKey<String> DB_OPERATION = AttributeKey.stringKey("db.operation");
+
+    static final AttributeKey<String> DB_COLLECTION = AttributeKey.stringKey("db.mongodb.collection");
+
+    static final AttributeKey<String> SERVER_ADDRESS = AttributeKey.stringKey("server.address");
+
+    static final AttributeKey<Long> SERVER_PORT = AttributeKey.longKey("server.port");
+
+    private final Tracer tracer;
+
+    private final Map<Integer, Span> inFlight = new ConcurrentHashMap<>();
+
+    public MongoTracingListener(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!Span.current().getSpanContext().isValid()) {
+            return;
+        }
+        String collection = collection(event.getCommandName(), event.getCommand());
+        ServerAddress address = event.getConnectionDescription().getServerAddress();
+        Span span = tracer.spanBuilder(collection == null
+                        ? event.getCommandName()
+                        : event.getCommandName() + " " + collection)
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute(DB_SYSTEM, "mongodb")
+                .setAttribute(DB_NAME, event.getDatabaseName())
+                .setAttribute(DB_OPERATION, event.getCommandName())
+                .setAttribute(SERVER_ADDRESS, address.getHost())
+                .setAttribute(SERVER_PORT, (long) address.getPort())
+                .startSpan();
+        if (collection != null) {
+            span.setAttribute(DB_COLLECTION, collection);
+        }
+        inFlight.put(event.getRequestId(), span);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Span span = inFlight.remove(event.getRequestId());
+        if (span != null) {
+            span.end();
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Span span = inFlight.remove(event.getRequestId());
+        if (span != null) {
+            span.recordException(event.getThrowable());
+            span.setStatus(StatusCode.ERROR, event.getThrowable().getMessage());
+            span.end();
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private static String collection(String commandName, BsonDocument command) {
+        BsonValue value = command.get(commandName);
+        return value != null && value.isString() ? value.asString().getValue() : null;
+    }
+}
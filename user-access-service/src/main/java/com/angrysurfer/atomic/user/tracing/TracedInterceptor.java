@@ -0,0 +1,35 @@
+package com.angrysurfer.atomic.user.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+
+@Traced
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class TracedInterceptor {
+
+    @Inject
+    private Tracing tracing;
+
+    @AroundInvoke
+    @SuppressWarnings("try") // the scope is only held to restore the caller's context
+    Object trace(InvocationContext context) throws Exception {
+        String name = context.getMethod().getDeclaringClass().getSimpleName() + "." + context.getMethod().getName();
+        Span span = tracing.tracer().spanBuilder(name).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return context.proceed();
+        } catch (Exception e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.angrysurfer.atomic.user.tracing;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Owns the OpenTelemetry SDK for the service. Spans go to a {@link SpanExporter}
+ * bean if the application declares one, otherwise over OTLP/HTTP to
+ * {@code user.tracing.otlp.endpoint}. With neither, or with tracing disabled,
+ * everything runs against the no-op implementation.
+ *
+ * <p>Sampling is parent-based: a request arriving with a W3C {@code traceparent}
+ * keeps the caller's decision, and new traces are kept at
+ * {@code user.tracing.sample-ratio}.
+ */
+@ApplicationScoped
+public class Tracing {
+
+    private static final Logger LOGGER = Logger.getLogger(Tracing.class.getName());
+
+    static final String INSTRUMENTATION_NAME = "com.angrysurfer.atomic.user";
+
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+
+    @Inject
+    @ConfigProperty(name = "user.tracing.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "user.tracing.sample-ratio", defaultValue = "0.1")
+    double sampleRatio;
+
+    @Inject
+    @ConfigProperty(name = "user.tracing.otlp.endpoint")
+    Optional<String> otlpEndpoint;
+
+    @Inject
+    @ConfigProperty(name = "service.name", defaultValue = "helidon-user-access-service")
+    String serviceName;
+
+    @Inject
+    private Instance<SpanExporter> exporters;
+
+    private SdkTracerProvider tracerProvider;
+
+    private OpenTelemetry openTelemetry = OpenTelemetry.noop();
+
+    private Tracer tracer;
+
+    @PostConstruct
+    void init() {
+        SpanExporter exporter = null;
+        if (enabled) {
+            if (exporters.isResolvable()) {
+                exporter = exporters.get();
+            } else if (otlpEndpoint.isPresent()) {
+                exporter = OtlpHttpSpanExporter.builder().setEndpoint(otlpEndpoint.get()).build();
+            }
+        }
+
+        if (exporter == null) {
+            LOGGER.info("Tracing is off (enabled=" + enabled + ", no exporter configured)");
+        } else {
+            tracerProvider = SdkTracerProvider.builder()
+                    .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(SERVICE_NAME, serviceName))))
+                    .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)))
+                    .addSpanProcessor(BatchSpanProcessor.builder(exporter).build())
+                    .build();
+            openTelemetry = OpenTelemetrySdk.builder()
+                    .setTracerProvider(tracerProvider)
+                    .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                    .build();
+            LOGGER.info("Tracing to " + exporter + ", sampling " + sampleRatio + " of new traces");
+        }
+        tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    public Tracer tracer() {
+        return tracer;
+    }
+
+    public TextMapPropagator propagator() {
+        return openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    /**
+     * Export every span ended so far; spans are otherwise batched.
+     */
+    public void flush() {
+        if (tracerProvider != null) {
+            tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (tracerProvider != null) {
+            tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.angrysurfer.atomic.user;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import io.helidon.microprofile.server.ServerCdiExtension;
+import jakarta.enterprise.inject.se.SeContainer;
+import jakarta.enterprise.inject.se.SeContainerInitializer;
+
+/**
+ * Shared pieces of the JMH benchmarks under src/test/java (the {@code *Benchmark}
+ * classes, run with the {@code benchmark} profile): starting the whole service
+ * inside the benchmark JVM, and reporting what JMH does not measure, such as
+ * memory footprint, through one logger.
+ */
+public final class BenchmarkSupport {
+
+    private static final Logger LOGGER = Logger.getLogger(BenchmarkSupport.class.getName());
+
+    private BenchmarkSupport() {
+    }
+
+    public static void report(String message) {
+        LOGGER.info(message);
+    }
+
+    /**
+     * Heap in use after a few full collections, for before/after footprint comparisons.
+     */
+    public static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Start the service on a free port as {@code @HelidonTest} would, with the
+     * given config on top of the defaults and extra bean classes from the tests.
+     */
+    public static RunningService start(Map<String, String> config, Class<?>... beans) {
+        System.setProperty("mp.initializer.allow", "true");
+        System.setProperty("mp.initializer.no-warn", "true");
+        System.setProperty("server.port", "0");
+        // there is no service registry next to a benchmark
+        System.setProperty("registration.enabled", "false");
+        config.forEach(System::setProperty);
+        SeContainer container = SeContainerInitializer.newInstance()
+                .addBeanClasses(beans)
+                .initialize();
+        return new RunningService(container);
+    }
+
+    public static final class RunningService implements AutoCloseable {
+
+        private final SeContainer container;
+
+        private final int port;
+
+        private RunningService(SeContainer container) {
+            this.container = container;
+            this.port = container.select(ServerCdiExtension.class).get().port();
+        }
+
+        public int port() {
+            return port;
+        }
+
+        public URI uri(String path) {
+            return URI.create("http://localhost:" + port + "/" + path);
+        }
+
+        public <T> T bean(Class<T> type) {
+            return container.select(type).get();
+        }
+
+        @Override
+        public void close() {
+            container.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.angrysurfer.atomic.user;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.eclipse.microprofile.config.spi.ConfigSource;
+
+/**
+ * Points {@code user.data.dir} at a fresh temporary directory each time a test
+ * container builds its config, so snapshots and audit segments never land in the
+ * module and never carry over from one test class, or run, to the next. Found
+ * through META-INF/services; {@code @AddConfig} still overrides it.
+ */
+public class TemporaryDataDirectory implements ConfigSource {
+
+    private static final String KEY = "user.data.dir";
+
+    private final Path directory;
+
+    public TemporaryDataDirectory() {
+        try {
+            directory = Files.createTempDirectory("user-access-test-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::delete));
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return Map.of(KEY, directory.toString());
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        return Set.of(KEY);
+    }
+
+    @Override
+    public String getValue(String propertyName) {
+        return KEY.equals(propertyName) ? directory.toString() : null;
+    }
+
+    @Override
+    public String getName() {
+        return "temporary-data-directory";
+    }
+
+    @Override
+    public int getOrdinal() {
+        // above microprofile-config.properties, below system properties and @AddConfig
+        return 200;
+    }
+
+    private void delete() {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // best effort; the system cleans its temp directory eventually
+        }
+    }
+}
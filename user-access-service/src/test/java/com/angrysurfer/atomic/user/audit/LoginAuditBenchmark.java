@@ -0,0 +1,112 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.stream.Stream;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validations of a resident user on four threads with no audit, with this audit
+ * log, and with each outcome written through a JUL file handler on the request
+ * thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoginAuditBenchmark {
+
+    @Param({"none", "ring", "jul"})
+    String audit;
+
+    private Path directory;
+
+    private UserRegistration resident;
+
+    private LoginAudit loginAudit;
+
+    private Logger julAudit;
+
+    private FileHandler handler;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("login-audit-benchmark-");
+        UserRegistration user = new UserRegistration("ada", "ada@example.com", null, "secret");
+        user.setId(42L);
+        resident = user.withoutSecrets();
+        if (audit.equals("ring")) {
+            loginAudit = new LoginAudit();
+            loginAudit.enabled = true;
+            loginAudit.directory = directory.toString();
+            loginAudit.ringSize = 1 << 16;
+            loginAudit.segmentMb = 64;
+            loginAudit.fsyncIntervalMs = 100;
+            loginAudit.maxWaitMs = 50;
+            loginAudit.start();
+        } else if (audit.equals("jul")) {
+            julAudit = Logger.getLogger("login-audit-benchmark");
+            handler = new FileHandler(directory.resolve("jul-audit.log").toString());
+            handler.setFormatter(new SimpleFormatter());
+            julAudit.setUseParentHandlers(false);
+            julAudit.addHandler(handler);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (loginAudit != null) {
+            loginAudit.stop();
+            BenchmarkSupport.report("Login audit wrote " + loginAudit.written() + " records, dropped "
+                    + loginAudit.dropped());
+        }
+        if (handler != null) {
+            julAudit.removeHandler(handler);
+            handler.close();
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public UserRegistrationDTO validate() {
+        if (!resident.credentialsMatch("secret")) {
+            throw new AssertionError();
+        }
+        UserRegistrationDTO dto = resident.toDTO();
+        if (loginAudit != null) {
+            loginAudit.record(resident.getAlias(), "10.0.0.7", LoginOutcome.ACCEPTED, resident.getId());
+        } else if (julAudit != null) {
+            julAudit.info("login alias=" + resident.getAlias() + " client=10.0.0.7 outcome=ACCEPTED user="
+                    + resident.getId());
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,257 @@
+package com.angrysurfer.atomic.user.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+class LoginAuditTest {
+
+    private static final int RECORD = AuditRecordCodec.RECORD_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsRoundTrip() throws IOException {
+        String longAlias = "ü".repeat(40);
+        LoginAudit audit = audit(1024);
+        audit.record("ada", "10.0.0.7", LoginOutcome.ACCEPTED, 42);
+        audit.record("grace", "2001:db8::1", LoginOutcome.REJECTED, 7);
+        audit.record(longAlias, null, LoginOutcome.UNKNOWN_ALIAS, 0);
+        audit.stop();
+
+        List<AuditRecord> records = new ArrayList<>();
+        assertThat(AuditLogReader.read(directory, records::add), is(3L));
+        assertThat(records.get(0).alias(), is("ada"));
+        assertThat(records.get(0).client(), is("10.0.0.7"));
+        assertThat(records.get(0).outcome(), is(LoginOutcome.ACCEPTED));
+        assertThat(records.get(0).userId(), is(42L));
+        assertThat(records.get(1).client(), is("2001:db8::1"));
+        assertThat(records.get(1).outcome(), is(LoginOutcome.REJECTED));
+        assertThat(records.get(2).client(), is(""));
+        // 40 two-byte characters cut to the 32 that fit in 64 bytes
+        assertThat(records.get(2).alias(), is("ü".repeat(32)));
+        assertThat(audit.written(), is(3L));
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothing() throws Exception {
+        int threads = 4;
+        int perThread = 20_000;
+        LoginAudit audit = audit(1 << 17);
+        run(threads, t -> {
+            for (int i = 0; i < perThread; i++) {
+                audit.record("user-" + t, null, LoginOutcome.ACCEPTED, (long) t * perThread + i);
+            }
+        });
+        audit.stop();
+
+        Set<Long> ids = new HashSet<>();
+        long[] lastPerThread = new long[threads];
+        Arrays.fill(lastPerThread, -1);
+        AuditLogReader.read(directory, record -> {
+            ids.add(record.userId());
+            int t = (int) (record.userId() / perThread);
+            // each producer's entries stay in the order it published them
+            assertThat(record.userId() > lastPerThread[t], is(true));
+            lastPerThread[t] = record.userId();
+        });
+        assertThat(ids.size(), is(threads * perThread));
+        assertThat(audit.dropped(), is(0L));
+    }
+
+    @Test
+    void testFullRingRejectsInsteadOfBlocking() throws IOException {
+        AuditRing ring = new AuditRing(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i, LoginOutcome.ACCEPTED, i, null, "a"), is(true));
+        }
+        assertThat(ring.offer(4, LoginOutcome.ACCEPTED, 4, null, "a"), is(false));
+
+        try (AuditSegments segments = new AuditSegments(directory, 1024 * RECORD)) {
+            assertThat(ring.drainTo(segments, 2), is(2));
+            assertThat(ring.offer(4, LoginOutcome.ACCEPTED, 4, null, "a"), is(true));
+            assertThat(ring.drainTo(segments, 10), is(3));
+            assertThat(ring.isEmpty(), is(true));
+        }
+        List<AuditRecord> records = new ArrayList<>();
+        AuditLogReader.read(directory, records::add);
+        assertThat(records.stream().map(AuditRecord::userId).toList(), is(List.of(0L, 1L, 2L, 3L, 4L)));
+    }
+
+    @Test
+    void testFullRingWaitsForTheWriterUntilTheDeadline() {
+        LoginAudit audit = new LoginAudit();
+        audit.maxWaitMs = 50;
+        // a ring with no writer draining it
+        audit.ring = new AuditRing(2);
+        audit.record("ada", null, LoginOutcome.ACCEPTED, 1);
+        audit.record("ada", null, LoginOutcome.ACCEPTED, 2);
+
+        long start = System.nanoTime();
+        audit.record("ada", null, LoginOutcome.ACCEPTED, 3);
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(audit.dropped(), is(1L));
+        assertThat(waited, greaterThanOrEqualTo(50L));
+        assertThat(waited, lessThan(1000L));
+    }
+
+    @Test
+    void testTinyRingLosesNothingWhileTheWriterKeepsUp() throws Exception {
+        LoginAudit audit = audit(4);
+        audit.maxWaitMs = 10_000;
+        run(4, t -> {
+            for (int i = 0; i < 2_000; i++) {
+                audit.record("user-" + t, null, LoginOutcome.ACCEPTED, i);
+            }
+        });
+        audit.stop();
+
+        assertThat(audit.dropped(), is(0L));
+        assertThat(AuditLogReader.read(directory, record -> { }), is(8_000L));
+    }
+
+    @Test
+    void testFilesAreReadAcrossMappingWindows() throws IOException {
+        append(25, 0);
+        AuditLogTool.compact(directory, 0);
+        Path merged = AuditSegments.list(directory).get(0);
+
+        List<Long> ids = new ArrayList<>();
+        // windows of three records, rounded down from a size that is not a multiple
+        assertThat(AuditLogReader.scan(merged, 3 * RECORD + 5,
+                (buffer, offset) -> ids.add(AuditRecordCodec.decode(buffer, offset).userId())), is(20L));
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(ids.get(i), is((long) i));
+        }
+    }
+
+    @Test
+    void testSegmentsRotateAndResumeAfterRestart() throws IOException {
+        append(25, 0);
+        assertThat(AuditSegments.list(directory).size(), is(3));
+
+        append(6, 25);
+        assertThat(AuditSegments.list(directory).size(), is(4));
+
+        List<Long> ids = new ArrayList<>();
+        assertThat(AuditLogReader.read(directory, record -> ids.add(record.userId())), is(31L));
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(ids.get(i), is((long) i));
+        }
+    }
+
+    @Test
+    void testTornRecordEndsSegment() throws IOException {
+        append(5, 0);
+        Path segment = AuditSegments.list(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x5A}), 3L * RECORD + 100);
+        }
+
+        assertThat(AuditLogReader.read(directory, record -> { }), is(3L));
+        // reopening for append resumes at the torn record
+        append(1, 99);
+        List<Long> ids = new ArrayList<>();
+        AuditLogReader.read(directory, record -> ids.add(record.userId()));
+        assertThat(ids, is(List.of(0L, 1L, 2L, 99L)));
+    }
+
+    @Test
+    void testCompactionDropsExpiredRecordsAndSparesActiveSegment() throws IOException {
+        // ids double as timestamps here: 0..24 across three segments
+        append(25, 0);
+        Path active = AuditSegments.list(directory).get(2);
+        long activeSize = Files.size(active);
+
+        AuditLogTool.CompactionResult result = AuditLogTool.compact(directory, 5);
+
+        assertThat(result.kept(), is(15L));
+        assertThat(result.dropped(), is(5L));
+        assertThat(result.segmentsRemoved(), is(1));
+        List<Path> segments = AuditSegments.list(directory);
+        assertThat(segments.size(), is(2));
+        assertThat(Files.size(segments.get(0)), is(15L * RECORD));
+        assertThat(Files.size(active), is(activeSize));
+
+        List<Long> ids = new ArrayList<>();
+        AuditLogReader.read(directory, record -> ids.add(record.userId()));
+        assertThat(ids.size(), is(20));
+        assertThat(ids.get(0), is(5L));
+        assertThat(ids.get(19), is(24L));
+    }
+
+    private LoginAudit audit(int ringSize) {
+        LoginAudit audit = new LoginAudit();
+        audit.enabled = true;
+        audit.directory = directory.toString();
+        audit.ringSize = ringSize;
+        audit.segmentMb = 1;
+        audit.fsyncIntervalMs = 100;
+        audit.start();
+        return audit;
+    }
+
+    /**
+     * Append records with consecutive ids (and timestamps) through a ring into
+     * ten-record segments, draining in batches of seven so that batches straddle
+     * segment boundaries, then close them as a shutdown would.
+     */
+    private void append(int count, long firstId) throws IOException {
+        AuditRing ring = new AuditRing(64);
+        try (AuditSegments segments = new AuditSegments(directory, 10 * RECORD)) {
+            for (int i = 0; i < count; i++) {
+                long id = firstId + i;
+                ring.offer(id, LoginOutcome.ACCEPTED, id, "10.0.0.1", "user-" + id);
+                if (i % 7 == 6) {
+                    ring.drainTo(segments, 64);
+                }
+            }
+            ring.drainTo(segments, 64);
+        }
+    }
+
+    private static long run(int threads, ThreadBody body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> body.run(thread)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private interface ThreadBody {
+
+        void run(int thread);
+    }
+}
@@ -0,0 +1,133 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Stand-in for a shared key-value store. Every call is answered after a fixed
+ * round trip on a timer thread, so many calls can be outstanding at once as on a
+ * pipelined connection.
+ */
+final class InProcessRemoteCache implements RemoteCacheClient {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "in-process-remote-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder getAllCalls = new LongAdder();
+
+    private final LongAdder keysRead = new LongAdder();
+
+    private volatile long roundTripMicros;
+
+    private volatile boolean failing;
+
+    // calls made while hanging are never answered
+    private volatile boolean hanging;
+
+    void roundTrip(Duration roundTrip) {
+        roundTripMicros = TimeUnit.NANOSECONDS.toMicros(roundTrip.toNanos());
+    }
+
+    void failing(boolean failing) {
+        this.failing = failing;
+    }
+
+    void hanging(boolean hanging) {
+        this.hanging = hanging;
+    }
+
+    byte[] get(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.expiresAt > System.currentTimeMillis() ? entry.value : null;
+    }
+
+    long getAllCalls() {
+        return getAllCalls.sum();
+    }
+
+    long keysRead() {
+        return keysRead.sum();
+    }
+
+    void clear() {
+        entries.clear();
+        getAllCalls.reset();
+        keysRead.reset();
+        roundTripMicros = 0;
+        failing = false;
+        hanging = false;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, byte[]>> getAll(Collection<String> keys) {
+        getAllCalls.increment();
+        keysRead.add(keys.size());
+        return answer(() -> {
+            Map<String, byte[]> values = new HashMap<>();
+            for (String key : keys) {
+                byte[] value = get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAllIfNewer(Map<String, Versioned> values, Duration ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        return answer(() -> {
+            values.forEach((key, value) -> entries.merge(key, new Entry(value.value(), value.version(), expiresAt),
+                    (held, offered) -> held.expiresAt > System.currentTimeMillis()
+                            && held.version >= offered.version ? held : offered));
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAll(Collection<String> keys) {
+        return answer(() -> {
+            keys.forEach(entries::remove);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> answer(Supplier<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (hanging) {
+            return result;
+        }
+        Runnable complete = () -> {
+            if (failing) {
+                result.completeExceptionally(new IllegalStateException("store unavailable"));
+            } else {
+                result.complete(operation.get());
+            }
+        };
+        long delay = roundTripMicros;
+        if (delay == 0) {
+            complete.run();
+        } else {
+            timer.schedule(complete, delay, TimeUnit.MICROSECONDS);
+        }
+        return result;
+    }
+
+    private record Entry(byte[] value, long version, long expiresAt) {
+    }
+}
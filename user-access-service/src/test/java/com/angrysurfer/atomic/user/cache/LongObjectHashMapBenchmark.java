@@ -0,0 +1,75 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups in {@link LongObjectHashMap} against a boxed HashMap over 1M ids, probed
+ * in a scattered order so neither side benefits from allocation-order locality.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LongObjectHashMapBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+
+    private static final int PROBES = 1024;
+
+    private LongObjectHashMap<String> primitive;
+
+    private Map<Long, String> boxed;
+
+    private long[] probes;
+
+    @Setup
+    public void setUp() {
+        primitive = new LongObjectHashMap<>(ENTRIES);
+        boxed = new HashMap<>(ENTRIES * 2);
+        for (long id = 0; id < ENTRIES; id++) {
+            String value = "user" + id;
+            primitive.put(id * 31, value);
+            boxed.put(id * 31, value);
+        }
+        probes = new long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = (long) i * 7919 % ENTRIES * 31;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int longObjectHashMap() {
+        int found = 0;
+        for (long id : probes) {
+            found += primitive.get(id) != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int boxedHashMap() {
+        int found = 0;
+        for (long id : probes) {
+            found += boxed.get(id) != null ? 1 : 0;
+        }
+        return found;
+    }
+}
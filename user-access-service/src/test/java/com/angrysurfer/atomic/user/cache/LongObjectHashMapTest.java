@@ -0,0 +1,50 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class LongObjectHashMapTest {
+
+    @Test
+    void testMatchesHashMapUnderRandomPutsAndRemoves() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key), is(expected.remove(key)));
+            } else {
+                map.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+        }
+
+        assertThat(map.size(), is(expected.size()));
+        for (long key = -1_000; key < 1_000; key++) {
+            assertThat(map.get(key), is(expected.get(key)));
+        }
+    }
+
+    @Test
+    void testRemoveIfKeepsRemainingEntriesReachable() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(16);
+        for (long key = 0; key < 1_000; key++) {
+            map.put(key, key % 2 == 0 ? "even" : "odd");
+        }
+
+        assertThat(map.removeIf("even"::equals), is(500));
+
+        assertThat(map.size(), is(500));
+        for (long key = 0; key < 1_000; key++) {
+            assertThat(map.get(key), is(key % 2 == 0 ? null : "odd"));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Alias lookups in {@link OffHeapUserIndex} against an on-heap ConcurrentHashMap
+ * holding the same 1M users. The heap each one adds is reported on setup; run with
+ * {@code -prof gc} to see what a lookup allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OffHeapUserIndexBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+
+    private static final int PROBES = 1024;
+
+    private ConcurrentHashMap<String, UserRegistration> onHeap;
+
+    private OffHeapUserIndex offHeap;
+
+    private String[] probes;
+
+    @Setup
+    public void setUp() {
+        long baseline = BenchmarkSupport.usedHeap();
+        onHeap = new ConcurrentHashMap<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            UserRegistration user = user(i);
+            onHeap.put(user.getAlias(), user);
+        }
+        long onHeapBytes = BenchmarkSupport.usedHeap() - baseline;
+
+        baseline = BenchmarkSupport.usedHeap();
+        offHeap = new OffHeapUserIndex(ENTRIES * 2, 512L * 1024 * 1024);
+        for (int i = 0; i < ENTRIES; i++) {
+            offHeap.put(user(i));
+        }
+        long offHeapBytes = Math.max(0, BenchmarkSupport.usedHeap() - baseline);
+
+        probes = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = "user" + (i * 7919 % ENTRIES);
+        }
+        BenchmarkSupport.report(ENTRIES + " users: ConcurrentHashMap heap " + onHeapBytes / (1024 * 1024)
+                + " MiB; OffHeapUserIndex heap " + offHeapBytes / (1024 * 1024) + " MiB, direct "
+                + offHeap.reservedBytes() / (1024 * 1024) + " MiB");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void concurrentHashMap(Blackhole blackhole) {
+        for (String alias : probes) {
+            blackhole.consume(onHeap.get(alias));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void offHeapUserIndex(Blackhole blackhole) {
+        for (String alias : probes) {
+            blackhole.consume(offHeap.findByAlias(alias));
+        }
+    }
+
+    private static UserRegistration user(long id) {
+        UserRegistration user = new UserRegistration("user" + id, "user" + id + "@example.com",
+                "https://picsum.photos/50/50", "pw-" + id);
+        user.setId(id);
+        user.setMongoId(String.format("65a1f0c2e4b0a1b2%08x", id));
+        return user.withoutSecrets();
+    }
+}
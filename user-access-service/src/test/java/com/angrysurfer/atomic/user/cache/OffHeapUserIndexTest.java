@@ -0,0 +1,95 @@
+package com.angrysurfer.atomic.user.cache;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class OffHeapUserIndexTest {
+
+    @Test
+    void testPutAndFindByAliasAndMongoId() {
+        OffHeapUserIndex index = new OffHeapUserIndex(64, 1 << 20);
+        UserRegistration ada = user("ada", 1);
+        ada.setAdmin(true);
+
+        assertThat(index.put(ada), is(true));
+
+        UserRegistration resident = index.findByAlias("ada");
+        assertThat(resident.getId(), is(1L));
+        assertThat(resident.isAdmin(), is(true));
+        assertThat(resident.getIdentifier(), is(nullValue()));
+        assertThat(resident.credentialsMatch("pw-ada"), is(true));
+        assertThat(index.findByMongoId(ada.getMongoId()).getAlias(), is("ada"));
+        assertThat(index.findByAlias("bob"), is(nullValue()));
+    }
+
+    @Test
+    void testUpdateRenameAndDelete() {
+        OffHeapUserIndex index = new OffHeapUserIndex(64, 1 << 20);
+        UserRegistration ada = user("ada", 1);
+        index.put(ada);
+
+        UserRegistration renamed = user("lovelace", 1);
+        index.put(renamed);
+        assertThat(index.findByAlias("ada"), is(nullValue()));
+        assertThat(index.findByAlias("lovelace").getId(), is(1L));
+        assertThat(index.size(), is(1));
+
+        index.removeByMongoId(renamed.getMongoId());
+        assertThat(index.findByAlias("lovelace"), is(nullValue()));
+        assertThat(index.size(), is(0));
+
+        // tombstoned slots are reused
+        index.put(user("lovelace", 1));
+        assertThat(index.findByAlias("lovelace").getId(), is(1L));
+    }
+
+    @Test
+    void testReportsFullInsteadOfGrowing() {
+        OffHeapUserIndex index = new OffHeapUserIndex(16, 1 << 20);
+        boolean accepted = true;
+        int inserted = 0;
+        while (accepted && inserted < 100) {
+            accepted = index.put(user("user" + inserted, inserted));
+            if (accepted) {
+                inserted++;
+            }
+        }
+        assertThat(inserted, is(12));
+        assertThat(index.findByAlias("user11").getId(), is(11L));
+    }
+
+    @Test
+    void testFailedPutLeavesNoStaleRecordBehind() {
+        OffHeapUserIndex index = new OffHeapUserIndex(16, 1 << 16);
+        for (int i = 0; i < 12; i++) {
+            index.put(user("user" + i, i));
+        }
+        UserRegistration changed = user("user3", 3);
+        changed.setEmail("x".repeat(60_000));
+        changed.setAvatarUrl("y".repeat(60_000));
+
+        // larger than a record page, so it cannot be appended
+        assertThat(index.put(changed), is(false));
+        assertThat(index.isOutOfRecordSpace(), is(true));
+        assertThat(index.findByAlias("user3"), is(nullValue()));
+        assertThat(index.findByMongoId(changed.getMongoId()), is(nullValue()));
+        assertThat(index.size(), is(11));
+
+        assertThat(index.put(user("user12", 12)), is(false));
+        assertThat(index.isOutOfSlots(), is(true));
+        assertThat(index.findByAlias("user12"), is(nullValue()));
+    }
+
+    private static UserRegistration user(String alias, long id) {
+        UserRegistration user = new UserRegistration(alias, alias + "@example.com", "https://picsum.photos/50/50",
+                "pw-" + alias);
+        user.setId(id);
+        user.setMongoId(String.format("65a1f0c2e4b0a1b2%08x", id));
+        return user;
+    }
+}
@@ -0,0 +1,145 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+import com.mongodb.MongoTimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class OffHeapUserStoreTest {
+
+    @Test
+    void testOverflowingRebuildGrowsInsteadOfSwappingInPartialIndex() {
+        List<UserRegistration> users = IntStream.range(0, 100).mapToObj(OffHeapUserStoreTest::user).toList();
+        ListingRepository repository = new ListingRepository(users.subList(0, 10));
+        OffHeapUserStore store = store(repository);
+
+        store.rebuild();
+        assertThat(store.findByAlias("user9").isPresent(), is(true));
+
+        repository.users = users;
+        store.rebuild();
+
+        // 16 slots hold 12 users; the rebuild had to double four times
+        for (UserRegistration user : users) {
+            assertThat(store.findByAlias(user.getAlias()).isPresent(), is(true));
+        }
+        assertThat(repository.scans, is(6));
+    }
+
+    @Test
+    void testFailedChangeIsNeverServedStale() {
+        // ten of these fill the single 1 MiB record page
+        List<UserRegistration> users = IntStream.range(0, 10).mapToObj(OffHeapUserStoreTest::fatUser).toList();
+        ListingRepository repository = new ListingRepository(users);
+        OffHeapUserStore store = store(repository);
+        store.rebuild();
+        assertThat(store.findByAlias("user1").isPresent(), is(true));
+
+        UserRegistration changed = fatUser(1);
+        changed.setVersion(2);
+        repository.users = List.of(changed);
+        store.onUserChange(UserChangeEvent.upsert(changed));
+
+        // gone until the rebuild it scheduled has read the new state, never the old one
+        assertThat(store.findByAlias("user1").map(UserRegistration::getVersion).orElse(2L), is(2L));
+    }
+
+    @Test
+    void testFailedScanIsRetried() {
+        ListingRepository repository = new ListingRepository(List.of(user(1)));
+        repository.failures = 2;
+        OffHeapUserStore store = store(repository);
+        store.initialBackoffMillis = 1;
+
+        store.rebuild();
+
+        assertThat(store.findByAlias("user1").isPresent(), is(true));
+        assertThat(repository.scans, is(3));
+    }
+
+    @Test
+    void testChangesDuringScanSurviveTheSwap() {
+        List<UserRegistration> users = IntStream.range(0, 10).mapToObj(OffHeapUserStoreTest::user).toList();
+        users.get(7).setVersion(5);
+        ListingRepository repository = new ListingRepository(users);
+        OffHeapUserStore store = store(repository);
+        UserRegistration renamed = user(5);
+        renamed.setEmail("renamed@example.com");
+        renamed.setVersion(1);
+        UserRegistration late = user(7);
+        late.setVersion(4);
+        repository.duringScan = () -> {
+            store.onUserChange(UserChangeEvent.delete(users.get(3).getMongoId()));
+            store.onUserChange(UserChangeEvent.upsert(user(50)));
+            store.onUserChange(UserChangeEvent.upsert(renamed));
+            // delivered after the scan had already read version 5
+            store.onUserChange(UserChangeEvent.upsert(late));
+        };
+
+        store.rebuild();
+
+        assertThat(store.findByAlias("user3").isPresent(), is(false));
+        assertThat(store.findByAlias("user50").isPresent(), is(true));
+        assertThat(store.findByAlias("user5").orElseThrow().getEmail(), is("renamed@example.com"));
+        assertThat(store.findByAlias("user7").orElseThrow().getVersion(), is(5L));
+    }
+
+    private static OffHeapUserStore store(UserRegistrationRepository repository) {
+        OffHeapUserStore store = new OffHeapUserStore();
+        store.offHeapEnabled = true;
+        store.slotCapacity = 16;
+        store.dataMegabytes = 1;
+        store.loadBatchSize = 10;
+        store.userRepository = repository;
+        return store;
+    }
+
+    private static UserRegistration user(int i) {
+        UserRegistration user = new UserRegistration("user" + i, "user" + i + "@example.com", null, "pw-" + i);
+        user.setId((long) i);
+        user.setMongoId(String.format("65a1f0c2e4b0a1b2%08x", i));
+        return user;
+    }
+
+    private static UserRegistration fatUser(int i) {
+        UserRegistration user = user(i);
+        user.setEmail("x".repeat(50_000));
+        user.setAvatarUrl("y".repeat(50_000));
+        return user;
+    }
+
+    private static final class ListingRepository extends UserRegistrationRepository {
+
+        volatile List<UserRegistration> users;
+
+        int scans;
+
+        int failures;
+
+        Runnable duringScan = () -> { };
+
+        ListingRepository(List<UserRegistration> users) {
+            this.users = users;
+        }
+
+        @Override
+        public void forEachUser(int batchSize, Consumer<UserRegistration> action) {
+            scans++;
+            if (failures > 0) {
+                failures--;
+                throw new MongoTimeoutException("Timed out waiting for a server");
+            }
+            users.forEach(action);
+            duringScan.run();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Profile lookups by id through the shared tier, as the id index makes them on a
+ * miss, from 64 threads over a 1 ms round trip, one key per call against
+ * multi-get batches of up to 64 keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class RemoteUserCacheBenchmark {
+
+    private static final int USERS = 5_000;
+
+    @Param({"1", "64"})
+    int maxBatch;
+
+    private RemoteUserCache cache;
+
+    @Setup
+    public void setUp() {
+        InProcessRemoteCache store = new InProcessRemoteCache();
+        cache = new RemoteUserCache();
+        cache.enabled = true;
+        cache.timeoutMs = 1000;
+        cache.maxBatch = maxBatch;
+        cache.pipelineDepth = 4;
+        cache.ttlSeconds = 300;
+        cache.use(store);
+        for (int i = 0; i < USERS; i++) {
+            UserRegistration user = new UserRegistration("fleet-" + i, null, null);
+            user.setId((long) i);
+            cache.put(user);
+        }
+        store.roundTrip(Duration.ofMillis(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.report("Shared tier with batches of up to " + maxBatch + ": " + cache.keysRequested()
+                + " keys in " + cache.batches() + " batches, " + cache.failures() + " failures");
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        long nextId() {
+            next = (next + 7919) % USERS;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Optional<UserRegistration> findById(Cursor cursor) {
+        return cache.findById(cursor.nextId());
+    }
+}
@@ -0,0 +1,320 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.angrysurfer.atomic.user.model.CredentialDigest;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * The shared tier both wired behind the id index, through an in-process store
+ * bean and in-memory users standing in for Mongo, and on its own against stores
+ * with a simulated round trip.
+ */
+@HelidonTest
+@AddBean(RemoteUserCacheTest.SharedStore.class)
+@AddBean(InMemoryUserRepository.class)
+@AddConfig(key = "user.degraded.enabled", value = "false")
+// deletes below carry an id, which the relationship graph would remove from Mongo
+@AddConfig(key = "user.graph.enabled", value = "false")
+class RemoteUserCacheTest {
+
+    private static final InProcessRemoteCache STORE = new InProcessRemoteCache();
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private Event<UserChangeEvent> userChanged;
+
+    @Inject
+    private InMemoryUserRepository users;
+
+    @BeforeEach
+    void setUp() {
+        STORE.clear();
+    }
+
+    @Test
+    void testSharedEntryServesProfileWithoutMongo() {
+        // only in the shared tier, as another replica would have left it
+        UserRegistration ada = user("remote-ada", 31L);
+        ada.setVersion(2);
+        STORE.putAllIfNewer(Map.of(RemoteUserCache.KEY_PREFIX + 31,
+                new RemoteCacheClient.Versioned(2, RemoteUserCache.encode(ada))), Duration.ofMinutes(1));
+
+        Response response = target.path("api/user/id/31/profile").request(MediaType.APPLICATION_JSON).get();
+        String json = response.readEntity(String.class);
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(json.contains("remote-ada@example.com"), is(true));
+        assertThat(STORE.getAllCalls(), is(1L));
+    }
+
+    @Test
+    void testProfileReadFromMongoIsShared() {
+        users.save(user("remote-lin", 33L));
+
+        Response response = target.path("api/user/id/33/profile").request(MediaType.APPLICATION_JSON).get();
+        response.close();
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(STORE.get(RemoteUserCache.KEY_PREFIX + 33), is(notNullValue()));
+    }
+
+    @Test
+    void testValidationNeverReadsTheSharedTier() {
+        users.save(user("remote-kay", 35L));
+
+        assertThat(validate("remote-kay", "secret-35"), is(200));
+        assertThat(validate("remote-nobody", "secret-35"), is(401));
+        assertThat(STORE.getAllCalls(), is(0L));
+    }
+
+    @Test
+    void testDigestInASharedEntryIsDropped() {
+        InProcessRemoteCache store = new InProcessRemoteCache();
+        RemoteUserCache cache = remoteCache(store, 1000, 64, 4);
+        // an entry carrying a digest, as an older replica or anyone who can write to the store might leave
+        byte[] record = UserRecordCodec.encode(user("forged", 36L).withoutSecrets());
+        byte[] value = new byte[record.length + 1];
+        value[0] = RemoteUserCache.FORMAT;
+        System.arraycopy(record, 0, value, 1, record.length);
+        store.putAllIfNewer(Map.of(RemoteUserCache.KEY_PREFIX + 36, new RemoteCacheClient.Versioned(1, value)),
+                Duration.ofMinutes(1));
+
+        UserRegistration found = cache.findById(36).orElseThrow();
+        assertThat(found.getCredentialDigest(), is((CredentialDigest) null));
+        assertThat(found.credentialsMatch("secret-36"), is(false));
+    }
+
+    @Test
+    void testUpsertsOverwriteOnlyOlderSharedEntries() {
+        UserRegistration grace = user("remote-grace", 32L);
+        grace.setMongoId("65a1f0c2e4b0a1b2c3d4e5f7");
+        grace.setVersion(3);
+        userChanged.fire(UserChangeEvent.upsert(grace));
+        UserRegistration older = user("remote-grace", 32L);
+        older.setVersion(2);
+        older.setEmail("stale@example.com");
+        userChanged.fire(UserChangeEvent.upsert(older));
+
+        byte[] stored = STORE.get(RemoteUserCache.KEY_PREFIX + 32);
+        assertThat(stored, is(notNullValue()));
+        assertThat(stored[0], is(RemoteUserCache.FORMAT));
+        UserRegistration decoded = UserRecordCodec.decode(ByteBuffer.wrap(stored, 1, stored.length - 1));
+        assertThat(decoded.getVersion(), is(3L));
+        assertThat(decoded.getEmail(), is("remote-grace@example.com"));
+        assertThat(decoded.getIdentifier(), is((String) null));
+        assertThat(decoded.getCredentialDigest(), is((CredentialDigest) null));
+        assertThat(decoded.credentialsMatch("secret-32"), is(false));
+    }
+
+    @Test
+    void testDeleteRemovesSharedEntry() {
+        UserRegistration bob = user("remote-bob", 34L);
+        bob.setMongoId("65a1f0c2e4b0a1b2c3d4e5f9");
+        userChanged.fire(UserChangeEvent.upsert(bob));
+        assertThat(STORE.get(RemoteUserCache.KEY_PREFIX + 34), is(notNullValue()));
+
+        userChanged.fire(UserChangeEvent.delete(bob.getMongoId(), 34L, "remote-bob"));
+
+        assertThat(STORE.get(RemoteUserCache.KEY_PREFIX + 34), is(nullValue()));
+    }
+
+    @Test
+    void testConcurrentLookupsShareBatches() throws Exception {
+        InProcessRemoteCache store = new InProcessRemoteCache();
+        RemoteUserCache cache = remoteCache(store, 1000, 64, 2);
+        for (int i = 0; i < 256; i++) {
+            cache.put(user("batched-" + i, i));
+        }
+        store.roundTrip(Duration.ofMillis(5));
+
+        LongAdder found = new LongAdder();
+        run(256, i -> {
+            if (cache.findById(i).isPresent()) {
+                found.increment();
+            }
+        });
+
+        assertThat(found.sum(), is(256L));
+        assertThat(cache.keysRequested(), is(256L));
+        assertThat(cache.batches(), lessThan(32L));
+    }
+
+    @Test
+    void testConcurrentLookupsOfOneIdShareAKey() throws Exception {
+        InProcessRemoteCache store = new InProcessRemoteCache();
+        RemoteUserCache cache = remoteCache(store, 1000, 64, 4);
+        cache.put(user("popular", 1));
+        store.roundTrip(Duration.ofMillis(50));
+
+        LongAdder found = new LongAdder();
+        run(64, i -> {
+            if (cache.findById(1).isPresent()) {
+                found.increment();
+            }
+        });
+
+        assertThat(found.sum(), is(64L));
+        assertThat(store.keysRead(), lessThan(8L));
+    }
+
+    @Test
+    void testSlowOrFailingStoreIsAMiss() {
+        InProcessRemoteCache store = new InProcessRemoteCache();
+        RemoteUserCache cache = remoteCache(store, 20, 64, 4);
+        cache.put(user("slow", 1));
+
+        store.roundTrip(Duration.ofMillis(500));
+        long start = System.nanoTime();
+        assertThat(cache.findById(1).isPresent(), is(false));
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(250)));
+
+        store.roundTrip(Duration.ZERO);
+        store.failing(true);
+        assertThat(cache.findById(2).isPresent(), is(false));
+        assertThat(cache.failures(), is(2L));
+    }
+
+    @Test
+    void testUnansweredBatchesFreeThePipeline() {
+        InProcessRemoteCache store = new InProcessRemoteCache();
+        RemoteUserCache cache = remoteCache(store, 50, 1, 2);
+        cache.put(user("answered", 1));
+
+        store.hanging(true);
+        assertThat(cache.findById(2).isPresent(), is(false));
+        assertThat(cache.findById(3).isPresent(), is(false));
+
+        store.hanging(false);
+        assertThat(cache.findById(1).isPresent(), is(true));
+    }
+
+    @Test
+    void testSharedTierSavesFleetColdReads() throws Exception {
+        int replicas = 4;
+        int users = 500;
+
+        // every replica reads every user from Mongo once without the shared tier, only the first one with it
+        assertThat(fleetMongoReads(null, replicas, users), is((long) replicas * users));
+        assertThat(fleetMongoReads(new InProcessRemoteCache(), replicas, users), is((long) users));
+    }
+
+    private static long fleetMongoReads(InProcessRemoteCache store, int replicas, int users) throws Exception {
+        LongAdder mongoReads = new LongAdder();
+        UserRegistrationRepository mongo = new UserRegistrationRepository() {
+            @Override
+            public Optional<UserRegistration> findById(long id) {
+                mongoReads.increment();
+                return Optional.of(user("fleet-" + id, id));
+            }
+        };
+        List<UserIdIndex> indexes = new ArrayList<>();
+        for (int r = 0; r < replicas; r++) {
+            UserIdIndex index = new UserIdIndex();
+            index.maxEntries = users;
+            index.userRepository = mongo;
+            index.remoteCache = store != null ? remoteCache(store, 1000, 64, 4) : new RemoteUserCache();
+            index.init();
+            indexes.add(index);
+        }
+        // replicas come up one after another, each serving every user once
+        for (UserIdIndex index : indexes) {
+            run(16, t -> {
+                for (int i = t; i < users; i += 16) {
+                    assertThat(index.findById(i).isPresent(), is(true));
+                }
+            });
+        }
+        return mongoReads.sum();
+    }
+
+    private static RemoteUserCache remoteCache(InProcessRemoteCache store, long timeoutMs, int maxBatch,
+                                               int pipelineDepth) {
+        RemoteUserCache cache = new RemoteUserCache();
+        cache.enabled = true;
+        cache.timeoutMs = timeoutMs;
+        cache.maxBatch = maxBatch;
+        cache.pipelineDepth = pipelineDepth;
+        cache.ttlSeconds = 300;
+        cache.use(store);
+        return cache;
+    }
+
+    private static UserRegistration user(String alias, long id) {
+        UserRegistration user = new UserRegistration(alias, alias + "@example.com", null, "secret-" + id);
+        user.setId(id);
+        return user;
+    }
+
+    private int validate(String alias, String identifier) {
+        Response response = target.path("api/user/validate")
+                .queryParam("alias", alias)
+                .queryParam("identifier", identifier)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        response.close();
+        return response.getStatus();
+    }
+
+    private static void run(int threads, ThreadBody body) throws Exception {
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> body.run(thread)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private interface ThreadBody {
+
+        void run(int thread);
+    }
+
+    static class SharedStore {
+
+        @Produces
+        @Singleton
+        RemoteCacheClient store() {
+            return STORE;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.NotificationOptions;
+import jakarta.enterprise.util.TypeLiteral;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class UserChangeStreamListenerTest {
+
+    private static final BsonDocument SNAPSHOT_TOKEN = new BsonDocument("_data", new BsonString("8265A1F0C2000000012B"));
+
+    @TempDir
+    Path dir;
+
+    private final RecordingEvent events = new RecordingEvent();
+    private final WatchingRepository repository = new WatchingRepository();
+    private UserSnapshotService snapshotService;
+    private UserChangeStreamListener listener;
+
+    @BeforeEach
+    void setUp() {
+        UserIdIndex index = new UserIdIndex();
+        index.maxEntries = 100;
+        index.init();
+        snapshotService = new UserSnapshotService();
+        snapshotService.userIdIndex = index;
+        snapshotService.snapshotPath = dir.resolve("users.bin").toString();
+
+        listener = new UserChangeStreamListener();
+        listener.userRepository = repository;
+        listener.snapshotService = snapshotService;
+        listener.userChanged = events;
+    }
+
+    @Test
+    void testChangesAreRepublishedAsUserEvents() {
+        ObjectId id = new ObjectId();
+        Document doc = new Document("_id", id).append("alias", "ada").append("identifier", "s3cret")
+                .append("version", 3L);
+        BsonDocument key = new BsonDocument("_id", new BsonObjectId(id));
+
+        assertThat(listener.apply(change("insert", doc, key)), is(true));
+        assertThat(listener.apply(change("update", null, key)), is(true));
+        assertThat(listener.apply(change("delete", null, key)), is(true));
+        assertThat(listener.apply(change("invalidate", null, null)), is(false));
+
+        assertThat(events.fired.stream().map(UserChangeEvent::getType).toList(), contains(UserChangeEvent.Type.UPSERT,
+                UserChangeEvent.Type.DELETE, UserChangeEvent.Type.DELETE, UserChangeEvent.Type.RESET));
+        UserChangeEvent upsert = events.fired.get(0);
+        assertThat(upsert.getMongoId(), is(id.toHexString()));
+        assertThat(upsert.getUser().getAlias(), is("ada"));
+        assertThat(upsert.getUser().getVersion(), is(3L));
+        assertThat(upsert.getUser().getIdentifier(), is(nullValue()));
+        // an update whose post-image is gone was followed by a delete
+        assertThat(events.fired.get(1).getMongoId(), is(id.toHexString()));
+    }
+
+    @Test
+    void testStreamResumesFromTheSnapshotsToken() throws IOException {
+        UserRegistration user = new UserRegistration("ada", "ada@example.com", null);
+        user.setId(7L);
+        user.setMongoId(new ObjectId().toHexString());
+        UserSnapshotFile.write(Path.of(snapshotService.snapshotPath), List.of(user), SNAPSHOT_TOKEN);
+        snapshotService.load();
+
+        listener.running = true;
+        listener.run();
+
+        assertThat(snapshotService.userIdIndex.findById(7).isPresent(), is(true));
+        assertThat(repository.watchedFrom, is(SNAPSHOT_TOKEN));
+    }
+
+    @Test
+    void testSnapshotIsWrittenWithTheAppliedToken() throws IOException {
+        snapshotService.load();
+        BsonDocument applied = new BsonDocument("_data", new BsonString("8265A1F0C9000000022B"));
+        snapshotService.changesAppliedThrough(applied);
+        snapshotService.dump();
+
+        assertThat(UserSnapshotFile.readResumeToken(Path.of(snapshotService.snapshotPath)), is(applied));
+
+        snapshotService.changesAppliedThrough(null);
+        snapshotService.dump();
+        assertThat(UserSnapshotFile.readResumeToken(Path.of(snapshotService.snapshotPath)), is(nullValue()));
+    }
+
+    @Test
+    void testDeleteCarriesTheIdFromThePreImage() {
+        ObjectId id = new ObjectId();
+        BsonDocument key = new BsonDocument("_id", new BsonObjectId(id));
+        Document deleted = new Document("_id", id).append("alias", "ada").append("id", 7L);
+
+        listener.apply(new ChangeStreamDocument<>("delete", SNAPSHOT_TOKEN, null, null, null, deleted, key,
+                null, null, null, null, null, null));
+        listener.apply(change("delete", null, key));
+
+        assertThat(events.fired.get(0).getUserId(), is(7L));
+        assertThat(events.fired.get(1).getUserId(), is(nullValue()));
+    }
+
+    private static ChangeStreamDocument<Document> change(String operation, Document fullDocument,
+            BsonDocument documentKey) {
+        return new ChangeStreamDocument<>(operation, SNAPSHOT_TOKEN, null, null, fullDocument, null, documentKey,
+                null, null, null, null, null, null);
+    }
+
+    /**
+     * Records the token the listener resumes from, then fails like a
+     * standalone server so the listener stops.
+     */
+    private static final class WatchingRepository extends UserRegistrationRepository {
+
+        BsonDocument watchedFrom;
+
+        @Override
+        public void enableChangeStreamPreImages() {
+        }
+
+        @Override
+        public ChangeStreamIterable<Document> watch(BsonDocument resumeToken, boolean preImages) {
+            watchedFrom = resumeToken;
+            throw new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                    .append("code", new BsonInt32(40573))
+                    .append("errmsg", new BsonString("not a replica set")), new ServerAddress());
+        }
+    }
+
+    private static final class RecordingEvent implements Event<UserChangeEvent> {
+
+        final List<UserChangeEvent> fired = new ArrayList<>();
+
+        @Override
+        public void fire(UserChangeEvent event) {
+            fired.add(event);
+        }
+
+        @Override
+        public <U extends UserChangeEvent> CompletionStage<U> fireAsync(U event) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends UserChangeEvent> CompletionStage<U> fireAsync(U event, NotificationOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Event<UserChangeEvent> select(Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends UserChangeEvent> Event<U> select(Class<U> subtype, Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <U extends UserChangeEvent> Event<U> select(TypeLiteral<U> subtype, Annotation... qualifiers) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.angrysurfer.atomic.user.cache;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Change-stream events against resident ids; nothing here misses, so Mongo is
+ * never consulted.
+ */
+class UserIdIndexTest {
+
+    private UserIdIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserIdIndex();
+        index.maxEntries = 3;
+        index.init();
+        for (long id = 1; id <= 3; id++) {
+            index.put(user(id));
+        }
+    }
+
+    @Test
+    void testDeleteDropsTheRecordByMongoId() {
+        index.onUserChange(UserChangeEvent.delete(mongoId(2)));
+
+        assertThat(index.size(), is(2));
+        assertThat(index.findById(1).isPresent(), is(true));
+        assertThat(index.findById(3).isPresent(), is(true));
+    }
+
+    @Test
+    void testIdChangeDropsTheOldId() {
+        UserRegistration renumbered = user(2);
+        renumbered.setId(20L);
+        index.onUserChange(UserChangeEvent.upsert(renumbered));
+        index.onUserChange(UserChangeEvent.delete(mongoId(2)));
+
+        assertThat(index.size(), is(2));
+    }
+
+    @Test
+    void testEvictedRecordsLeaveNoMongoIdBehind() {
+        for (long id = 4; id <= 100; id++) {
+            index.put(user(id));
+        }
+        for (long id = 1; id <= 100; id++) {
+            index.onUserChange(UserChangeEvent.delete(mongoId(id)));
+        }
+
+        assertThat(index.size(), is(0));
+    }
+
+    @Test
+    void testRestoreNeverEvictsOrOverwrites() {
+        index.onUserChange(UserChangeEvent.delete(mongoId(3)));
+        UserRegistration stale = user(1);
+        stale.setAlias("stale");
+
+        assertThat(index.restore(stale), is(true));
+        assertThat(index.restore(user(4)), is(true));
+        assertThat(index.restore(user(5)), is(false));
+
+        assertThat(index.size(), is(3));
+        assertThat(index.findById(1).orElseThrow().getAlias(), is("user-1"));
+        assertThat(index.findById(4).isPresent(), is(true));
+    }
+
+    private static UserRegistration user(long id) {
+        UserRegistration user = new UserRegistration("user-" + id, null, null);
+        user.setId(id);
+        user.setMongoId(mongoId(id));
+        return user;
+    }
+
+    private static String mongoId(long id) {
+        return String.format("65a1f0c2e4b0a1b2%08x", id);
+    }
+}
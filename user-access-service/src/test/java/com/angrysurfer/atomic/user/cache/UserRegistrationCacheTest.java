@@ -0,0 +1,74 @@
+package com.angrysurfer.atomic.user.cache;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Feeds the cache the same events the change-stream listener publishes, standing
+ * in for a replica set with writes arriving from other replicas.
+ */
+class UserRegistrationCacheTest {
+
+    private static final String MONGO_ID = "65a1f0c2e4b0a1b2c3d4e5f6";
+
+    private UserRegistrationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserRegistrationCache();
+        cache.maxEntries = 10;
+        cache.put(user("ada", "first"));
+    }
+
+    @Test
+    void testRemoteUpdateReplacesResidentRecord() {
+        cache.onUserChange(UserChangeEvent.upsert(user("ada", "second")));
+
+        UserRegistration resident = cache.findByAlias("ada").orElseThrow();
+        assertThat(resident.credentialsMatch("second"), is(true));
+        assertThat(resident.credentialsMatch("first"), is(false));
+    }
+
+    @Test
+    void testRemoteRenameEvictsOldAlias() {
+        cache.onUserChange(UserChangeEvent.upsert(user("lovelace", "first")));
+
+        assertThat(cache.findByAlias("ada").isPresent(), is(false));
+        assertThat(cache.findByAlias("lovelace").isPresent(), is(true));
+    }
+
+    @Test
+    void testRemoteDeleteEvictsByMongoId() {
+        cache.onUserChange(UserChangeEvent.delete(MONGO_ID));
+
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    void testUpsertOfNonResidentUserIsIgnored() {
+        UserRegistration other = new UserRegistration("bob", null, null, "pw");
+        other.setMongoId("65a1f0c2e4b0a1b2c3d4e5f7");
+        cache.onUserChange(UserChangeEvent.upsert(other));
+
+        assertThat(cache.findByAlias("bob").isPresent(), is(false));
+    }
+
+    @Test
+    void testResetClearsEverything() {
+        cache.onUserChange(UserChangeEvent.reset());
+
+        assertThat(cache.size(), is(0));
+    }
+
+    private static UserRegistration user(String alias, String identifier) {
+        UserRegistration user = new UserRegistration(alias, alias + "@example.com", null, identifier);
+        user.setMongoId(MONGO_ID);
+        return user;
+    }
+}
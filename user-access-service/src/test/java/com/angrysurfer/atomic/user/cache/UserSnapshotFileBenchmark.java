@@ -0,0 +1,85 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup cost of the user snapshot: writing 1M users and loading them back into
+ * a fresh {@link UserIdIndex}, each timed as a single cold shot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserSnapshotFileBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+
+    private Path directory;
+
+    private Path snapshot;
+
+    private List<UserRegistration> users;
+
+    private UserIdIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-snapshot-benchmark-");
+        snapshot = directory.resolve("users.bin");
+        users = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            UserRegistration user = new UserRegistration("user" + i, "user" + i + "@example.com",
+                    "https://picsum.photos/50/50", "identifier" + i);
+            user.setId((long) i);
+            users.add(user.withoutSecrets());
+        }
+        UserSnapshotFile.write(snapshot, users);
+        BenchmarkSupport.report("Snapshot of " + ENTRIES + " users: " + Files.size(snapshot) / (1024 * 1024) + " MiB");
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyCache() {
+        index = new UserIdIndex();
+        index.maxEntries = ENTRIES;
+        index.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        return UserSnapshotFile.write(snapshot, users);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        return UserSnapshotFile.readWhile(snapshot, index::restore);
+    }
+}
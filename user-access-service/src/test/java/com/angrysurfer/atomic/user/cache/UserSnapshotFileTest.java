@@ -0,0 +1,88 @@
+package com.angrysurfer.atomic.user.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class UserSnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripLeavesOutCredentials() throws IOException {
+        UserRegistration admin = new UserRegistration("ada", "ada@example.com", "https://example.com/a.png", "s3cret");
+        admin.setMongoId("65a1f0c2e4b0a1b2c3d4e5f6");
+        admin.setId(42L);
+        admin.setAdmin(true);
+        admin.setVersion(7);
+        admin.setLockedUntil(1_700_000_000_000L);
+        UserRegistration plain = new UserRegistration("bob", null, null, "hunter2");
+
+        Path path = dir.resolve("users.bin");
+        int written = UserSnapshotFile.write(path, List.of(admin.withoutSecrets(), plain.withoutSecrets()));
+
+        List<UserRegistration> read = new ArrayList<>();
+        int count = UserSnapshotFile.read(path, read::add);
+
+        assertThat(written, is(2));
+        assertThat(count, is(2));
+        UserRegistration first = read.get(0);
+        assertThat(first.getAlias(), is("ada"));
+        assertThat(first.getId(), is(42L));
+        assertThat(first.getMongoId(), is("65a1f0c2e4b0a1b2c3d4e5f6"));
+        assertThat(first.isAdmin(), is(true));
+        assertThat(first.getVersion(), is(7L));
+        assertThat(first.getLockedUntil(), is(1_700_000_000_000L));
+        assertThat(first.getIdentifier(), is(nullValue()));
+        assertThat(first.getCredentialDigest(), is(nullValue()));
+        assertThat(first.credentialsMatch("s3cret"), is(false));
+        assertThat(read.get(1).getEmail(), is(nullValue()));
+        assertThat(read.get(1).getVersion(), is(0L));
+        assertThat(read.get(1).getLockedUntil(), is(0L));
+        assertThat(read.get(1).getCredentialDigest(), is(nullValue()));
+        assertThat(Files.getPosixFilePermissions(path), is(PosixFilePermissions.fromString("rw-------")));
+    }
+
+    @Test
+    void testRecordsSpanManyMappingWindows() throws IOException {
+        int entries = 40_000;
+        List<UserRegistration> users = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            UserRegistration user = new UserRegistration("user" + i, "user" + i + "@example.com", null);
+            user.setId((long) i);
+            users.add(user);
+        }
+        // the longest record a string field allows, so a remap has to leave room for it
+        users.add(new UserRegistration("long", "x".repeat(65_000), null));
+        Path path = dir.resolve("users.bin");
+        int window = 256 * 1024;
+        UserSnapshotFile.write(path, users, null, window);
+        assertThat(Files.size(path) > 4L * window, is(true));
+
+        List<UserRegistration> read = new ArrayList<>();
+        assertThat(UserSnapshotFile.read(path, read::add, window), is(entries + 1));
+        for (int i = 0; i < entries; i += 997) {
+            assertThat(read.get(i).getId(), is((long) i));
+            assertThat(read.get(i).getEmail(), is("user" + i + "@example.com"));
+        }
+        assertThat(read.get(entries).getEmail().length(), is(65_000));
+    }
+
+    @Test
+    void testMissingSnapshotIsReportedAsUnusable() throws IOException {
+        assertThat(UserSnapshotFile.read(dir.resolve("absent.bin"), user -> { }), is(-1));
+    }
+}
@@ -0,0 +1,121 @@
+package com.angrysurfer.atomic.user.degraded;
+
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * No Mongo is available here, so the startup probe leaves the service degraded.
+ * Credentials verified "before the outage" are seeded into the store directly.
+ */
+@HelidonTest
+class DegradedModeTest {
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private MongoHealth mongoHealth;
+
+    @Inject
+    private VerifiedCredentials verifiedCredentials;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @Test
+    void testReadinessReportsDegradedMode() {
+        assertThat(mongoHealth.isDegraded(), is(true));
+        assertThat(mongoHealth.failedProbes() > 0, is(true));
+
+        Response response = target.path("health/ready").request(MediaType.APPLICATION_JSON).get();
+        String body = response.readEntity(String.class);
+        assertThat(body, containsString("\"degraded\":true"));
+    }
+
+    @Test
+    void testVerifiedCredentialsAnswerWhileDegraded() {
+        UserRegistration ada = user("degraded-ada", 51L);
+        verifiedCredentials.recordVerified(ada);
+        userCache.invalidate("degraded-ada");
+        long hits = verifiedCredentials.hits();
+
+        assertThat(validate("degraded-ada", "secret-51"), is(200));
+        assertThat(validate("degraded-ada", "wrong"), is(401));
+        assertThat(verifiedCredentials.hits(), is(hits + 2));
+    }
+
+    @Test
+    void testUnverifiedAliasFailsFast() {
+        long start = System.nanoTime();
+        assertThat(validate("degraded-nobody", "secret"), is(503));
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void testStoreIsBoundedAndEntriesGoStale() throws InterruptedException {
+        VerifiedCredentials store = new VerifiedCredentials();
+        store.maxEntries = 2;
+        store.maxStalenessSeconds = 3600;
+        store.recordVerified(user("a", 1L));
+        store.recordVerified(user("b", 2L));
+        store.recordVerified(user("a", 1L));
+        store.recordVerified(user("c", 3L));
+
+        assertThat(store.size(), is(2));
+        assertThat(store.find("b").isPresent(), is(false));
+        assertThat(store.find("a").isPresent(), is(true));
+        assertThat(store.find("a").get().getIdentifier(), is((String) null));
+        assertThat(store.find("a").get().credentialsMatch("secret-1"), is(true));
+
+        store.maxStalenessSeconds = 0;
+        Thread.sleep(5);
+        assertThat(store.find("a").isPresent(), is(false));
+    }
+
+    @Test
+    void testChangedUserIsDropped() {
+        VerifiedCredentials store = new VerifiedCredentials();
+        store.maxEntries = 10;
+        store.maxStalenessSeconds = 3600;
+        UserRegistration a = user("a", 1L);
+        a.setMongoId("65a1f0c2e4b0a1b2c3d4e5f8");
+        store.recordVerified(a);
+        store.recordVerified(user("b", 2L));
+
+        store.onUserChange(UserChangeEvent.delete("65a1f0c2e4b0a1b2c3d4e5f8"));
+        store.onUserChange(UserChangeEvent.upsert(user("b", 2L)));
+        assertThat(store.size(), is(0));
+    }
+
+    private static UserRegistration user(String alias, long id) {
+        UserRegistration user = new UserRegistration(alias, alias + "@example.com", null, "secret-" + id);
+        user.setId(id);
+        return user;
+    }
+
+    private int validate(String alias, String identifier) {
+        Response response = target.path("api/user/validate")
+                .queryParam("alias", alias)
+                .queryParam("identifier", identifier)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        response.close();
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,105 @@
+package com.angrysurfer.atomic.user.degraded;
+
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * A single Mongo read failing or stalling while the probe still sees Mongo as
+ * healthy: the in-memory users time out or hang on lookups by alias, and the
+ * probe is off.
+ */
+@HelidonTest
+@AddBean(InMemoryUserRepository.class)
+@AddConfig(key = "user.degraded.enabled", value = "false")
+class MongoReadFailureTest {
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private InMemoryUserRepository users;
+
+    @Inject
+    private VerifiedCredentials verifiedCredentials;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @AfterEach
+    void tearDown() {
+        users.failReads(false);
+        users.stallReads(false);
+    }
+
+    @Test
+    void testFailedReadWithoutVerifiedCredentialsIs503() {
+        users.save(new UserRegistration("read-ada", "ada@example.com", null, "secret"));
+        users.failReads(true);
+
+        assertThat(validate("read-ada", "secret"), is(503));
+    }
+
+    @Test
+    void testFailedReadFallsBackToVerifiedCredentials() {
+        users.save(new UserRegistration("read-grace", "grace@example.com", null, "secret"));
+        assertThat(validate("read-grace", "secret"), is(200));
+        userCache.invalidate("read-grace");
+        assertThat(verifiedCredentials.find("read-grace").isPresent(), is(true));
+        users.failReads(true);
+
+        assertThat(validate("read-grace", "secret"), is(200));
+    }
+
+    @Test
+    void testStalledReadWithoutVerifiedCredentialsIs503WithinTheDeadline() {
+        users.save(new UserRegistration("stall-ada", "ada@example.com", null, "secret"));
+        users.stallReads(true);
+
+        long start = System.nanoTime();
+        assertThat(validate("stall-ada", "secret"), is(503));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(2000L));
+    }
+
+    @Test
+    void testStalledReadFallsBackToVerifiedCredentials() {
+        users.save(new UserRegistration("stall-grace", "grace@example.com", null, "secret"));
+        assertThat(validate("stall-grace", "secret"), is(200));
+        userCache.invalidate("stall-grace");
+        users.stallReads(true);
+
+        long start = System.nanoTime();
+        assertThat(validate("stall-grace", "secret"), is(200));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(2000L));
+    }
+
+    private int validate(String alias, String identifier) {
+        Response response = target.path("api/user/validate")
+                .queryParam("alias", alias)
+                .queryParam("identifier", identifier)
+                .request(MediaType.APPLICATION_JSON)
+                // the read stalls rather than fails, so only the deadline ends it
+                .header(DeadlinePolicy.HEADER, "500")
+                .get();
+        response.close();
+        return response.getStatus();
+    }
+}
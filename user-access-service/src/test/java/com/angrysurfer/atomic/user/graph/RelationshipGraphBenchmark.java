@@ -0,0 +1,104 @@
+package com.angrysurfer.atomic.user.graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mutual-friend counts for 100k users with 100 friends each, in the graph and in
+ * a {@code HashSet<String>} per user. Memory per friendship for both is reported
+ * on setup: the sets as measured on the heap, the graph as what its arrays hold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RelationshipGraphBenchmark {
+
+    private static final int USERS = 100_000;
+
+    private static final int FRIENDS_PER_USER = 100;
+
+    private static final int QUERIES = 256;
+
+    private Map<String, Set<String>> sets;
+
+    private RelationshipGraph graph;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long[][] edges = new long[USERS][FRIENDS_PER_USER / 2];
+        for (int u = 0; u < USERS; u++) {
+            for (int f = 0; f < edges[u].length; f++) {
+                long friend;
+                do {
+                    friend = random.nextInt(USERS);
+                } while (friend == u);
+                edges[u][f] = friend;
+            }
+        }
+        long friendships = (long) USERS * (FRIENDS_PER_USER / 2);
+
+        long baseline = BenchmarkSupport.usedHeap();
+        sets = new HashMap<>();
+        for (int u = 0; u < USERS; u++) {
+            for (long friend : edges[u]) {
+                sets.computeIfAbsent(String.valueOf(u), k -> new HashSet<>()).add(String.valueOf(friend));
+                sets.computeIfAbsent(String.valueOf(friend), k -> new HashSet<>()).add(String.valueOf(u));
+            }
+        }
+        long setBytes = BenchmarkSupport.usedHeap() - baseline;
+
+        graph = new RelationshipGraph(USERS);
+        for (int u = 0; u < USERS; u++) {
+            for (long friend : edges[u]) {
+                graph.appendFriendship(u, friend);
+            }
+        }
+        graph.seal();
+        BenchmarkSupport.report("HashSet<String>: " + setBytes / friendships + " bytes/friendship; "
+                + "RelationshipGraph: " + graph.reservedBytes() / friendships + " bytes/friendship");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public long hashSets() {
+        long matches = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            Set<String> common = new HashSet<>(sets.get(String.valueOf(q)));
+            common.retainAll(sets.get(String.valueOf(q * 7919 % USERS)));
+            matches += common.size();
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public long relationshipGraph() {
+        long matches = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            matches += graph.mutualFriendCount(q, q * 7919L % USERS);
+        }
+        return matches;
+    }
+}
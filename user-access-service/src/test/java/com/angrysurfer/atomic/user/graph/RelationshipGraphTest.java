@@ -0,0 +1,94 @@
+package com.angrysurfer.atomic.user.graph;
+
+import com.angrysurfer.atomic.user.graph.RelationshipGraph.Adjacency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RelationshipGraphTest {
+
+    @Test
+    void testFollowIsDirectedAndCounted() {
+        RelationshipGraph graph = new RelationshipGraph(16);
+
+        assertThat(graph.follow(1, 2), is(true));
+        assertThat(graph.follow(1, 2), is(false));
+        graph.follow(3, 2);
+
+        assertThat(graph.count(2, Adjacency.FOLLOWERS), is(2));
+        assertThat(graph.count(2, Adjacency.FOLLOWING), is(0));
+        assertThat(graph.neighbors(1, Adjacency.FOLLOWING, 0, 10), is(new long[] {2}));
+
+        assertThat(graph.unfollow(1, 2), is(true));
+        assertThat(graph.neighbors(2, Adjacency.FOLLOWERS, 0, 10), is(new long[] {3}));
+        assertThrows(IllegalArgumentException.class, () -> graph.follow(4, 4));
+    }
+
+    @Test
+    void testPagesFollowFirstSeenOrder() {
+        RelationshipGraph graph = new RelationshipGraph(16);
+        for (long id = 100; id > 90; id--) {
+            graph.follow(id, 1);
+        }
+
+        assertThat(graph.neighbors(1, Adjacency.FOLLOWERS, 0, 3), is(new long[] {100, 99, 98}));
+        assertThat(graph.neighbors(1, Adjacency.FOLLOWERS, 9, 3), is(new long[] {91}));
+        assertThat(graph.neighbors(1, Adjacency.FOLLOWERS, 20, 3).length, is(0));
+        assertThat(graph.neighbors(42, Adjacency.FOLLOWERS, 0, 3).length, is(0));
+    }
+
+    @Test
+    void testMutualFriendsAndRemoveUser() {
+        RelationshipGraph graph = new RelationshipGraph(16);
+        for (long friend : new long[] {10, 11, 12, 13}) {
+            graph.befriend(1, friend);
+        }
+        for (long friend : new long[] {11, 13, 14}) {
+            graph.befriend(friend, 2);
+        }
+
+        assertThat(graph.count(11, Adjacency.FRIENDS), is(2));
+        assertThat(graph.mutualFriends(1, 2, 10), is(new long[] {11, 13}));
+        assertThat(graph.mutualFriends(1, 2, 1), is(new long[] {11}));
+        assertThat(graph.mutualFriendCount(1, 2), is(2));
+
+        graph.removeUser(13);
+        assertThat(graph.mutualFriends(1, 2, 10), is(new long[] {11}));
+        assertThat(graph.count(1, Adjacency.FRIENDS), is(3));
+    }
+
+    @Test
+    void testBulkLoadSortsAndDeduplicates() {
+        RelationshipGraph graph = new RelationshipGraph(4);
+        graph.appendFollow(1, 3);
+        graph.appendFollow(1, 2);
+        graph.appendFollow(1, 3);
+        graph.appendFriendship(2, 3);
+        graph.seal();
+
+        assertThat(graph.neighbors(1, Adjacency.FOLLOWING, 0, 10), is(new long[] {3, 2}));
+        assertThat(graph.count(3, Adjacency.FOLLOWERS), is(1));
+        assertThat(graph.neighbors(3, Adjacency.FRIENDS, 0, 10), is(new long[] {2}));
+
+        graph.follow(1, 4);
+        assertThat(graph.count(1, Adjacency.FOLLOWING), is(3));
+    }
+
+    @Test
+    void testIntersectMergesAndProbes() {
+        int[] small = {3, 50, 99, 4000};
+        int[] large = new int[1000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = i * 2;
+        }
+        int[] out = new int[4];
+
+        // the size ratio picks the binary-search path
+        assertThat(RelationshipGraph.intersect(small, small.length, large, large.length, out), is(1));
+        assertThat(out[0], is(50));
+        assertThat(RelationshipGraph.intersect(large, 10, large, 20, null), is(10));
+    }
+}
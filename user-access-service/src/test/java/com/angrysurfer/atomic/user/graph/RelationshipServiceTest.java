@@ -0,0 +1,203 @@
+package com.angrysurfer.atomic.user.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import com.angrysurfer.atomic.user.cache.UserIdIndex;
+import com.angrysurfer.atomic.user.graph.RelationshipGraph.Adjacency;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.RelationshipRepository;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Relationship writes against an in-memory atomic.relationships, with users 1 to
+ * 9 known to the id index.
+ */
+class RelationshipServiceTest {
+
+    private final EdgeRepository edges = new EdgeRepository();
+    private RelationshipService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RelationshipService();
+        service.graphEnabled = true;
+        service.expectedUsers = 16;
+        service.loadBatchSize = 100;
+        service.maxLimit = 100;
+        service.relationshipRepository = edges;
+        service.userIdIndex = new KnownUsers();
+        // standalone server: load once without a change stream
+        service.changeStreamEnabled = false;
+        service.running = true;
+        service.run();
+    }
+
+    @Test
+    void testFriendshipNeedsBothUsersToAsk() {
+        assertThat(service.befriend(1, 2), is(false));
+        assertThat(service.page(1, Adjacency.FRIENDS, 0, 10).getIds(), is(new long[0]));
+        assertThat(service.friendRequests(2, 0, 10).getIds(), is(new long[] {1}));
+        assertThat(service.friendRequests(1, 0, 10).getTotal(), is(0));
+
+        assertThat(service.befriend(2, 1), is(true));
+        assertThat(service.page(1, Adjacency.FRIENDS, 0, 10).getIds(), is(new long[] {2}));
+        assertThat(service.page(2, Adjacency.FRIENDS, 0, 10).getIds(), is(new long[] {1}));
+        assertThat(service.friendRequests(2, 0, 10).getTotal(), is(0));
+
+        service.befriend(3, 1);
+        service.unfriend(1, 3);
+        assertThat(service.friendRequests(1, 0, 10).getTotal(), is(0));
+    }
+
+    @Test
+    void testUnknownUsersAreRefused() {
+        assertThrows(NoSuchElementException.class, () -> service.follow(1, 42));
+        assertThrows(NoSuchElementException.class, () -> service.befriend(42, 1));
+
+        assertThat(edges.edges, is(empty()));
+    }
+
+    @Test
+    void testDeletedUserIsPruned() {
+        service.follow(1, 2);
+        service.follow(2, 3);
+        service.befriend(2, 4);
+        service.befriend(4, 2);
+        service.befriend(2, 5);
+
+        service.onUserChange(UserChangeEvent.delete("65a1f0c2e4b0a1b2c3d4e5f8", 2L));
+
+        assertThat(service.page(1, Adjacency.FOLLOWING, 0, 10).getTotal(), is(0));
+        assertThat(service.page(3, Adjacency.FOLLOWERS, 0, 10).getTotal(), is(0));
+        assertThat(service.page(4, Adjacency.FRIENDS, 0, 10).getTotal(), is(0));
+        assertThat(edges.edges, is(empty()));
+    }
+
+    @Test
+    void testChangesFromOtherReplicasAreApplied() {
+        Document follow = edge(RelationshipRepository.FOLLOW, 3, 1);
+
+        assertThat(service.apply(change("insert", follow, null)), is(true));
+        assertThat(service.page(1, Adjacency.FOLLOWERS, 0, 10).getIds(), is(new long[] {3}));
+
+        assertThat(service.apply(change("insert", edge(RelationshipRepository.REQUEST, 4, 1), null)), is(true));
+        assertThat(service.page(1, Adjacency.FRIENDS, 0, 10).getTotal(), is(0));
+
+        assertThat(service.apply(change("delete", null, follow)), is(true));
+        assertThat(service.page(1, Adjacency.FOLLOWERS, 0, 10).getTotal(), is(0));
+
+        // without a pre-image the deleted edge is unknown: the graph must be rescanned
+        assertThat(service.apply(change("delete", null, null)), is(false));
+        assertThat(service.apply(change("invalidate", null, null)), is(false));
+    }
+
+    @Test
+    void testUnexpectedFailureIsRetried() {
+        edges.add(RelationshipRepository.FOLLOW, 2, 1);
+        edges.failures = 1;
+        service.initialBackoffMillis = 1;
+
+        service.run();
+
+        assertThat(service.running, is(true));
+        assertThat(service.page(1, Adjacency.FOLLOWERS, 0, 10).getIds(), is(new long[] {2}));
+    }
+
+    private static Document edge(String type, long from, long to) {
+        return new Document("type", type).append("from", from).append("to", to);
+    }
+
+    private static ChangeStreamDocument<Document> change(String operation, Document fullDocument,
+            Document beforeChange) {
+        return new ChangeStreamDocument<>(operation, null, null, null, fullDocument, beforeChange, null,
+                null, null, null, null, null, null);
+    }
+
+    private static final class KnownUsers extends UserIdIndex {
+
+        @Override
+        public Optional<UserRegistration> findById(long id) {
+            if (id < 1 || id > 9) {
+                return Optional.empty();
+            }
+            UserRegistration user = new UserRegistration("user-" + id, null, null);
+            user.setId(id);
+            return Optional.of(user);
+        }
+    }
+
+    private static final class EdgeRepository extends RelationshipRepository {
+
+        private record Edge(String type, long from, long to) {
+
+            static Edge of(String type, long from, long to) {
+                return FRIEND.equals(type) && from > to ? new Edge(type, to, from) : new Edge(type, from, to);
+            }
+        }
+
+        final List<Edge> edges = new ArrayList<>();
+
+        int failures;
+
+        @Override
+        public void ensureIndexes() {
+        }
+
+        @Override
+        public void add(String type, long from, long to) {
+            if (!exists(type, from, to)) {
+                edges.add(Edge.of(type, from, to));
+            }
+        }
+
+        @Override
+        public boolean remove(String type, long from, long to) {
+            return edges.remove(Edge.of(type, from, to));
+        }
+
+        @Override
+        public boolean exists(String type, long from, long to) {
+            return edges.contains(Edge.of(type, from, to));
+        }
+
+        @Override
+        public long removeUser(long id) {
+            int before = edges.size();
+            edges.removeIf(edge -> edge.from == id || edge.to == id);
+            return before - edges.size();
+        }
+
+        @Override
+        public long[] requestsTo(long id, int skip, int limit) {
+            return edges.stream().filter(edge -> REQUEST.equals(edge.type) && edge.to == id)
+                    .skip(skip).limit(limit).mapToLong(Edge::from).toArray();
+        }
+
+        @Override
+        public int countRequestsTo(long id) {
+            return requestsTo(id, 0, Integer.MAX_VALUE).length;
+        }
+
+        @Override
+        public void forEachEdge(int batchSize, EdgeConsumer action) {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Unexpected edge document");
+            }
+            edges.forEach(edge -> action.accept(edge.type, edge.from, edge.to));
+        }
+    }
+}
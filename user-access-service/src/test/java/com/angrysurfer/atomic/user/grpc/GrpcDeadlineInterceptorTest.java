@@ -0,0 +1,89 @@
+package com.angrysurfer.atomic.user.grpc;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.deadline.DeadlinePolicy;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class GrpcDeadlineInterceptorTest {
+
+    @Test
+    void testTimeoutHeaderBoundsTheCall() {
+        Metadata headers = new Metadata();
+        headers.put(GrpcDeadlineInterceptor.TIMEOUT, "500m");
+
+        long remaining = remainingMillisSeenBy(headers);
+
+        assertThat(remaining > 0 && remaining <= 500, is(true));
+    }
+
+    @Test
+    void testCallerContextDeadlineWinsOverTheHeader() throws Exception {
+        Metadata headers = new Metadata();
+        headers.put(GrpcDeadlineInterceptor.TIMEOUT, "5S");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            long remaining = Context.current().withDeadlineAfter(200, TimeUnit.MILLISECONDS, scheduler)
+                    .call(() -> remainingMillisSeenBy(headers));
+
+            assertThat(remaining > 0 && remaining <= 200, is(true));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void testNoTimeoutGetsThePolicyDefault() {
+        long remaining = remainingMillisSeenBy(new Metadata());
+
+        assertThat(remaining > 500 && remaining <= 3000, is(true));
+    }
+
+    @Test
+    void testTimeoutValuesAreDecoded() {
+        assertThat(GrpcDeadlineInterceptor.parseTimeout("250m"), is(Duration.ofMillis(250)));
+        assertThat(GrpcDeadlineInterceptor.parseTimeout("2S"), is(Duration.ofSeconds(2)));
+        assertThat(GrpcDeadlineInterceptor.parseTimeout("1500000u"), is(Duration.ofMillis(1500)));
+        assertThat(GrpcDeadlineInterceptor.parseTimeout("123456789m"), is(nullValue()));
+        assertThat(GrpcDeadlineInterceptor.parseTimeout("10x"), is(nullValue()));
+        assertThat(GrpcDeadlineInterceptor.parseTimeout("grpc-timeout"), is(nullValue()));
+    }
+
+    /**
+     * Run a unary call through the interceptor and report the time its service
+     * method had left.
+     */
+    private static long remainingMillisSeenBy(Metadata headers) {
+        DeadlinePolicy policy = new DeadlinePolicy() {
+            @Override
+            public Deadline forTimeout(Duration requested) {
+                return Deadline.after(requested != null ? requested : Duration.ofSeconds(3));
+            }
+        };
+        AtomicReference<Deadline> seen = new AtomicReference<>();
+        ServerCall.Listener<String> listener = new GrpcDeadlineInterceptor(policy).interceptCall(null, headers,
+                (call, metadata) -> new ServerCall.Listener<String>() {
+                    @Override
+                    public void onHalfClose() {
+                        seen.set(Deadline.current().orElse(null));
+                    }
+                });
+        listener.onHalfClose();
+        assertThat(Deadline.current().isPresent(), is(false));
+        return seen.get().remainingMillis();
+    }
+}
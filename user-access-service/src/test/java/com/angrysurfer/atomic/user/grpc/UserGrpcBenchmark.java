@@ -0,0 +1,100 @@
+package com.angrysurfer.atomic.user.grpc;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import io.helidon.common.socket.SocketOptions;
+import io.helidon.common.tls.Tls;
+import io.helidon.webclient.grpc.GrpcClient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validations of a resident user through the REST resource and the gRPC service,
+ * one call at a time on each of eight threads, every thread sharing one client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class UserGrpcBenchmark {
+
+    private static final String ALIAS = "grpc-ada";
+
+    private static final String IDENTIFIER = "secret";
+
+    private BenchmarkSupport.RunningService service;
+
+    private HttpClient http;
+
+    private HttpRequest restRequest;
+
+    private UserAccessGrpc.UserAccessBlockingStub blocking;
+
+    private ValidateRequest grpcRequest;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkSupport.start(Map.of());
+        UserRegistration ada = new UserRegistration(ALIAS, "ada@example.com", null, IDENTIFIER);
+        ada.setId(42L);
+        service.bean(UserRegistrationCache.class).put(ada.withoutSecrets());
+
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        restRequest = HttpRequest.newBuilder(service.uri("api/user/validate?alias=" + ALIAS + "&identifier=" + IDENTIFIER))
+                .build();
+        // the server speaks plaintext HTTP/2 (h2c); the gRPC client assumes TLS unless told otherwise
+        GrpcClient client = GrpcClient.builder()
+                .baseUri(service.uri(""))
+                .tls(Tls.builder().enabled(false).build())
+                .socketOptions(SocketOptions.builder().tcpNoDelay(true).build())
+                .build();
+        blocking = UserAccessGrpc.newBlockingStub(client.channel());
+        grpcRequest = ValidateRequest.newBuilder().setAlias(ALIAS).setIdentifier(IDENTIFIER).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public int rest() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = http.send(restRequest, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("REST validate answered " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    @Benchmark
+    public ValidateReply grpc() {
+        ValidateReply reply = blocking.validateUser(grpcRequest);
+        if (!reply.getValid()) {
+            throw new IllegalStateException("gRPC validate rejected the user");
+        }
+        return reply;
+    }
+}
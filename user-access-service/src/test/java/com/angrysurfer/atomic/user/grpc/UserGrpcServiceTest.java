@@ -0,0 +1,180 @@
+package com.angrysurfer.atomic.user.grpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+import com.angrysurfer.atomic.user.degraded.MongoUnavailableException;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.helidon.common.socket.SocketOptions;
+import io.helidon.common.tls.Tls;
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import io.helidon.webclient.grpc.GrpcClient;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.WebTarget;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.isEmptyString;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Talks to the gRPC endpoint over the test server's port, with in-memory users
+ * standing in for Mongo. The validated user is made resident in the cache first.
+ */
+@HelidonTest
+@AddBean(InMemoryUserRepository.class)
+@AddConfig(key = "user.degraded.enabled", value = "false")
+class UserGrpcServiceTest {
+
+    private static final String ALIAS = "grpc-ada";
+
+    private static final String IDENTIFIER = "secret";
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @Inject
+    private InMemoryUserRepository users;
+
+    private UserAccessGrpc.UserAccessBlockingStub blocking;
+
+    private UserAccessGrpc.UserAccessStub async;
+
+    @BeforeEach
+    void setUp() {
+        UserRegistration ada = new UserRegistration(ALIAS, "ada@example.com", null, IDENTIFIER);
+        ada.setId(42L);
+        userCache.put(ada.withoutSecrets());
+
+        // the test server speaks plaintext HTTP/2 (h2c); the gRPC client assumes TLS unless told otherwise
+        GrpcClient client = GrpcClient.builder()
+                .baseUri(target.getUri())
+                .tls(Tls.builder().enabled(false).build())
+                .socketOptions(SocketOptions.builder().tcpNoDelay(true).build())
+                .build();
+        blocking = UserAccessGrpc.newBlockingStub(client.channel());
+        async = UserAccessGrpc.newStub(client.channel());
+    }
+
+    @Test
+    void testValidateUser() {
+        ValidateReply reply = blocking.validateUser(request(ALIAS));
+
+        assertThat(reply.getValid(), is(true));
+        assertThat(reply.getUser().getId(), is(42L));
+        assertThat(reply.getUser().getAlias(), is(ALIAS));
+        assertThat(reply.getToken(), not(isEmptyString()));
+    }
+
+    @Test
+    void testValidateUsersStream() throws InterruptedException {
+        List<ValidateReply> replies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        StreamObserver<ValidateRequest> requests = async.validateUsers(new StreamObserver<>() {
+            @Override
+            public void onNext(ValidateReply reply) {
+                replies.add(reply);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error.set(t);
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            requests.onNext(request(ALIAS));
+        }
+        requests.onCompleted();
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(error.get() == null, is(true));
+        assertThat(replies.size(), is(10));
+        assertThat(replies.stream().allMatch(ValidateReply::getValid), is(true));
+    }
+
+    @Test
+    void testGetUserById() {
+        UserRegistration grace = new UserRegistration("grpc-grace", "grace@example.com", null, IDENTIFIER);
+        grace.setId(43L);
+        users.save(grace);
+
+        UserReply reply = blocking.getUserById(UserByIdRequest.newBuilder().setId(43L).build());
+        assertThat(reply.getFound(), is(true));
+        assertThat(reply.getUser().getId(), is(43L));
+        assertThat(reply.getUser().getAlias(), is("grpc-grace"));
+        assertThat(reply.getUser().getEmail(), is("grace@example.com"));
+
+        assertThat(blocking.getUserById(UserByIdRequest.newBuilder().setId(4_343L).build()).getFound(), is(false));
+    }
+
+    @Test
+    void testLookupsRunUnderTheCallDeadline() {
+        blocking.getUserById(UserByIdRequest.newBuilder().setId(4_344L).build());
+
+        long remaining = users.lastDeadline().orElseThrow().remainingMillis();
+        assertThat(remaining > 0 && remaining <= 3000, is(true));
+    }
+
+    @Test
+    void testFailuresMapToRetryableOrInternalStatus() {
+        assertThat(statusOf(new MongoUnavailableException("down")), is(Status.Code.UNAVAILABLE));
+        assertThat(statusOf(new DeadlineExceededException("late")), is(Status.Code.DEADLINE_EXCEEDED));
+        assertThat(statusOf(new IllegalStateException("bug")), is(Status.Code.INTERNAL));
+    }
+
+    private static Status.Code statusOf(RuntimeException failure) {
+        UserGrpcService service = new UserGrpcService(new UserAccessService() {
+            @Override
+            public UserRegistrationDTO getUserById(long id) {
+                throw failure;
+            }
+        });
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        service.getUserById(UserByIdRequest.newBuilder().setId(1L).build(), new StreamObserver<>() {
+            @Override
+            public void onNext(UserReply reply) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error.set(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+        return Status.fromThrowable(error.get()).getCode();
+    }
+
+    private static ValidateRequest request(String alias) {
+        return ValidateRequest.newBuilder().setAlias(alias).setIdentifier(IDENTIFIER).build();
+    }
+}
@@ -0,0 +1,245 @@
+package com.angrysurfer.atomic.user.lifecycle;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.angrysurfer.atomic.helidon.registration.ServiceRegistryRegistrationService;
+import com.angrysurfer.atomic.user.service.RegistryClientService;
+
+import io.helidon.webserver.WebServer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Replaces every instance of a small pool one at a time while clients keep calling
+ * whichever instances the "registry" lists, once by stopping each server outright
+ * and once by running {@link GracefulShutdown#beforeServerStop} first: deregister,
+ * wait for that to propagate, drain in-flight requests, then stop.
+ */
+class RollingRestartTest {
+
+    private static final Logger LOGGER = Logger.getLogger(RollingRestartTest.class.getName());
+
+    private static final int INSTANCES = 3;
+
+    private static final int CLIENTS = 8;
+
+    private static final Duration REQUEST_TIME = Duration.ofMillis(20);
+
+    private static final Duration PROPAGATION_DELAY = Duration.ofMillis(250);
+
+    @Test
+    void testGracefulRestartDropsNoRequests() throws Exception {
+        Result abrupt = rollingRestart(false);
+        Result graceful = rollingRestart(true);
+
+        LOGGER.info("Rolling restart, abrupt: " + abrupt + "; graceful: " + graceful);
+        assertThat(graceful.requests, greaterThan(0L));
+        assertThat(graceful.errors, is(0L));
+    }
+
+    @Test
+    void testShutdownIsBoundedWhenTheRegistryHangs() {
+        CountDownLatch never = new CountDownLatch(1);
+        GracefulShutdown shutdown = gracefulShutdown(never::await);
+        shutdown.deregisterTimeoutMillis = 1000;
+        shutdown.propagationDelayMillis = 1000;
+        shutdown.shutdownTimeoutMillis = 1500;
+
+        long start = System.nanoTime();
+        shutdown.beforeServerStop(null);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(shutdown.isDraining(), is(true));
+        assertThat(elapsed, greaterThanOrEqualTo(1400L));
+        assertThat(elapsed, lessThan(3000L));
+    }
+
+    @Test
+    void testProbesAreNotCountedAsInFlight() throws Exception {
+        InFlightRequests inFlight = new InFlightRequests();
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        WebServer server = WebServer.builder()
+                .port(0)
+                .routing(routing -> routing
+                        .addFilter(inFlight)
+                        .get("/health/ready", (req, res) -> {
+                            entered.countDown();
+                            release.await();
+                            res.send("UP");
+                        })
+                        .get("/api/user/validate", (req, res) -> {
+                            entered.countDown();
+                            release.await();
+                            res.send("ok");
+                        }))
+                .build()
+                .start();
+        HttpClient client = HttpClient.newHttpClient();
+        try {
+            URI base = URI.create("http://localhost:" + server.port());
+            CompletableFuture<HttpResponse<Void>> probe = client.sendAsync(
+                    HttpRequest.newBuilder(base.resolve("/health/ready")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            CompletableFuture<HttpResponse<Void>> call = client.sendAsync(
+                    HttpRequest.newBuilder(base.resolve("/api/user/validate")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+
+            assertThat(entered.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(inFlight.count(), is(1));
+            release.countDown();
+            probe.get(5, TimeUnit.SECONDS);
+            call.get(5, TimeUnit.SECONDS);
+            assertThat(inFlight.awaitIdle(Duration.ofSeconds(5)), is(true));
+        } finally {
+            release.countDown();
+            server.stop();
+        }
+        assertThat(InFlightRequests.isProbe("/metrics"), is(true));
+        assertThat(InFlightRequests.isProbe("/healthy"), is(false));
+    }
+
+    private static Result rollingRestart(boolean graceful) throws Exception {
+        List<Instance> instances = new ArrayList<>();
+        List<URI> registry = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            Instance instance = Instance.start(registry);
+            instances.add(instance);
+            registry.add(instance.uri);
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong requests = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        for (int c = 0; c < CLIENTS; c++) {
+            pool.submit(() -> {
+                while (running.get()) {
+                    List<URI> live = List.copyOf(registry);
+                    URI target = live.get(Math.floorMod(next.getAndIncrement(), live.size()));
+                    requests.incrementAndGet();
+                    try {
+                        HttpResponse<String> response = client.send(
+                                HttpRequest.newBuilder(target.resolve("/api/user/validate"))
+                                        .timeout(Duration.ofSeconds(2))
+                                        .build(),
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(300);
+            for (int i = 0; i < INSTANCES; i++) {
+                Instance old = instances.get(i);
+                if (graceful) {
+                    old.shutdown.beforeServerStop(null);
+                    old.server.stop();
+                } else {
+                    old.server.stop();
+                    registry.remove(old.uri);
+                }
+                Instance replacement = Instance.start(registry);
+                instances.set(i, replacement);
+                registry.add(replacement.uri);
+                TimeUnit.MILLISECONDS.sleep(300);
+            }
+        } finally {
+            running.set(false);
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+            instances.forEach(instance -> instance.server.stop());
+        }
+        return new Result(requests.get(), errors.get());
+    }
+
+    private record Result(long requests, long errors) {
+
+        @Override
+        public String toString() {
+            return errors + "/" + requests + " failed (" + String.format("%.2f", 100.0 * errors / requests) + "%)";
+        }
+    }
+
+    /**
+     * The real shutdown sequence with the registries replaced by the given
+     * deregistration and short waits.
+     */
+    private static GracefulShutdown gracefulShutdown(Deregistration deregister) {
+        GracefulShutdown shutdown = new GracefulShutdown();
+        shutdown.propagationDelayMillis = PROPAGATION_DELAY.toMillis();
+        shutdown.drainTimeoutMillis = 5000;
+        shutdown.deregisterTimeoutMillis = 1000;
+        shutdown.shutdownTimeoutMillis = 10_000;
+        shutdown.registrationService = new ServiceRegistryRegistrationService() {
+            @Override
+            public void deregister() {
+                try {
+                    deregister.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        shutdown.registryClient = new RegistryClientService() {
+            @Override
+            public void deregister() {
+            }
+        };
+        return shutdown;
+    }
+
+    private interface Deregistration {
+        void run() throws InterruptedException;
+    }
+
+    private record Instance(WebServer server, GracefulShutdown shutdown, URI uri) {
+
+        static Instance start(List<URI> registry) {
+            URI[] uri = new URI[1];
+            GracefulShutdown shutdown = gracefulShutdown(() -> registry.remove(uri[0]));
+            WebServer server = WebServer.builder()
+                    .port(0)
+                    .routing(routing -> routing
+                            .addFilter(shutdown.inFlight)
+                            .get("/api/user/validate", (req, res) -> {
+                                TimeUnit.MILLISECONDS.sleep(REQUEST_TIME.toMillis());
+                                res.send("ok");
+                            }))
+                    .build()
+                    .start();
+            uri[0] = URI.create("http://localhost:" + server.port());
+            return new Instance(server, shutdown, uri[0]);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.angrysurfer.atomic.user.lockout;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Sketch behaviour in isolation, plus validation through the service with a low
+ * alias threshold against in-memory users, which stand in for Mongo.
+ */
+@HelidonTest
+@AddBean(InMemoryUserRepository.class)
+@AddConfig(key = "user.degraded.enabled", value = "false")
+@AddConfig(key = "user.lockout.alias-threshold", value = "3")
+class LoginLockoutTest {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(15);
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private LoginLockout loginLockout;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @Inject
+    private InMemoryUserRepository users;
+
+    @Test
+    void testEstimatesSlideOutOfWindow() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1024, 6, WINDOW, 42);
+        long bucket = WINDOW / 6;
+        // start on a sub-window boundary so the window covers exactly six of them
+        long start = 10_000 * bucket;
+        for (int i = 0; i < 5; i++) {
+            assertThat(sketch.add("ada", start + i), is(i + 1));
+        }
+        sketch.add("ada", start + 3 * bucket);
+
+        assertThat(sketch.estimate("ada", start + WINDOW - 1), is(6));
+        assertThat(sketch.estimate("grace", start + WINDOW - 1), is(0));
+        // the first five have aged out one window on; the later one has not
+        assertThat(sketch.estimate("ada", start + WINDOW + bucket), is(1));
+        assertThat(sketch.estimate("ada", start + 4 * WINDOW), is(0));
+        assertThat(sketch.add("ada", start + 4 * WINDOW), is(1));
+    }
+
+    @Test
+    void testManyDistinctKeysNeitherUndercountNorLockOutOthers() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 4096, 6, WINDOW, 7);
+        long now = 5_000_000_000L;
+        for (int i = 0; i < 20_000; i++) {
+            sketch.add("attacker-" + i, now);
+        }
+        for (int i = 0; i < 10; i++) {
+            sketch.add("target", now);
+        }
+
+        assertThat(sketch.estimate("target", now) >= 10, is(true));
+        for (int i = 0; i < 20_000; i += 97) {
+            assertThat(sketch.estimate("attacker-" + i, now) >= 1, is(true));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertThat(sketch.estimate("bystander-" + i, now), lessThan(10));
+        }
+    }
+
+    @Test
+    void testForgetClearsOnlyThatKey() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(4, 1024, 6, WINDOW, 42);
+        long start = 10_000 * (WINDOW / 6);
+        for (int i = 0; i < 4; i++) {
+            sketch.add("ada", start + i * (WINDOW / 6));
+            sketch.add("grace", start);
+        }
+
+        sketch.forget("ada", start + WINDOW - 1);
+
+        assertThat(sketch.estimate("ada", start + WINDOW - 1), is(0));
+        assertThat(sketch.estimate("grace", start + WINDOW - 1), is(4));
+        assertThat(sketch.add("ada", start + WINDOW - 1), is(1));
+    }
+
+    @Test
+    void testSourceThresholdCoversEveryAlias() {
+        LoginLockout lockout = new LoginLockout();
+        lockout.enabled = true;
+        lockout.windowSeconds = 900;
+        lockout.aliasThreshold = 1000;
+        lockout.sourceThreshold = 5;
+        lockout.lockSeconds = 900;
+        lockout.sketchWidth = 1024;
+        lockout.init();
+        for (int i = 0; i < 5; i++) {
+            assertThat(lockout.isBlocked("user-" + i, "10.0.0.9"), is(false));
+            lockout.recordFailure("user-" + i, "10.0.0.9");
+        }
+        assertThat(lockout.isBlocked("someone-else", "10.0.0.9"), is(true));
+        assertThat(lockout.isBlocked("someone-else", "10.0.0.10"), is(false));
+        assertThat(lockout.isBlocked("someone-else", null), is(false));
+        assertThat(lockout.blocked(), is(1L));
+    }
+
+    @Test
+    void testSourceThresholdIsOffByDefault() {
+        for (int i = 0; i < 200; i++) {
+            loginLockout.recordFailure("source-" + i, "10.0.0.9");
+        }
+        assertThat(loginLockout.isBlocked("someone-else", "10.0.0.9"), is(false));
+    }
+
+    @Test
+    void testBlockedAliasIsRefusedBeforeLookup() {
+        users.save(new UserRegistration("lockout-grace", "grace@example.com", null, "secret"));
+        assertThat(validate("lockout-grace", "secret"), is(200));
+
+        for (int i = 0; i < 3; i++) {
+            loginLockout.recordFailure("lockout-grace", null);
+        }
+        long blocked = loginLockout.blocked();
+        // the right password would be accepted, so the refusal comes before any lookup
+        assertThat(validate("lockout-grace", "secret"), is(401));
+        assertThat(loginLockout.blocked(), is(blocked + 1));
+    }
+
+    @Test
+    void testSuccessfulLoginClearsEarlierFailures() {
+        users.save(new UserRegistration("lockout-lin", "lin@example.com", null, "secret"));
+        for (int round = 0; round < 3; round++) {
+            assertThat(validate("lockout-lin", "typo"), is(401));
+            assertThat(validate("lockout-lin", "typo"), is(401));
+            assertThat(validate("lockout-lin", "secret"), is(200));
+        }
+        assertThat(users.stored("lockout-lin").orElseThrow().getLockedUntil(), is(0L));
+    }
+
+    @Test
+    void testSavingAStaleCopyKeepsTheLock() {
+        UserRegistration bob = users.save(new UserRegistration("lockout-bob", "bob@example.com", null, "secret"));
+        UserRegistration stale = users.stored("lockout-bob").orElseThrow();
+        long lockedUntil = System.currentTimeMillis() + 60_000;
+        users.lockUntil(bob, lockedUntil);
+
+        stale.setEmail("bob@example.org");
+        users.save(stale);
+        users.upsertAllByAlias(List.of(new UserRegistration("lockout-bob", "bob@example.net", null)));
+
+        assertThat(users.stored("lockout-bob").orElseThrow().getLockedUntil(), is(lockedUntil));
+        assertThat(validate("lockout-bob", "secret"), is(401));
+    }
+
+    @Test
+    void testPersistedLockRefusesCorrectPassword() {
+        UserRegistration ada = new UserRegistration("lockout-ada", "ada@example.com", null, "secret");
+        ada.setId(21L);
+        UserRegistration resident = ada.withoutSecrets();
+        userCache.put(resident);
+        assertThat(validate("lockout-ada", "secret"), is(200));
+
+        resident.setLockedUntil(System.currentTimeMillis() + 60_000);
+        assertThat(validate("lockout-ada", "secret"), is(401));
+        resident.setLockedUntil(System.currentTimeMillis() - 1);
+        assertThat(validate("lockout-ada", "secret"), is(200));
+    }
+
+    private int validate(String alias, String identifier) {
+        Response response = target.path("api/user/validate")
+                .queryParam("alias", alias)
+                .queryParam("identifier", identifier)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        response.close();
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,56 @@
+package com.angrysurfer.atomic.user.profile;
+
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Answering a profile read by serializing the user each time versus handing out
+ * the cached bytes after an ETag check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserProfileCacheBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private UserRegistration user;
+
+    private CachedProfile profile;
+
+    @Setup
+    public void setUp() {
+        user = new UserRegistration("ada", "ada@example.com", null, "s3cret");
+        user.setMongoId("65a1f0c2e4b0a1b2c3d4e5f6");
+        user.setId(42L);
+        user.setVersion(3);
+        profile = new UserProfileCache().render(user);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(UserProfile.of(user));
+    }
+
+    @Benchmark
+    public byte[] cachedBytes() {
+        return profile.matches("\"42-2\"") ? null : profile.getJson();
+    }
+}
@@ -0,0 +1,122 @@
+package com.angrysurfer.atomic.user.profile;
+
+import java.nio.charset.StandardCharsets;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Rendering and ETags in isolation, then conditional GETs over HTTP against
+ * in-memory users, which stand in for Mongo, so degraded mode stays off.
+ */
+@HelidonTest
+@AddBean(InMemoryUserRepository.class)
+@AddConfig(key = "user.degraded.enabled", value = "false")
+class UserProfileCacheTest {
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private InMemoryUserRepository users;
+
+    @Inject
+    private UserProfileCache profileCache;
+
+    @Test
+    void testRenderHasNoSecretsAndAVersionedEtag() {
+        UserProfileCache cache = new UserProfileCache();
+        CachedProfile profile = cache.render(ada(3));
+
+        String json = new String(profile.getJson(), StandardCharsets.UTF_8);
+        assertThat(json, containsString("\"alias\":\"ada\""));
+        assertThat(json, not(containsString("s3cret")));
+        assertThat(profile.getEtag(), is("\"42-3\""));
+        assertThat(cache.render(ada(4)).getEtag(), is("\"42-4\""));
+    }
+
+    @Test
+    void testIfNoneMatch() {
+        CachedProfile profile = new UserProfileCache().render(ada(3));
+
+        assertThat(profile.matches("\"42-3\""), is(true));
+        assertThat(profile.matches("\"1-1\", W/\"42-3\""), is(true));
+        assertThat(profile.matches("*"), is(true));
+        assertThat(profile.matches("\"42-2\""), is(false));
+        assertThat(profile.matches(null), is(false));
+    }
+
+    @Test
+    void testUnchangedProfileAnswers304UntilTheUserIsSaved() {
+        UserRegistration grace = new UserRegistration("profile-grace", "grace@example.com", null, "secret-grace");
+        grace.setId(77L);
+        users.save(grace);
+
+        Response first = profile(77, null);
+        String etag = first.getHeaderString(HttpHeaders.ETAG);
+        assertThat(first.getStatus(), is(200));
+        assertThat(etag, is("\"77-1\""));
+        assertThat(first.getHeaderString(HttpHeaders.CACHE_CONTROL), is("no-cache"));
+
+        Response unchanged = profile(77, etag);
+        assertThat(unchanged.getStatus(), is(304));
+        assertThat(unchanged.getHeaderString(HttpHeaders.ETAG), is(etag));
+
+        grace.setEmail("grace@example.org");
+        users.save(grace);
+        Response changed = profile(77, etag);
+        assertThat(changed.getStatus(), is(200));
+        assertThat(changed.getHeaderString(HttpHeaders.ETAG), is("\"77-2\""));
+        assertThat(changed.readEntity(String.class), containsString("grace@example.org"));
+    }
+
+    @Test
+    void testDeleteAndOlderVersionsLeaveNoStaleProfile() {
+        UserRegistration lin = new UserRegistration("profile-lin", "lin@example.com", null, "secret-lin");
+        lin.setId(78L);
+        users.save(lin);
+        users.save(lin);
+        assertThat(profileCache.find(78).orElseThrow().getEtag(), is("\"78-2\""));
+
+        UserRegistration older = users.stored("profile-lin").orElseThrow();
+        older.setVersion(1);
+        profileCache.onUserChange(UserChangeEvent.upsert(older));
+        assertThat(profileCache.find(78).orElseThrow().getEtag(), is("\"78-2\""));
+
+        int resident = profileCache.size();
+        profileCache.onUserChange(UserChangeEvent.delete(lin.getMongoId()));
+        assertThat(profileCache.size(), is(resident - 1));
+    }
+
+    private Response profile(long id, String ifNoneMatch) {
+        Response response = target.path("api/user/id/" + id + "/profile").request()
+                .header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+                .get();
+        response.bufferEntity();
+        return response;
+    }
+
+    private static UserRegistration ada(long version) {
+        UserRegistration user = new UserRegistration("ada", "ada@example.com", null, "s3cret");
+        user.setMongoId("65a1f0c2e4b0a1b2c3d4e5f6");
+        user.setId(42L);
+        user.setVersion(version);
+        return user;
+    }
+}
@@ -0,0 +1,82 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.mongodb.ReadPreference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read latency percentiles against a primary that answers in about a millisecond
+ * but stalls for 100 ms on one read in twenty, with and without hedging to a
+ * secondary that answers in about two. JMH's sample mode reports p50 to p99.9.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class HedgedReadsBenchmark {
+
+    private static final HedgedReads.Read<String> STALLING_PRIMARY = (preference, maxTimeMs) -> {
+        if (preference == ReadPreference.primary()) {
+            sleep(ThreadLocalRandom.current().nextInt(20) == 0 ? 100 : 1);
+        } else {
+            sleep(2);
+        }
+        return preference.getName();
+    };
+
+    @Param({"false", "true"})
+    boolean hedging;
+
+    private HedgedReads hedgedReads;
+
+    @Setup
+    public void setUp() {
+        hedgedReads = new HedgedReads();
+        hedgedReads.enabled = hedging;
+        hedgedReads.percentile = 0.95;
+        hedgedReads.initialDelayMs = 10;
+        hedgedReads.minDelayMs = 2;
+        hedgedReads.maxRatio = 0.1;
+        hedgedReads.burst = 10;
+        hedgedReads.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (hedging) {
+            BenchmarkSupport.report(String.format("Hedged reads: hedge rate %.3f, win rate %.3f",
+                    hedgedReads.hedgeRate(), hedgedReads.winRate()));
+        }
+        hedgedReads.close();
+    }
+
+    @Benchmark
+    public String read() {
+        return hedgedReads.read(STALLING_PRIMARY);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
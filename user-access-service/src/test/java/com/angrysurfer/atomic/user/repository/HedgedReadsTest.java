@@ -0,0 +1,202 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.deadline.DeadlineExceededException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SuppressWarnings("try")
+class HedgedReadsTest {
+
+    private HedgedReads hedgedReads;
+
+    @AfterEach
+    void tearDown() {
+        if (hedgedReads != null) {
+            hedgedReads.close();
+        }
+    }
+
+    @Test
+    void testDeadlineBecomesMaxTime() {
+        hedgedReads = hedgedReads(false, 0.05, 10);
+        AtomicLong maxTime = new AtomicLong(-1);
+        Read read = (preference, maxTimeMs) -> {
+            maxTime.set(maxTimeMs);
+            return preference.getName();
+        };
+
+        assertThat(hedgedReads.read(read), is("primary"));
+        assertThat(maxTime.get(), is(0L));
+
+        try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(500)).bind()) {
+            hedgedReads.read(read);
+        }
+        assertThat(maxTime.get(), greaterThan(400L));
+        assertThat(maxTime.get(), lessThanOrEqualTo(500L));
+        assertThat(Deadline.current().isPresent(), is(false));
+    }
+
+    @Test
+    void testServerTimeoutAndExpiredDeadlineFailFast() {
+        hedgedReads = hedgedReads(false, 0.05, 10);
+        try (Deadline.Scope scope = Deadline.after(Duration.ofSeconds(1)).bind()) {
+            assertThrows(DeadlineExceededException.class, () -> hedgedReads.read((preference, maxTimeMs) -> {
+                throw new MongoExecutionTimeoutException(50, "operation exceeded time limit");
+            }));
+        }
+        AtomicInteger calls = new AtomicInteger();
+        try (Deadline.Scope scope = Deadline.after(Duration.ZERO).bind()) {
+            assertThrows(DeadlineExceededException.class, () -> hedgedReads.read((preference, maxTimeMs) -> {
+                calls.incrementAndGet();
+                return "late";
+            }));
+        }
+        assertThat(calls.get(), is(0));
+        assertThat(hedgedReads.deadlineExceeded(), is(2L));
+    }
+
+    @Test
+    void testSecondaryAnswersForStalledPrimary() {
+        hedgedReads = hedgedReads(true, 0.05, 10);
+        long start = System.nanoTime();
+        String answer = hedgedReads.read((preference, maxTimeMs) -> {
+            if (preference == ReadPreference.primary()) {
+                sleep(2000);
+            }
+            return preference.getName();
+        });
+
+        assertThat(answer, is("secondaryPreferred"));
+        assertThat(System.nanoTime() - start, lessThan(1_000_000_000L));
+        assertThat(hedgedReads.hedged(), is(1L));
+        assertThat(hedgedReads.secondaryWins(), is(1L));
+        assertThat(hedgedReads.winRate(), is(1.0));
+    }
+
+    @Test
+    void testPrimaryOnlyReadsAreNeverHedgedAndHedgesBoundStaleness() {
+        hedgedReads = hedgedReads(true, 1, 10);
+        long start = System.nanoTime();
+        String answer = hedgedReads.readPrimary((preference, maxTimeMs) -> {
+            sleep(100);
+            return preference.getName();
+        });
+
+        assertThat(answer, is("primary"));
+        assertThat(System.nanoTime() - start, greaterThan(100_000_000L));
+        assertThat(hedgedReads.hedged(), is(0L));
+
+        AtomicLong maxStaleness = new AtomicLong();
+        hedgedReads.read((preference, maxTimeMs) -> {
+            if (preference == ReadPreference.primary()) {
+                sleep(2000);
+            } else {
+                maxStaleness.set(preference instanceof TaggableReadPreference secondary
+                        ? secondary.getMaxStaleness(TimeUnit.SECONDS) : -1);
+            }
+            return preference.getName();
+        });
+        assertThat(maxStaleness.get(), is(90L));
+    }
+
+    @Test
+    void testFastPrimaryIsNotHedged() {
+        hedgedReads = hedgedReads(true, 0.05, 10);
+        for (int i = 0; i < 10; i++) {
+            assertThat(hedgedReads.read((preference, maxTimeMs) -> preference.getName()), is("primary"));
+        }
+        assertThat(hedgedReads.hedged(), is(0L));
+        assertThat(hedgedReads.hedgeRate(), is(0.0));
+    }
+
+    @Test
+    void testBudgetCapsHedges() {
+        // one banked hedge, then one more per ten reads
+        hedgedReads = hedgedReads(true, 0.1, 1);
+        for (int i = 0; i < 20; i++) {
+            assertThat(hedgedReads.read((preference, maxTimeMs) -> {
+                sleep(preference == ReadPreference.primary() ? 40 : 5);
+                return preference.getName();
+            }), is(i == 0 || i == 10 ? "secondaryPreferred" : "primary"));
+        }
+        assertThat(hedgedReads.hedged(), is(2L));
+        assertThat(hedgedReads.throttled(), is(18L));
+        assertThat(hedgedReads.hedgeRate(), is(0.1));
+    }
+
+    @Test
+    void testDeadlineBoundsWaitForStalledPrimary() {
+        hedgedReads = hedgedReads(true, 0, 0);
+        long start = System.nanoTime();
+        try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(100)).bind()) {
+            assertThrows(DeadlineExceededException.class, () -> hedgedReads.read((preference, maxTimeMs) -> {
+                sleep(2000);
+                return "late";
+            }));
+        }
+        assertThat(System.nanoTime() - start, lessThan(1_000_000_000L));
+        assertThat(hedgedReads.throttled(), is(1L));
+        assertThat(hedgedReads.deadlineExceeded(), is(1L));
+    }
+
+    @Test
+    void testDeadlineBoundsPrimaryReadStuckBeforeTheServer() {
+        hedgedReads = hedgedReads(false, 0.05, 10);
+        long start = System.nanoTime();
+        try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(100)).bind()) {
+            // waiting for server selection or a pooled connection, which maxTimeMS does not cover
+            assertThrows(DeadlineExceededException.class, () -> hedgedReads.readPrimary((preference, maxTimeMs) -> {
+                sleep(2000);
+                return "late";
+            }));
+        }
+        assertThat(System.nanoTime() - start, lessThan(1_000_000_000L));
+        assertThat(hedgedReads.deadlineExceeded(), is(1L));
+        assertThat(Deadline.current().isPresent(), is(false));
+    }
+
+    private static String millis(long[] sorted, double percentile) {
+        return String.format("%.1f", sorted[(int) (percentile * (sorted.length - 1))] / 1e6);
+    }
+
+    private static HedgedReads hedgedReads(boolean enabled, double maxRatio, int burst) {
+        HedgedReads hedgedReads = new HedgedReads();
+        hedgedReads.enabled = enabled;
+        hedgedReads.percentile = 0.95;
+        hedgedReads.initialDelayMs = 10;
+        hedgedReads.minDelayMs = 2;
+        hedgedReads.maxRatio = maxRatio;
+        hedgedReads.burst = burst;
+        hedgedReads.maxStalenessSeconds = 90;
+        hedgedReads.init();
+        return hedgedReads;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Read extends HedgedReads.Read<String> {
+    }
+}
@@ -0,0 +1,259 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.angrysurfer.atomic.user.deadline.Deadline;
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.ChangeStreamIterable;
+
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Stands in for atomic.users when a test adds it with {@code @AddBean}. Users are
+ * kept as the documents the real repository would write, so mapping and
+ * projection go through the same code; writes fire the same change events.
+ * There is no change stream: watching fails the way a standalone server does.
+ */
+@Alternative
+@Priority(1)
+@ApplicationScoped
+public class InMemoryUserRepository extends UserRegistrationRepository {
+
+    // change streams are only supported on replica sets / sharded clusters
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private final Map<String, Document> byAlias = new ConcurrentHashMap<>();
+
+    @Inject
+    private Event<UserChangeEvent> changes;
+
+    // while set, lookups by alias time out as if the server stopped answering
+    private volatile boolean failingReads;
+
+    // while set, lookups by alias wait as if no server could be selected, released by stallReads(false)
+    private volatile CountDownLatch stalledReads;
+
+    @Inject
+    private HedgedReads hedgedReads;
+
+    // the deadline the last lookup ran under, as the driver would have seen it
+    private volatile Deadline lastDeadline;
+
+    public void clear() {
+        byAlias.clear();
+        failingReads = false;
+        stallReads(false);
+    }
+
+    public void failReads(boolean failing) {
+        failingReads = failing;
+    }
+
+    public void stallReads(boolean stalled) {
+        CountDownLatch previous = stalledReads;
+        stalledReads = stalled ? new CountDownLatch(1) : null;
+        if (previous != null) {
+            previous.countDown();
+        }
+    }
+
+    public Optional<Deadline> lastDeadline() {
+        return Optional.ofNullable(lastDeadline);
+    }
+
+    public int size() {
+        return byAlias.size();
+    }
+
+    /**
+     * The stored user, identifier included, as Mongo would return it.
+     */
+    public Optional<UserRegistration> stored(String alias) {
+        return Optional.ofNullable(byAlias.get(alias)).map(this::documentToUserRegistration);
+    }
+
+    @Override
+    public Optional<UserRegistration> findByAlias(String alias) {
+        if (failingReads) {
+            throw new MongoTimeoutException("Timed out reading " + alias);
+        }
+        CountDownLatch stall = stalledReads;
+        if (stall != null) {
+            // through the same deadline handling as a real primary read
+            return hedgedReads.readPrimary((preference, maxTimeMs) -> {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return stored(alias);
+            });
+        }
+        return stored(alias);
+    }
+
+    @Override
+    public Optional<UserRegistration> findByEmail(String email) {
+        return findFirst(doc -> email.equals(doc.getString("email")));
+    }
+
+    @Override
+    public Optional<UserRegistration> findById(long id) {
+        return findFirst(doc -> doc.get("id") instanceof Long stored && stored == id);
+    }
+
+    @Override
+    public List<UserRegistration> findByPrefix(String prefix, int skip, int limit) {
+        String lower = prefix.toLowerCase();
+        return byAlias.values().stream()
+                .map(this::documentToUserRegistration)
+                .filter(user -> user.getAlias().toLowerCase().startsWith(lower)
+                        || user.getEmail() != null && user.getEmail().toLowerCase().startsWith(lower))
+                .sorted(Comparator.comparing(UserRegistration::getAlias))
+                .skip(skip)
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void ensureIdIndex() {
+    }
+
+    @Override
+    public UserRegistration save(UserRegistration user) {
+        boolean update = user.getMongoId() != null;
+        if (!update) {
+            user.setMongoId(new ObjectId().toHexString());
+        }
+        Document saved = byAlias.compute(user.getAlias(), (alias, stored) -> {
+            if (update && stored == null) {
+                // the update matched nothing: a $set does not recreate a deleted user
+                return null;
+            }
+            user.setVersion(stored != null && stored.get("version") instanceof Long version ? version + 1 : 1);
+            Document doc = userRegistrationToDocument(user);
+            // like $set, leave fields the document does not carry as stored
+            user.setLockedUntil(0);
+            if (stored != null && stored.get("lockedUntil") instanceof Long lockedUntil) {
+                doc.put("lockedUntil", lockedUntil);
+                user.setLockedUntil(lockedUntil);
+            }
+            if (user.getIdentifier() == null && stored != null) {
+                doc.put("identifier", stored.getString("identifier"));
+            }
+            return doc;
+        });
+        if (saved == null) {
+            return null;
+        }
+        changes.fire(UserChangeEvent.upsert(user));
+        return user;
+    }
+
+    @Override
+    public UserRegistration lockUntil(UserRegistration user, long lockedUntil) {
+        Document stored = byAlias.computeIfPresent(user.getAlias(), (alias, doc) -> doc
+                .append("lockedUntil", lockedUntil)
+                .append("version", doc.get("version") instanceof Long version ? version + 1 : 1L));
+        UserRegistration locked = user.withoutSecrets();
+        locked.setLockedUntil(lockedUntil);
+        if (stored != null) {
+            locked.setVersion(stored.getLong("version"));
+        }
+        changes.fire(UserChangeEvent.upsert(locked));
+        return locked;
+    }
+
+    @Override
+    public BulkWriteResult upsertAllByAlias(List<UserRegistration> users) {
+        int matched = 0;
+        List<BulkWriteUpsert> upserts = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            UserRegistration user = users.get(i);
+            Document fields = userRegistrationToDocument(user);
+            fields.remove("_id");
+            fields.remove("version");
+            if (user.getIdentifier() == null) {
+                fields.remove("identifier");
+            }
+            Document existing = byAlias.get(user.getAlias());
+            if (existing != null) {
+                existing.putAll(fields);
+                existing.put("version", existing.get("version") instanceof Long version ? version + 1 : 1L);
+                matched++;
+            } else {
+                ObjectId id = new ObjectId();
+                Document inserted = new Document("_id", id);
+                inserted.putAll(fields);
+                inserted.put("version", 1L);
+                byAlias.put(user.getAlias(), inserted);
+                upserts.add(new BulkWriteUpsert(i, new BsonObjectId(id)));
+            }
+        }
+        for (UserRegistration user : users) {
+            changes.fire(UserChangeEvent.upsert(stored(user.getAlias()).orElseThrow()));
+        }
+        return BulkWriteResult.acknowledged(0, matched, 0, matched, upserts, List.of());
+    }
+
+    @Override
+    public void forEach(List<String> fields, int batchSize, Consumer<Document> action) {
+        for (Document doc : List.copyOf(byAlias.values())) {
+            Document projected = new Document();
+            for (String field : fields) {
+                if (doc.containsKey(field)) {
+                    projected.put(field, doc.get(field));
+                }
+            }
+            action.accept(projected);
+        }
+    }
+
+    @Override
+    public void forEachUser(int batchSize, Consumer<UserRegistration> action) {
+        for (Document doc : List.copyOf(byAlias.values())) {
+            action.accept(documentToUserRegistration(doc));
+        }
+    }
+
+    @Override
+    public void enableChangeStreamPreImages() {
+    }
+
+    @Override
+    public ChangeStreamIterable<Document> watch(BsonDocument resumeToken, boolean preImages) {
+        throw new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(CHANGE_STREAM_NOT_SUPPORTED))
+                .append("errmsg", new BsonString("In-memory users have no change stream")), new ServerAddress());
+    }
+
+    private Optional<UserRegistration> findFirst(Predicate<Document> filter) {
+        lastDeadline = Deadline.current().orElse(null);
+        return byAlias.values().stream().filter(filter).findFirst().map(this::documentToUserRegistration);
+    }
+}
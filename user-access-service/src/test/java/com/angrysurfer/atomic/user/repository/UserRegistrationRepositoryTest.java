@@ -0,0 +1,104 @@
+package com.angrysurfer.atomic.user.repository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.angrysurfer.atomic.user.model.UserChangeEvent;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+
+import jakarta.enterprise.event.Event;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * What {@link UserRegistrationRepository#save} sends for an existing user,
+ * against a collection that answers findOneAndUpdate with a canned document.
+ */
+class UserRegistrationRepositoryTest {
+
+    private final List<BsonDocument> updates = new ArrayList<>();
+
+    private final List<UserChangeEvent> fired = new ArrayList<>();
+
+    private Document stored;
+
+    private UserRegistrationRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        MongoCollection<Document> collection = proxy(MongoCollection.class, (method, args) -> {
+            if (method.equals("findOneAndUpdate") && args.length == 3) {
+                updates.add(((Bson) args[1]).toBsonDocument(BsonDocument.class,
+                        MongoClientSettings.getDefaultCodecRegistry()));
+                return stored;
+            }
+            throw new UnsupportedOperationException(method);
+        });
+        repository = new UserRegistrationRepository() {
+            @Override
+            MongoCollection<Document> getCollection() {
+                return collection;
+            }
+        };
+        repository.userChanged = proxy(Event.class, (method, args) -> {
+            if (method.equals("fire")) {
+                fired.add((UserChangeEvent) args[0]);
+                return null;
+            }
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @Test
+    void testSaveWithoutIdentifierKeepsTheStoredOne() {
+        stored = new Document("version", 3L).append("lockedUntil", 1_700_000_000_000L);
+        UserRegistration resident = user(null);
+
+        assertThat(repository.save(resident), is(resident));
+        assertThat(repository.save(user("s3cret")).getVersion(), is(3L));
+
+        assertThat(updates.get(0).getDocument("$set").containsKey("identifier"), is(false));
+        assertThat(updates.get(1).getDocument("$set").getString("identifier").getValue(), is("s3cret"));
+        assertThat(resident.getVersion(), is(3L));
+        assertThat(resident.getLockedUntil(), is(1_700_000_000_000L));
+        assertThat(fired.size(), is(2));
+    }
+
+    @Test
+    void testSaveOfADeletedUserAnnouncesNothing() {
+        stored = null;
+
+        assertThat(repository.save(user("s3cret")), is(nullValue()));
+        assertThat(fired, is(empty()));
+    }
+
+    private static UserRegistration user(String identifier) {
+        UserRegistration user = new UserRegistration("ada", "ada@example.com", null, identifier);
+        user.setMongoId("65a1f0c2e4b0a1b2c3d4e5f6");
+        user.setId(42L);
+        return user;
+    }
+
+    private interface Handler {
+
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+}
@@ -0,0 +1,65 @@
+package com.angrysurfer.atomic.user.rest;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.token.SessionTokenService;
+
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Relationship changes need a token for the user they act for, or an admin's.
+ * The graph is off, so a call that gets past the filter answers 503.
+ */
+@HelidonTest
+@AddConfig(key = "user.graph.enabled", value = "false")
+class OwnerAuthorizationFilterTest {
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private SessionTokenService tokenService;
+
+    @Test
+    void testOnlyTheUserOrAnAdminMayChangeRelationships() {
+        String owner = token(1L, false);
+
+        assertThat(put("api/user/id/1/following/2", null), is(401));
+        assertThat(put("api/user/id/1/following/2", "not-a-token"), is(401));
+        assertThat(put("api/user/id/1/following/2", token(2L, false)), is(403));
+        assertThat(put("api/user/id/1/friends/2", token(2L, false)), is(403));
+        assertThat(put("api/user/id/1/following/2", owner), is(503));
+        assertThat(put("api/user/id/1/friends/2", token(9L, true)), is(503));
+
+        Response requests = target.path("api/user/id/1/friends/requests").request()
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token(2L, false))
+                .get();
+        requests.close();
+        assertThat(requests.getStatus(), is(403));
+    }
+
+    private String token(Long id, boolean admin) {
+        UserRegistration user = new UserRegistration("owner-" + id, null, null);
+        user.setId(id);
+        user.setAdmin(admin);
+        return tokenService.issue(user);
+    }
+
+    private int put(String path, String token) {
+        Response response = target.path(path).request()
+                .header(HttpHeaders.AUTHORIZATION, token != null ? "Bearer " + token : null)
+                .put(Entity.text(""));
+        response.close();
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,131 @@
+package com.angrysurfer.atomic.user.rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ApplicationPath;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Application;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validations of a resident user over HTTP on eight threads sharing one client,
+ * through a request-scoped copy of {@link UserResource} as it used to be, the
+ * application-scoped resource, and {@link ValidateUserHandler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ValidateDispatchBenchmark {
+
+    private static final String ALIAS = "dispatch-ada";
+
+    private static final String IDENTIFIER = "secret";
+
+    @Param({"request-scoped/user/validate", "api/user/validate", "raw/user/validate"})
+    String path;
+
+    private BenchmarkSupport.RunningService service;
+
+    private HttpClient client;
+
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkSupport.start(Map.of(
+                        "user.validate.raw-handler.enabled", "true",
+                        "user.validate.raw-handler.path", "/raw/user/validate"),
+                RequestScopedApplication.class, RequestScopedUserResource.class);
+        UserRegistration ada = new UserRegistration(ALIAS, "ada@example.com", null, IDENTIFIER);
+        ada.setId(7L);
+        service.bean(UserRegistrationCache.class).put(ada.withoutSecrets());
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI uri = service.uri(path + "?alias=" + ALIAS + "&identifier=" + IDENTIFIER);
+        request = HttpRequest.newBuilder(uri).header("Accept", MediaType.APPLICATION_JSON).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public byte[] validate() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(path + " answered " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @ApplicationPath("/request-scoped")
+    public static class RequestScopedApplication extends Application {
+
+        @Override
+        public Set<Class<?>> getClasses() {
+            return Set.of(RequestScopedUserResource.class);
+        }
+    }
+
+    /**
+     * {@code GET /validate} as {@link UserResource} served it before it became a singleton.
+     */
+    @Path("/user")
+    @RequestScoped
+    public static class RequestScopedUserResource {
+
+        @Inject
+        private UserAccessService userAccessService;
+
+        @GET
+        @Path("/validate")
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response validateUserGet(@QueryParam("alias") String alias, @QueryParam("identifier") String password) {
+            UserRegistrationDTO userDto = userAccessService.validateUser(alias, password);
+
+            if (userDto != null) {
+                return Response.ok(userDto).build();
+            } else {
+                return Response.status(Response.Status.UNAUTHORIZED).build();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.angrysurfer.atomic.user.rest;
+
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Validation through the application-scoped {@link UserResource} and through
+ * {@link ValidateUserHandler} mounted at {@code /raw/user/validate};
+ * {@link ValidateDispatchBenchmark} compares their throughput.
+ */
+@HelidonTest
+@AddConfig(key = "user.validate.raw-handler.enabled", value = "true")
+@AddConfig(key = "user.validate.raw-handler.path", value = "/raw/user/validate")
+class ValidateDispatchTest {
+
+    private static final String ALIAS = "dispatch-ada";
+
+    private static final String IDENTIFIER = "secret";
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        UserRegistration ada = new UserRegistration(ALIAS, "ada@example.com", null, IDENTIFIER);
+        ada.setId(7L);
+        userCache.put(ada.withoutSecrets());
+    }
+
+    @Test
+    void testRawHandlerMatchesResource() {
+        UserRegistrationDTO viaResource = validate("api/user/validate", IDENTIFIER).readEntity(UserRegistrationDTO.class);
+        UserRegistrationDTO viaHandler = validate("raw/user/validate", IDENTIFIER).readEntity(UserRegistrationDTO.class);
+
+        assertThat(viaHandler.getAlias(), is(ALIAS));
+        assertThat(viaHandler.getId(), is(viaResource.getId()));
+    }
+
+    @Test
+    void testRawHandlerAcceptsForm() {
+        Form form = new Form().param("alias", ALIAS).param("identifier", IDENTIFIER);
+        Response response = target.path("raw/user/validate").request(MediaType.APPLICATION_JSON).post(Entity.form(form));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.readEntity(UserRegistrationDTO.class).getAlias(), is(ALIAS));
+    }
+
+    @Test
+    void testPostsThatAreNotFormsAreRefused() {
+        String json = "{\"alias\":\"" + ALIAS + "\",\"identifier\":\"" + IDENTIFIER + "\"}";
+        for (String path : new String[] {"api/user/validate", "raw/user/validate"}) {
+            Response response = target.path(path).request(MediaType.APPLICATION_JSON)
+                    .post(Entity.json(json));
+            response.close();
+            assertThat(path, response.getStatus(), is(415));
+        }
+        Response form = target.path("raw/user/validate").request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity("alias=" + ALIAS + "&identifier=" + IDENTIFIER,
+                        MediaType.APPLICATION_FORM_URLENCODED + "; charset=UTF-8"));
+        form.close();
+        assertThat(form.getStatus(), is(200));
+    }
+
+    private Response validate(String path, String identifier) {
+        Response response = target.path(path)
+                .queryParam("alias", ALIAS)
+                .queryParam("identifier", identifier)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        response.bufferEntity();
+        return response;
+    }
+}
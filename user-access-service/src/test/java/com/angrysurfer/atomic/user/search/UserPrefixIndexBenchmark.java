@@ -0,0 +1,76 @@
+package com.angrysurfer.atomic.user.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Typeahead lookups against a million users: the prefix index versus a
+ * case-insensitive anchored regex over every alias and email, which is what Mongo
+ * has to do for the same query since such a regex cannot use an index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserPrefixIndexBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+
+    private List<UserSuggestion> users;
+
+    private UserPrefixIndex index;
+
+    private int query;
+
+    @Setup
+    public void setUp() {
+        users = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            users.add(new UserSuggestion(String.format("%024x", i), (long) i, "user" + i, "mail" + i + "@example.com",
+                    null));
+        }
+        long start = System.nanoTime();
+        index = new UserPrefixIndex(users, 10_000);
+        BenchmarkSupport.report("UserPrefixIndex over " + ENTRIES + " users built in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    @Benchmark
+    public UserSearchPage prefixIndex() {
+        return index.search(nextPrefix(), 0, 10);
+    }
+
+    @Benchmark
+    public int regexScan() {
+        Pattern pattern = Pattern.compile("^" + Pattern.quote(nextPrefix().toUpperCase()), Pattern.CASE_INSENSITIVE);
+        int found = 0;
+        for (UserSuggestion user : users) {
+            if (found < 10 && (pattern.matcher(user.getAlias()).find() || pattern.matcher(user.email()).find())) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private String nextPrefix() {
+        query = (query + 1) % ENTRIES;
+        return "user" + (query * 7919L % ENTRIES);
+    }
+}
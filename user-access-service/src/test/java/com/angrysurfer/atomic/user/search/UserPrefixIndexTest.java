@@ -0,0 +1,92 @@
+package com.angrysurfer.atomic.user.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+class UserPrefixIndexTest {
+
+    @Test
+    void testMatchesAliasAndEmailIgnoringCase() {
+        UserPrefixIndex index = new UserPrefixIndex(List.of(
+                user(1, "Ada", "lovelace@example.com"),
+                user(2, "adam", "adam@example.com"),
+                user(3, "bob", "ada.bob@example.com")), 100);
+
+        assertThat(aliases(index.search("ADA", 0, 10)), contains("Ada", "bob", "adam"));
+        assertThat(aliases(index.search("love", 0, 10)), contains("Ada"));
+        assertThat(aliases(index.search("zed", 0, 10)), is(empty()));
+    }
+
+    @Test
+    void testPagination() {
+        List<UserSuggestion> users = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            users.add(user(i, String.format("user%02d", i), null));
+        }
+        UserPrefixIndex index = new UserPrefixIndex(users, 100);
+
+        UserSearchPage first = index.search("user", 0, 10);
+        assertThat(first.getUsers().get(0).getAlias(), is("user00"));
+        assertThat(first.isMore(), is(true));
+
+        UserSearchPage last = index.search("user", 20, 10);
+        assertThat(aliases(last), contains("user20", "user21", "user22", "user23", "user24"));
+        assertThat(last.isMore(), is(false));
+
+        assertThat(index.search("user", 15, 10).isMore(), is(false));
+    }
+
+    @Test
+    void testUpdateRenameAndDeleteBeforeAndAfterCompaction() {
+        UserPrefixIndex index = new UserPrefixIndex(List.of(user(1, "ada", "ada@example.com")), 100);
+
+        index.put(user(1, "lovelace", "ada@example.com"));
+        index.put(user(2, "alan", null));
+        // renamed, but still found once through the email
+        assertThat(aliases(index.search("a", 0, 10)), contains("lovelace", "alan"));
+        assertThat(aliases(index.search("lo", 0, 10)), contains("lovelace"));
+
+        index.remove(mongoId(1));
+        assertThat(aliases(index.search("a", 0, 10)), contains("alan"));
+
+        index.compact();
+        assertThat(aliases(index.search("a", 0, 10)), contains("alan"));
+        assertThat(index.size(), is(1));
+
+        index.put(user(1, "ada", null));
+        assertThat(aliases(index.search("a", 0, 10)), contains("ada", "alan"));
+    }
+
+    @Test
+    void testCompactsOnceThresholdIsReached() {
+        UserPrefixIndex index = new UserPrefixIndex(4);
+        for (int i = 0; i < 10; i++) {
+            index.put(user(i, "user" + i, null));
+        }
+        index.remove(mongoId(3));
+
+        UserSearchPage page = index.search("user", 0, 20);
+        assertThat(page.getUsers().size(), is(9));
+        assertThat(index.size(), is(9));
+    }
+
+    private static UserSuggestion user(int n, String alias, String email) {
+        return new UserSuggestion(mongoId(n), (long) n, alias, email, null);
+    }
+
+    private static String mongoId(int n) {
+        return String.format("%024x", n);
+    }
+
+    private static List<String> aliases(UserSearchPage page) {
+        return page.getUsers().stream().map(UserSuggestion::getAlias).collect(Collectors.toList());
+    }
+}
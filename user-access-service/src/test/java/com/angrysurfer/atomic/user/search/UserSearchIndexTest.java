@@ -0,0 +1,65 @@
+package com.angrysurfer.atomic.user.search;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.UserRegistrationRepository;
+import com.mongodb.MongoSocketOpenException;
+import com.mongodb.ServerAddress;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class UserSearchIndexTest {
+
+    @Test
+    void testFailedLoadIsRetriedUntilItSucceeds() throws InterruptedException {
+        FlakyRepository repository = new FlakyRepository(2);
+        UserSearchIndex search = new UserSearchIndex();
+        search.searchEnabled = true;
+        search.loadBatchSize = 100;
+        search.compactThreshold = 100;
+        search.maxLimit = 10;
+        search.maxWindow = 100;
+        search.initialBackoffMillis = 10;
+        search.userRepository = repository;
+
+        search.onStart(new Object());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!search.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(search.isReady(), is(true));
+        assertThat(repository.scans.get(), is(3));
+        assertThat(search.search("ada", 0, 10).getUsers().get(0).getAlias(), is("ada"));
+    }
+
+    /**
+     * Fails the first scans as an unreachable server would, then streams one user.
+     */
+    private static final class FlakyRepository extends UserRegistrationRepository {
+
+        final AtomicInteger scans = new AtomicInteger();
+
+        private final int failures;
+
+        FlakyRepository(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void forEachUser(int batchSize, Consumer<UserRegistration> action) {
+            if (scans.incrementAndGet() <= failures) {
+                throw new MongoSocketOpenException("Connection refused", new ServerAddress());
+            }
+            UserRegistration ada = new UserRegistration("ada", "ada@example.com", null);
+            ada.setMongoId("65a1f0c2e4b0a1b2c3d4e5f6");
+            action.accept(ada);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.angrysurfer.atomic.user.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+import com.angrysurfer.atomic.user.token.SessionTokenService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * NDJSON import and export over HTTP against in-memory users, which stand in for
+ * Mongo, so degraded mode stays off.
+ */
+@HelidonTest
+@AddBean(InMemoryUserRepository.class)
+@AddConfig(key = "user.bulk.enabled", value = "true")
+@AddConfig(key = "user.degraded.enabled", value = "false")
+class UserTransferServiceTest {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private InMemoryUserRepository users;
+
+    @Inject
+    private SessionTokenService tokenService;
+
+    private String adminToken;
+
+    @BeforeEach
+    void setUp() {
+        users.clear();
+        UserRegistration admin = new UserRegistration("transfer-admin", "admin@example.com", null);
+        admin.setId(1L);
+        admin.setAdmin(true);
+        adminToken = tokenService.issue(admin);
+    }
+
+    @Test
+    void testBulkEndpointsNeedAnAdminToken() {
+        UserRegistration grace = new UserRegistration("transfer-grace", "grace@example.com", null);
+        grace.setId(2L);
+        String userToken = tokenService.issue(grace);
+
+        assertThat(export(null, null).getStatus(), is(401));
+        assertThat(export(null, userToken).getStatus(), is(403));
+        assertThat(importUsers("{\"alias\":\"x\"}\n", userToken).getStatus(), is(403));
+        assertThat(importUsers("{\"alias\":\"x\"}\n", "not-a-token").getStatus(), is(401));
+        assertThat(users.size(), is(0));
+        assertThat(export(null, adminToken).getStatus(), is(200));
+    }
+
+    @Test
+    void testExportedUsersImportBackWithTheirCredentials() throws Exception {
+        String ndjson = """
+                {"id":"41","alias":"transfer-ada","email":"ada@example.com","identifier":"secret-ada"}
+                {"id":"42","alias":"transfer-alan","email":"alan@example.com","identifier":"secret-alan","admin":true}
+                """;
+        UserImportResult imported = importResult(ndjson);
+        assertThat(imported.getInserted(), is(2L));
+
+        List<Map<String, Object>> exported = exportedLines(null);
+        assertThat(exported.size(), is(2));
+        Map<String, Object> alan = exported.stream()
+                .filter(line -> "transfer-alan".equals(line.get("alias")))
+                .findFirst()
+                .orElseThrow();
+        assertThat(alan.get("id"), is(42));
+        assertThat(alan.get("email"), is("alan@example.com"));
+        assertThat(alan.get("admin"), is(true));
+        assertThat(alan.containsKey("identifier"), is(false));
+
+        // the export has no identifiers; importing it back must not wipe the stored ones
+        StringBuilder roundTrip = new StringBuilder();
+        for (Map<String, Object> line : exported) {
+            roundTrip.append(MAPPER.writeValueAsString(line)).append('\n');
+        }
+        UserImportResult reimported = importResult(roundTrip.toString());
+        assertThat(reimported.getUpdated(), is(2L));
+        assertThat(reimported.getRejected(), is(0L));
+        assertThat(users.stored("transfer-ada").orElseThrow().getIdentifier(), is("secret-ada"));
+        assertThat(validate("transfer-alan", "secret-alan"), is(200));
+        assertThat(exportedLines(null), is(exported));
+    }
+
+    @Test
+    void testExportProjectionNeverIncludesCredentials() throws Exception {
+        importResult("{\"id\":\"51\",\"alias\":\"transfer-hopper\",\"email\":\"hopper@example.com\","
+                + "\"identifier\":\"secret\"}\n");
+
+        assertThat(exportedLines("alias,email"), is(List.of(Map.of("alias", "transfer-hopper",
+                "email", "hopper@example.com"))));
+        assertThat(export("alias,identifier", adminToken).getStatus(), is(400));
+        assertThat(export("credentialDigest", adminToken).getStatus(), is(400));
+    }
+
+    @Test
+    void testBadRecordsAreRejectedAndTheRestImported() {
+        String ndjson = """
+                {"id":"61","alias":"transfer-first"}
+                {"id":"sixty-two","alias":"transfer-bad-id"}
+                {"email":"no-alias@example.com"}
+                {"alias":"transfer-bad-admin","admin":{"nested":true}}
+                {"id":"65","alias":"transfer-last"}
+                """;
+        UserImportResult result = importResult(ndjson);
+
+        assertThat(result.getReceived(), is(5L));
+        assertThat(result.getRejected(), is(3L));
+        assertThat(result.getInserted(), is(2L));
+        assertThat(users.stored("transfer-last").orElseThrow().getId(), is(65L));
+        assertThat(users.stored("transfer-bad-id").isPresent(), is(false));
+    }
+
+    private UserImportResult importResult(String ndjson) {
+        Response response = importUsers(ndjson, adminToken);
+        assertThat(response.getStatus(), is(200));
+        try {
+            Map<String, Long> counts = MAPPER.readValue(response.readEntity(String.class), new TypeReference<>() { });
+            UserImportResult result = new UserImportResult();
+            result.received = counts.get("received");
+            result.inserted = counts.get("inserted");
+            result.updated = counts.get("updated");
+            result.rejected = counts.get("rejected");
+            return result;
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private List<Map<String, Object>> exportedLines(String fields) throws Exception {
+        Response response = export(fields, adminToken);
+        assertThat(response.getStatus(), is(200));
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (String line : response.readEntity(String.class).split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(MAPPER.readValue(line, new TypeReference<>() { }));
+            }
+        }
+        lines.sort((a, b) -> String.valueOf(a.get("alias")).compareTo(String.valueOf(b.get("alias"))));
+        return lines;
+    }
+
+    private Response importUsers(String ndjson, String token) {
+        return target.path("api/user/import")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, token != null ? "Bearer " + token : null)
+                .post(Entity.entity(ndjson, NDJSON));
+    }
+
+    private Response export(String fields, String token) {
+        WebTarget export = target.path("api/user/export");
+        if (fields != null) {
+            export = export.queryParam("fields", fields);
+        }
+        return export.request(NDJSON)
+                .header(HttpHeaders.AUTHORIZATION, token != null ? "Bearer " + token : null)
+                .get();
+    }
+
+    private int validate(String alias, String identifier) {
+        Response response = target.path("api/user/validate")
+                .queryParam("alias", alias)
+                .queryParam("identifier", identifier)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        response.close();
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,89 @@
+package com.angrysurfer.atomic.user.token;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.atomic.user.BenchmarkSupport;
+import com.angrysurfer.atomic.user.UserRegistrationDTO;
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+import com.angrysurfer.atomic.user.repository.InMemoryUserRepository;
+import com.angrysurfer.atomic.user.service.UserAccessService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link UserAccessService#verifyToken} against {@link UserAccessService#validateUser}
+ * in the running service, users stored in {@link InMemoryUserRepository}. Validation
+ * is measured with the user resident in the cache and with the cache dropped first,
+ * so every call reads the repository; against Mongo that read is a round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionTokenServiceBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private BenchmarkSupport.RunningService service;
+
+    private UserAccessService userAccessService;
+
+    private UserRegistrationCache userCache;
+
+    private String[] tokens;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        service = BenchmarkSupport.start(Map.of("user.degraded.enabled", "false"), InMemoryUserRepository.class);
+        userAccessService = service.bean(UserAccessService.class);
+        userCache = service.bean(UserRegistrationCache.class);
+        InMemoryUserRepository repository = service.bean(InMemoryUserRepository.class);
+        tokens = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            UserRegistration user = new UserRegistration("user" + i, null, null, "identifier" + i);
+            user.setId((long) i);
+            repository.save(user);
+            tokens[i] = userAccessService.validateUser("user" + i, "identifier" + i).getToken();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public UserRegistrationDTO verifyToken() {
+        next = (next + 1) % USERS;
+        return userAccessService.verifyToken(tokens[next]);
+    }
+
+    @Benchmark
+    public UserRegistrationDTO validateResident() {
+        next = (next + 1) % USERS;
+        return userAccessService.validateUser("user" + next, "identifier" + next);
+    }
+
+    @Benchmark
+    public UserRegistrationDTO validateFromRepository() {
+        next = (next + 1) % USERS;
+        userCache.invalidate("user" + next);
+        return userAccessService.validateUser("user" + next, "identifier" + next);
+    }
+}
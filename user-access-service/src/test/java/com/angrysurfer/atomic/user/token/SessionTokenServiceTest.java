@@ -0,0 +1,97 @@
+package com.angrysurfer.atomic.user.token;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class SessionTokenServiceTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private SessionTokenService tokens;
+
+    private UserRegistration ada;
+
+    @BeforeEach
+    void setUp() {
+        tokens = service(SECRET, 3600);
+        ada = new UserRegistration("ada", "ada@example.com", null, "secret");
+        ada.setId(42L);
+        ada.setAdmin(true);
+    }
+
+    @Test
+    void testIssuedTokenVerifies() {
+        SessionClaims claims = tokens.verify(tokens.issue(ada)).orElseThrow();
+
+        assertThat(claims.getId(), is(42L));
+        assertThat(claims.getAlias(), is("ada"));
+        assertThat(claims.isAdmin(), is(true));
+    }
+
+    @Test
+    void testTokenWithoutNumericIdVerifies() {
+        ada.setId(null);
+
+        SessionClaims claims = tokens.verify(tokens.issue(ada)).orElseThrow();
+
+        assertThat(claims.getId(), is(nullValue()));
+        assertThat(claims.toDTO().getAlias(), is("ada"));
+    }
+
+    @Test
+    void testTamperedTokenIsRejected() {
+        String token = tokens.issue(ada);
+        SessionTokenCodec codec = new SessionTokenCodec(SECRET.getBytes(StandardCharsets.UTF_8));
+        SessionClaims claims = codec.decode(token);
+        String forged = codec.encode(new SessionClaims(claims.getTokenId(), 7L, "mallory", true,
+                claims.getIssuedAt(), claims.getExpiresAt()));
+        String spliced = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertThat(tokens.verify(spliced).isPresent(), is(false));
+        assertThat(tokens.verify(token + "x").isPresent(), is(false));
+        assertThat(tokens.verify("not-a-token").isPresent(), is(false));
+        assertThat(tokens.verify(null).isPresent(), is(false));
+    }
+
+    @Test
+    void testTokenFromAnotherKeyIsRejected() {
+        String token = service("fedcba9876543210fedcba9876543210", 3600).issue(ada);
+
+        assertThat(tokens.verify(token).isPresent(), is(false));
+    }
+
+    @Test
+    void testExpiredTokenIsRejected() {
+        SessionTokenService shortLived = service(SECRET, 0);
+
+        assertThat(shortLived.verify(shortLived.issue(ada)).isPresent(), is(false));
+    }
+
+    @Test
+    void testRevokedTokenIsRejected() {
+        String token = tokens.issue(ada);
+        String other = tokens.issue(ada);
+
+        assertThat(tokens.revoke(token), is(true));
+        assertThat(tokens.verify(token).isPresent(), is(false));
+        assertThat(tokens.verify(other).isPresent(), is(true));
+        assertThat(tokens.revoke(token), is(false));
+    }
+
+    private static SessionTokenService service(String secret, long ttlSeconds) {
+        SessionTokenService service = new SessionTokenService();
+        service.secret = Optional.of(secret);
+        service.ttlSeconds = ttlSeconds;
+        service.init();
+        return service;
+    }
+}
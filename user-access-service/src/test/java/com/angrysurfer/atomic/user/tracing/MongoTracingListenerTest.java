@@ -0,0 +1,97 @@
+package com.angrysurfer.atomic.user.tracing;
+
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@SuppressWarnings("try")
+class MongoTracingListenerTest {
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress("mongo.internal", 27017)));
+
+    private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+
+    private final Tracer tracer = SdkTracerProvider.builder()
+            .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+            .build()
+            .get("test");
+
+    private final MongoTracingListener listener = new MongoTracingListener(tracer);
+
+    @Test
+    void testCommandBecomesChildSpan() {
+        BsonDocument find = new BsonDocument("find", new BsonString("users"))
+                .append("filter", new BsonDocument("alias", new BsonString("ada")));
+
+        Span parent = tracer.spanBuilder("GET /api/user/validate").startSpan();
+        try (Scope ignored = parent.makeCurrent()) {
+            listener.commandStarted(new CommandStartedEvent(null, 1, 7, CONNECTION, "atomic", "find", find));
+        }
+        listener.commandSucceeded(new CommandSucceededEvent(null, 1, 7, CONNECTION, "find", new BsonDocument(), 1_000));
+        parent.end();
+
+        SpanData span = exporter.getFinishedSpanItems().get(0);
+        assertThat(span.getName(), is("find users"));
+        assertThat(span.getKind(), is(SpanKind.CLIENT));
+        assertThat(span.getParentSpanId(), is(parent.getSpanContext().getSpanId()));
+        assertThat(span.getAttributes().get(MongoTracingListener.DB_NAME), is("atomic"));
+        assertThat(span.getAttributes().get(MongoTracingListener.DB_COLLECTION), is("users"));
+        assertThat(span.getAttributes().get(MongoTracingListener.SERVER_PORT), is(27017L));
+        assertThat(span.getAttributes().size(), is(6));
+        assertThat(listener.inFlight(), is(0));
+    }
+
+    @Test
+    void testFailureMarksSpan() {
+        Span parent = tracer.spanBuilder("request").startSpan();
+        try (Scope ignored = parent.makeCurrent()) {
+            listener.commandStarted(new CommandStartedEvent(null, 1, 8, CONNECTION, "atomic", "update",
+                    new BsonDocument("update", new BsonString("users"))));
+        }
+        listener.commandFailed(new CommandFailedEvent(null, 1, 8, CONNECTION, "update", 1_000,
+                new MongoException("duplicate key")));
+        parent.end();
+
+        SpanData span = exporter.getFinishedSpanItems().get(0);
+        assertThat(span.getStatus().getStatusCode(), is(StatusCode.ERROR));
+        assertThat(span.getEvents().get(0).getName(), is("exception"));
+    }
+
+    @Test
+    void testCommandsOutsideSpansAreNotTraced() {
+        listener.commandStarted(new CommandStartedEvent(null, 1, 9, CONNECTION, "atomic", "getMore",
+                new BsonDocument("getMore", new BsonInt64(42))));
+        listener.commandSucceeded(new CommandSucceededEvent(null, 1, 9, CONNECTION, "getMore", new BsonDocument(), 1_000));
+
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        assertThat(spans.size(), is(0));
+        assertThat(listener.inFlight(), is(0));
+    }
+}
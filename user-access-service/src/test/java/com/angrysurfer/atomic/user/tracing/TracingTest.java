@@ -0,0 +1,118 @@
+package com.angrysurfer.atomic.user.tracing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.angrysurfer.atomic.user.cache.UserRegistrationCache;
+import com.angrysurfer.atomic.user.model.UserRegistration;
+
+import io.helidon.microprofile.testing.AddBean;
+import io.helidon.microprofile.testing.AddConfig;
+import io.helidon.microprofile.testing.junit5.HelidonTest;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Exports to memory with new traces sampled at zero, so only requests whose
+ * caller already sampled them leave spans behind.
+ */
+@HelidonTest
+@AddBean(TracingTest.InMemoryExporter.class)
+@AddConfig(key = "user.tracing.sample-ratio", value = "0")
+class TracingTest {
+
+    private static final InMemorySpanExporter EXPORTER = InMemorySpanExporter.create();
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    private static final String PARENT_ID = "00f067aa0ba902b7";
+
+    private static final String ALIAS = "traced-ada";
+
+    @Inject
+    private WebTarget target;
+
+    @Inject
+    private UserRegistrationCache userCache;
+
+    @Inject
+    private Tracing tracing;
+
+    @BeforeEach
+    void setUp() {
+        UserRegistration ada = new UserRegistration(ALIAS, "ada@example.com", null, "secret");
+        ada.setId(11L);
+        userCache.put(ada.withoutSecrets());
+        tracing.flush();
+        EXPORTER.reset();
+    }
+
+    @Test
+    void testSpansContinueCallersTrace() {
+        assertThat(validate("00-" + TRACE_ID + "-" + PARENT_ID + "-01").getStatus(), is(200));
+        tracing.flush();
+
+        Map<String, SpanData> spans = EXPORTER.getFinishedSpanItems().stream()
+                .collect(Collectors.toMap(SpanData::getName, Function.identity()));
+        assertThat(spans, hasKey("GET /api/user/validate"));
+        assertThat(spans, hasKey("UserAccessService.validateUser"));
+
+        SpanData server = spans.get("GET /api/user/validate");
+        assertThat(server.getKind(), is(SpanKind.SERVER));
+        assertThat(server.getTraceId(), is(TRACE_ID));
+        assertThat(server.getParentSpanId(), is(PARENT_ID));
+        assertThat(server.getAttributes().get(AttributeKey.longKey("http.response.status_code")), is(200L));
+
+        SpanData service = spans.get("UserAccessService.validateUser");
+        assertThat(service.getTraceId(), is(TRACE_ID));
+        assertThat(service.getParentSpanId(), is(server.getSpanId()));
+    }
+
+    @Test
+    void testUnsampledCallsExportNothing() {
+        assertThat(validate(null).getStatus(), is(200));
+        assertThat(validate("00-" + TRACE_ID + "-" + PARENT_ID + "-00").getStatus(), is(200));
+        tracing.flush();
+
+        List<SpanData> spans = EXPORTER.getFinishedSpanItems();
+        assertThat(spans.size(), is(0));
+    }
+
+    private Response validate(String traceparent) {
+        Response response = target.path("api/user/validate")
+                .queryParam("alias", ALIAS)
+                .queryParam("identifier", "secret")
+                .request(MediaType.APPLICATION_JSON)
+                .header("traceparent", traceparent)
+                .get();
+        response.close();
+        return response;
+    }
+
+    static class InMemoryExporter {
+
+        @Produces
+        @Singleton
+        SpanExporter exporter() {
+            return EXPORTER;
+        }
+    }
+}